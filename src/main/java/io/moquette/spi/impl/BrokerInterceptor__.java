@@ -28,17 +28,31 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  * An interceptor that execute the interception tasks asynchronously.
  *
  * @author Wagner Macedo
  */
 final class BrokerInterceptor__ implements Interceptor {
+    private static final Logger LOG = LoggerFactory.getLogger(BrokerInterceptor__.class);
     private final List<InterceptHandler> handlers;
     private final ExecutorService executor;
+    private final boolean waitOnPublish;
 
     BrokerInterceptor__(List<InterceptHandler> handlers) {
+        this(handlers, false);
+    }
+
+    /**
+     * @param handlers
+     * @param waitOnPublish if publish handlers are to be run in the calling thread, before an acknowledgement is sent
+     */
+    BrokerInterceptor__(List<InterceptHandler> handlers, boolean waitOnPublish) {
         this.handlers = new CopyOnWriteArrayList<>(handlers);
+        this.waitOnPublish = waitOnPublish;
         executor = Executors.newCachedThreadPool(new ThreadFactory() {
 			int n=0;
 			@Override
@@ -104,6 +118,39 @@ final class BrokerInterceptor__ implements Interceptor {
         }
     }
 
+    /**
+     * Notify the handlers of a published message that is to be acknowledged. The handlers are run in the calling
+     * thread if waitOnPublish is set, else asynchronously as {@link #notifyTopicPublished(PublishMessage, String, String)}.
+     *
+     * @return false if a handler failed
+     */
+    boolean notifyTopicPublishedBeforeAck(final PublishMessage msg, final String clientID, final String username) {
+        if (waitOnPublish) {
+            return notifyTopicPublishedAndWait(msg, clientID, username);
+        }
+        notifyTopicPublished(msg, clientID, username);
+        return true;
+    }
+
+    /**
+     * Notify the handlers of a published message in the calling thread, so that an acknowledgement can be
+     * sent after the message has been handed over (and logged) by the handlers.
+     *
+     * @return false if a handler failed
+     */
+    boolean notifyTopicPublishedAndWait(final PublishMessage msg, final String clientID, final String username) {
+        boolean handled = true;
+        for (final InterceptHandler handler : this.handlers) {
+            try {
+                handler.onPublish(new InterceptPublishMessage(msg, clientID, username));
+            } catch (RuntimeException e) {
+                LOG.error("Publish handler failed for client " + clientID, e);
+                handled = false;
+            }
+        }
+        return handled;
+    }
+
     @Override
     public void notifyTopicSubscribed(final Subscription sub, final String username) {
         for (final InterceptHandler handler : this.handlers) {
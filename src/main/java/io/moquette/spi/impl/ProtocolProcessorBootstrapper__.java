@@ -25,6 +25,7 @@ import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 
 import io.moquette.BrokerConstants;
 import io.moquette.interception.InterceptHandler;
@@ -62,6 +63,10 @@ public class ProtocolProcessorBootstrapper__ {
 
     private BrokerInterceptor__ m_interceptor;
 
+    //MODLOG: acknowledge QoS1/2 publishes only after they are logged, if the write ahead log is enabled
+    @Value("${pub.wal.enable:false}")
+    private boolean waitOnPublish;
+
     private final ProtocolProcessor__ m_processor = new ProtocolProcessor__();
 
     public ProtocolProcessorBootstrapper__() {
@@ -106,7 +111,7 @@ public class ProtocolProcessorBootstrapper__ {
                 LOG.error("Can't load the intercept handler {}", ex);
             }
         }
-        m_interceptor = new BrokerInterceptor__(observers);
+        m_interceptor = new BrokerInterceptor__(observers, waitOnPublish);
 
         subscriptions.init(m_sessionsStore);
 
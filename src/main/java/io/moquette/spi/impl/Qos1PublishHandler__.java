@@ -63,11 +63,16 @@ class Qos1PublishHandler__ implements PublishHandler{
         //this.publisher.publish2Subscribers(toStoreMsg, topicMatchingSubscriptions);
         
         String username = NettyUtils.userName(channel);
-        m_interceptor.notifyTopicPublished(msg, clientID, username);
+        //MODLOG: with the write ahead log, handlers are notified in this thread, so that PUBACK is sent only once the message is logged
+        boolean handled = m_interceptor.notifyTopicPublishedBeforeAck(msg, clientID, username);
         //ENDMODLOG
 
         //send PUBACK
         final Integer messageID = msg.getMessageID();
+        if (!handled) {
+            LOG.warn("not replying with PubAck to MSG ID {}, the client will redeliver", messageID);
+            return;
+        }
         if (msg.isLocal()) {
             sendPubAck(clientID, messageID);
         }
@@ -118,7 +118,10 @@ class Qos2PublishHandler__ implements PublishHandler{
         this.publisher.publish2Subscribers(evt, topicMatchingSubscriptions);*/
         
         String username = NettyUtils.userName(channel);
-        m_interceptor.notifyTopicPublished(asPublishMessage(evt), clientID, username);
+        if (!m_interceptor.notifyTopicPublishedBeforeAck(asPublishMessage(evt), clientID, username)) {
+            LOG.warn("not replying with PubComp to MSG ID {}, the client will redeliver", messageID);
+            return;
+        }
         //ENDMODLOG
 
         /*if (evt.isRetained()) {
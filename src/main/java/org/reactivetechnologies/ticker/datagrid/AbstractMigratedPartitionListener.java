@@ -15,17 +15,50 @@
  */
 package org.reactivetechnologies.ticker.datagrid;
 
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Observable;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.IMap;
+import com.hazelcast.core.Member;
 import com.hazelcast.core.MigrationEvent;
-import com.hazelcast.query.Predicate;
-
+import com.hazelcast.map.impl.proxy.MapProxyImpl;
+/**
+ * Hands off the entries of partitions migrated to this member. Migration events are handled off the migration thread. 
+ * Repeated events for a partition not yet handed off are coalesced, and each processing map is read only for the 
+ * migrated partition, in pages.
+ * @author esutdal
+ *
+ */
 public abstract class AbstractMigratedPartitionListener implements MigratedPartitionListener {
 
+	private static final Logger log = LoggerFactory.getLogger(AbstractMigratedPartitionListener.class);
+	/**
+	 * Max entries per {@linkplain #onMigratedEntries(IMap, Map)} callback.
+	 */
+	public static final int HANDOFF_PAGE_SIZE = 1000;
+	
+	private static final ExecutorService handoff = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "ticker-migration-handoff");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+	private final Set<Integer> pendingPartitions = ConcurrentHashMap.newKeySet();
+	
 	@Override
 	public void update(Observable o, Object event) {
 		if(event instanceof MigrationEvent)
@@ -40,28 +73,79 @@ public abstract class AbstractMigratedPartitionListener implements MigratedParti
 	
 	private void fireOnMigration(MigrationEvent event) 
 	{
+		final Integer partitionId = event.getPartitionId();
+		if(!pendingPartitions.add(partitionId))
+			return;
+		
+		handoff.execute(new Runnable() {
+			
+			@Override
+			public void run() {
+				//remove before reading, so that a later event is not lost
+				pendingPartitions.remove(partitionId);
+				try {
+					handOffPartition(partitionId);
+				} catch (Exception e) {
+					log.error("Migrated partition handoff failed for partition "+partitionId, e);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * If the partition is (still) owned by this member. The partition may have migrated again by the time it is handed off.
+	 * @param partitionId
+	 * @return
+	 */
+	private boolean isLocallyOwned(int partitionId)
+	{
+		Member owner = hazelcast.getPartitionService().getPartition(partitionId).getOwner();
+		return owner != null && owner.localMember();
+	}
+	@SuppressWarnings("unchecked")
+	private void handOffPartition(int partitionId)
+	{
+		if(!isLocallyOwned(partitionId))
+		{
+			log.debug("Skipping handoff of partition "+partitionId+", not owned by this member");
+			return;
+		}
 		IMap<Object, Object> map;
 		for(String mapName : processingMaps())
 		{
 			map = hazelcast.getMap(mapName);
-			Set<Object> migratedKeySet = map.localKeySet(new Predicate<Object, Object>() {
-
-				/**
-				 * 
-				 */
-				private static final long serialVersionUID = 1L;
-
-				@Override
-				public boolean apply(Entry<Object, Object> mapEntry) {
-					return event.getPartitionId() == hazelcast.getPartitionService().getPartition(mapEntry.getKey())
-							.getPartitionId();
+			Map<Object, Object> page = new LinkedHashMap<>();
+			Iterator<Entry<Object, Object>> iter = ((MapProxyImpl<Object, Object>) map).iterator(HANDOFF_PAGE_SIZE, partitionId, true);
+			while(iter.hasNext())
+			{
+				Entry<Object, Object> entry = iter.next();
+				if(entry.getValue() == null)
+					continue;
+				page.put(entry.getKey(), entry.getValue());
+				if(page.size() >= HANDOFF_PAGE_SIZE)
+				{
+					if(!handOffPage(map, page, partitionId))
+						return;
+					page = new LinkedHashMap<>();
 				}
-
-				
-			});
-			
-			onMigratedKeySet(map, migratedKeySet);
+			}
+			if(!page.isEmpty() && !handOffPage(map, page, partitionId))
+				return;
+		}
+	}
+	/**
+	 * Hand off a page, if the partition is still owned by this member. Else the new owner will hand it off.
+	 * @return false if the partition has migrated away
+	 */
+	private boolean handOffPage(IMap<Object, Object> map, Map<Object, Object> page, int partitionId)
+	{
+		if(!isLocallyOwned(partitionId))
+		{
+			log.debug("Stopping handoff of partition "+partitionId+", migrated away from this member");
+			return false;
 		}
+		onMigratedEntries(map, page);
+		return true;
 	}
 	
 }
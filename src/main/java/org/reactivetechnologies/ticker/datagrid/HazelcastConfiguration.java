@@ -47,6 +47,7 @@ public class HazelcastConfiguration {
 		.setEnableCompression(true)
 		.setUseNativeByteOrder(true)
 		.setHazelcastInstance(hazelcastInstance.hazelcast)
+		.addDataSerializableFactory(TickerDataSerializableFactory.FACTORY_ID, new TickerDataSerializableFactory())
 		.build();
 	}
 	@Bean
@@ -24,12 +24,16 @@ import javax.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.BeanInitializationException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.hazelcast.HazelcastProperties;
 import org.springframework.core.io.Resource;
 import org.springframework.util.ResourceUtils;
 import org.springframework.util.StringUtils;
 
 import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.config.MapStoreConfig;
+import com.hazelcast.config.MapStoreConfig.InitialLoadMode;
 import com.hazelcast.config.XmlConfigBuilder;
 import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
@@ -67,6 +71,57 @@ class HazelcastInstanceWrapper {
 		return config;
 	}
 	private boolean hasInstanceId;
+	
+	@Value("${datagrid.store.maps:}")
+	private String storeMaps;
+	@Value("${datagrid.store.dir:store}")
+	private String storeDir;
+	@Value("${datagrid.store.write_delay_seconds:1}")
+	private int storeWriteDelaySeconds;
+	@Value("${datagrid.store.write_batch_size:1000}")
+	private int storeWriteBatchSize;
+	@Value("${datagrid.store.compact_min_kb:1024}")
+	private long storeCompactMinKb;
+	/**
+	 * Configure a write-behind {@linkplain QueueMapStore} for the queue maps to be persisted.
+	 * @param hzConfig
+	 */
+	/**
+	 * Whether this member can join other members, by any of the join mechanisms.
+	 * @param join
+	 * @return
+	 */
+	private static boolean isJoinEnabled(JoinConfig join)
+	{
+		return join.getMulticastConfig().isEnabled() || join.getTcpIpConfig().isEnabled() || join.getAwsConfig().isEnabled()
+				|| join.getDiscoveryConfig().isEnabled();
+	}
+	private void setMapStores(Config hzConfig)
+	{
+		for(String name : StringUtils.commaDelimitedListToStringArray(storeMaps))
+		{
+			name = name.trim();
+			if(!StringUtils.hasText(name))
+				continue;
+			if(isJoinEnabled(hzConfig.getNetworkConfig().getJoin()))
+			{
+				//the store files are local, and are not handed over on partition migration
+				throw new BeanInitializationException("Queue map store (datagrid.store.maps) is for a standalone member only. "
+						+ "Disable the multicast, tcp-ip, aws and discovery joins in the Hazelcast configuration to use it");
+			}
+			MapStoreConfig storeConfig = new MapStoreConfig()
+					.setEnabled(true)
+					.setFactoryImplementation(QueueMapStore.FACTORY)
+					.setProperty(QueueMapStore.PROP_DIR, storeDir)
+					.setProperty(QueueMapStore.PROP_COMPACT_MIN_BYTES, String.valueOf(storeCompactMinKb * 1024))
+					.setWriteDelaySeconds(storeWriteDelaySeconds)
+					.setWriteBatchSize(storeWriteBatchSize)
+					.setWriteCoalescing(true)
+					.setInitialLoadMode(InitialLoadMode.LAZY);
+			hzConfig.getMapConfig(name).setMapStoreConfig(storeConfig);
+			log.info("Queue map store configured for ["+name+"]");
+		}
+	}
 	/**
 	 * Set properties and etc..
 	 * @param hzConfig
@@ -79,12 +134,14 @@ class HazelcastInstanceWrapper {
 			hzConfig.getGroupConfig().setPassword(groupPwd);
 		
 		hzConfig.setProperty("hazelcast.shutdownhook.enabled", "false");
+		hzConfig.getSerializationConfig().addDataSerializableFactory(TickerDataSerializableFactory.FACTORY_ID, new TickerDataSerializableFactory());
 		if(StringUtils.hasText(instanceId))
 		{
 			hzConfig.setInstanceName(instanceId);
 			hzConfig.getMemberAttributeConfig().setStringAttribute(NODE_INSTANCE_ID, instanceId);
 			hasInstanceId = true;
 		}
+		setMapStores(hzConfig);
 	}
 	private HazelcastInstance getHazelcastInstance() throws IOException 
 	{
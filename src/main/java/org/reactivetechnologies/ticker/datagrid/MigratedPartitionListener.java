@@ -15,8 +15,8 @@
  */
 package org.reactivetechnologies.ticker.datagrid;
 
+import java.util.Map;
 import java.util.Observer;
-import java.util.Set;
 
 import com.hazelcast.core.HazelcastInstanceAware;
 import com.hazelcast.core.IMap;
@@ -24,11 +24,12 @@ import com.hazelcast.core.IMap;
 public interface MigratedPartitionListener extends Observer, HazelcastInstanceAware {
 
 	/**
-	 * Callback on migrated entries on one of the {@link AbstractMigratedPartitionListener#processingMaps() processingMaps}.
+	 * Callback on migrated entries on one of the {@link AbstractMigratedPartitionListener#processingMaps() processingMaps}. Invoked
+	 * with pages of the entries of a migrated partition, so may be invoked more than once for a partition.
 	 * @param processingMap
-	 * @param migratedKeySet
+	 * @param migratedEntries
 	 */
-	void onMigratedKeySet(IMap<Object, Object> processingMap, Set<Object> migratedKeySet);
+	void onMigratedEntries(IMap<Object, Object> processingMap, Map<Object, Object> migratedEntries);
 	/**
 	 * The {@linkplain IMap} names for which the migration entry listeners will be registered.
 	 * @return
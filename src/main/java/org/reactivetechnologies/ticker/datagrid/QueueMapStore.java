@@ -0,0 +1,493 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.datagrid;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hazelcast.core.Cluster;
+import com.hazelcast.core.HazelcastException;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.MapLoader;
+import com.hazelcast.core.MapLoaderLifecycleSupport;
+import com.hazelcast.core.MapStore;
+import com.hazelcast.core.MapStoreFactory;
+import com.hazelcast.core.PartitionService;
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import com.hazelcast.internal.serialization.impl.HeapData;
+/**
+ * A {@linkplain MapStore} for queue maps, backed by local append-only files, one per partition of the map. Hazelcast
+ * write-behind (with coalescing) batches the writes, so an entry which is consumed (removed) before its write is due, never 
+ * reaches the store. Removal of an entry not in the store is a no-op.
+ * <p>
+ * Record layout: byte operation, int key length, key bytes, and for a put, int value length, value bytes. A partition file is
+ * truncated when all its entries are removed, and compacted (live records copied to a new file) once it is more than half 
+ * dead records and larger than the compaction threshold. Values are read back by offset from an in-memory key index, built 
+ * when a partition file is first accessed. On restore, keys are streamed partition by partition.
+ * <p>
+ * The files are local to the member, and are not migrated with the partitions. So the store is for a <b>single member</b> 
+ * only. {@linkplain HazelcastInstanceWrapper} refuses to configure it unless all the join mechanisms are disabled, and 
+ * initialization fails if the cluster has more members anyway.
+ * @author esutdal
+ *
+ */
+public class QueueMapStore implements MapStore<Object, Object>, MapLoaderLifecycleSupport {
+
+	private static final Logger log = LoggerFactory.getLogger(QueueMapStore.class);
+	
+	public static final String PROP_DIR = "dir";
+	public static final String PROP_COMPACT_MIN_BYTES = "compact_min_bytes";
+	private static final long DEFAULT_COMPACT_MIN_BYTES = 1024 * 1024;
+	private static final String SUFFIX = ".dat";
+	private static final byte OP_PUT = 1;
+	private static final byte OP_REMOVE = 2;
+	
+	/**
+	 * A factory for a store instance per map.
+	 */
+	public static final MapStoreFactory<Object, Object> FACTORY = new MapStoreFactory<Object, Object>() {
+
+		@Override
+		public MapLoader<Object, Object> newMapStore(String mapName, Properties properties) {
+			return new QueueMapStore();
+		}
+	};
+	
+	/**
+	 * Position of a live record in a partition file.
+	 */
+	private static class Slot
+	{
+		private final long start;
+		private final int length;
+		private final long valuePos;
+		
+		Slot(long start, int length, long valuePos) {
+			this.start = start;
+			this.length = length;
+			this.valuePos = valuePos;
+		}
+	}
+	/**
+	 * Append-only file of a partition.
+	 */
+	private class PartitionFile
+	{
+		private final File file;
+		private FileChannel channel;
+		private final Map<Object, Slot> index = new HashMap<>();
+		/**
+		 * Total length of the live records.
+		 */
+		private long liveBytes;
+		
+		PartitionFile(File file) throws IOException {
+			this.file = file;
+			this.channel = new RandomAccessFile(file, "rw").getChannel();
+			scan();
+		}
+		
+		/**
+		 * Build the key index. A torn record at the end (from a crash while writing) is truncated.
+		 * @throws IOException
+		 */
+		private void scan() throws IOException
+		{
+			long size = channel.size();
+			long pos = 0, valid = 0;
+			ByteBuffer header = ByteBuffer.allocate(5);
+			try 
+			{
+				while(pos < size)
+				{
+					long start = pos;
+					header.clear();
+					pos += readFully(header, pos);
+					byte op = header.get(0);
+					byte[] key = new byte[header.getInt(1)];
+					pos += readFully(ByteBuffer.wrap(key), pos);
+					long valuePos = -1;
+					if(op == OP_PUT)
+					{
+						header.clear().limit(4);
+						pos += readFully(header, pos);
+						valuePos = pos;
+						pos += header.getInt(0);
+						if(pos > size)
+							throw new EOFException();
+					}
+					Object k = toObject(key);
+					if(valuePos != -1)
+						index(k, new Slot(start, (int) (pos - start), valuePos));
+					else
+						unindex(k);
+					valid = pos;
+				}
+			} 
+			catch (EOFException e) {
+				log.warn("["+mapName+"] Truncating torn record at the end of "+file);
+				channel.truncate(valid);
+			}
+		}
+		private int readFully(ByteBuffer buf, long pos) throws IOException
+		{
+			int n = 0;
+			while(buf.hasRemaining())
+			{
+				int r = channel.read(buf, pos + n);
+				if(r < 0)
+					throw new EOFException();
+				n += r;
+			}
+			return n;
+		}
+		
+		private void index(Object key, Slot slot)
+		{
+			unindex(key);
+			index.put(key, slot);
+			liveBytes += slot.length;
+		}
+		private boolean unindex(Object key)
+		{
+			Slot slot = index.remove(key);
+			if(slot == null)
+				return false;
+			liveBytes -= slot.length;
+			return true;
+		}
+		synchronized void put(Map<Object, byte[]> keys, Map<Object, byte[]> values) throws IOException
+		{
+			long pos = channel.size();
+			for(Entry<Object, byte[]> e : keys.entrySet())
+			{
+				byte[] key = e.getValue();
+				byte[] value = values.get(e.getKey());
+				ByteBuffer buf = ByteBuffer.allocate(9 + key.length + value.length);
+				buf.put(OP_PUT).putInt(key.length).put(key).putInt(value.length);
+				Slot slot = new Slot(pos, buf.capacity(), pos + buf.position());
+				buf.put(value).flip();
+				while(buf.hasRemaining())
+					pos += channel.write(buf, pos);
+				index(e.getKey(), slot);
+			}
+			channel.force(false);
+			compactIfNeeded();
+		}
+		/**
+		 * Remove the keys which are in this file. Keys never stored (coalesced) are ignored.
+		 * @param keys
+		 * @throws IOException
+		 */
+		synchronized void remove(Map<Object, byte[]> keys) throws IOException
+		{
+			List<byte[]> stored = new ArrayList<>(keys.size());
+			for(Entry<Object, byte[]> e : keys.entrySet())
+			{
+				if(unindex(e.getKey()))
+					stored.add(e.getValue());
+			}
+			if(stored.isEmpty())
+				return;
+			if(index.isEmpty())
+			{
+				liveBytes = 0;
+				channel.truncate(0);
+				channel.force(false);
+				return;
+			}
+			long pos = channel.size();
+			for(byte[] key : stored)
+			{
+				ByteBuffer buf = ByteBuffer.allocate(5 + key.length);
+				buf.put(OP_REMOVE).putInt(key.length).put(key).flip();
+				while(buf.hasRemaining())
+					pos += channel.write(buf, pos);
+			}
+			channel.force(false);
+			compactIfNeeded();
+		}
+		private void compactIfNeeded() throws IOException
+		{
+			long size = channel.size();
+			if(size > compactMinBytes && liveBytes < size / 2)
+				compact(size);
+		}
+		/**
+		 * Copy the live records to a new file, which then replaces this one.
+		 * @param size
+		 * @throws IOException
+		 */
+		private void compact(long size) throws IOException
+		{
+			File tmp = new File(file.getPath() + ".compact");
+			Map<Object, Slot> compacted = new HashMap<>(index.size());
+			try(FileChannel out = new RandomAccessFile(tmp, "rw").getChannel())
+			{
+				out.truncate(0);
+				long pos = 0;
+				for(Entry<Object, Slot> e : index.entrySet())
+				{
+					Slot slot = e.getValue();
+					long copied = 0;
+					while(copied < slot.length)
+						copied += channel.transferTo(slot.start + copied, slot.length - copied, out);
+					compacted.put(e.getKey(), new Slot(pos, slot.length, pos + slot.valuePos - slot.start));
+					pos += slot.length;
+				}
+				out.force(false);
+			}
+			channel.close();
+			try {
+				Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} 
+			finally {
+				channel = new RandomAccessFile(file, "rw").getChannel();
+			}
+			index.clear();
+			index.putAll(compacted);
+			log.debug("["+mapName+"] Compacted "+file+" from "+size+" to "+liveBytes+" bytes");
+		}
+		synchronized byte[] get(Object key) throws IOException
+		{
+			Slot slot = index.get(key);
+			if(slot == null)
+				return null;
+			byte[] value = new byte[(int) (slot.start + slot.length - slot.valuePos)];
+			readFully(ByteBuffer.wrap(value), slot.valuePos);
+			return value;
+		}
+		synchronized Set<Object> keys()
+		{
+			return new HashSet<>(index.keySet());
+		}
+		void close()
+		{
+			try {
+				channel.close();
+			} catch (IOException e) {
+				log.debug("", e);
+			}
+		}
+	}
+	
+	private String mapName;
+	private File dir;
+	private long compactMinBytes;
+	private Cluster cluster;
+	private PartitionService partitionService;
+	private InternalSerializationService serializer;
+	private final Map<Integer, PartitionFile> partitions = new HashMap<>();
+	
+	@Override
+	public void init(HazelcastInstance hazelcastInstance, Properties properties, final String mapName) {
+		this.mapName = mapName;
+		this.cluster = hazelcastInstance.getCluster();
+		if(cluster.getMembers().size() > 1)
+			throw new HazelcastException("["+mapName+"] Queue map store is for a single member cluster only. Members: "+cluster.getMembers());
+		this.dir = new File(properties.getProperty(PROP_DIR, "store"), mapName);
+		if(!dir.isDirectory() && !dir.mkdirs())
+			throw new HazelcastException("Unable to create store directory "+dir);
+		this.compactMinBytes = Long.parseLong(properties.getProperty(PROP_COMPACT_MIN_BYTES, String.valueOf(DEFAULT_COMPACT_MIN_BYTES)));
+		this.partitionService = hazelcastInstance.getPartitionService();
+		this.serializer = new DefaultSerializationServiceBuilder()
+				.addDataSerializableFactory(TickerDataSerializableFactory.FACTORY_ID, new TickerDataSerializableFactory())
+				.build();
+		log.info("["+mapName+"] Queue map store at "+dir.getAbsolutePath());
+	}
+
+	@Override
+	public void destroy() {
+		synchronized (partitions) {
+			for(PartitionFile f : partitions.values())
+				f.close();
+			partitions.clear();
+		}
+		serializer.dispose();
+	}
+	
+	private Object toObject(byte[] b)
+	{
+		return serializer.toObject(new HeapData(b));
+	}
+	private PartitionFile partition(int partitionId)
+	{
+		synchronized (partitions) {
+			PartitionFile f = partitions.get(partitionId);
+			if(f == null)
+			{
+				try {
+					f = new PartitionFile(new File(dir, partitionId + SUFFIX));
+				} catch (IOException e) {
+					throw new HazelcastException("Unable to open store file for partition "+partitionId, e);
+				}
+				partitions.put(partitionId, f);
+			}
+			return f;
+		}
+	}
+	private Map<Integer, Map<Object, byte[]>> keysByPartition(Collection<?> keys)
+	{
+		Map<Integer, Map<Object, byte[]>> byPartition = new HashMap<>();
+		for(Object key : keys)
+		{
+			int id = partitionService.getPartition(key).getPartitionId();
+			Map<Object, byte[]> group = byPartition.get(id);
+			if(group == null)
+			{
+				group = new HashMap<>();
+				byPartition.put(id, group);
+			}
+			group.put(key, serializer.toBytes(key));
+		}
+		return byPartition;
+	}
+	
+	@Override
+	public Object load(Object key) {
+		return loadAll(Collections.singleton(key)).get(key);
+	}
+
+	@Override
+	public Map<Object, Object> loadAll(Collection<Object> keys) {
+		Map<Object, Object> loaded = new HashMap<>();
+		try 
+		{
+			for(Entry<Integer, Map<Object, byte[]>> group : keysByPartition(keys).entrySet())
+			{
+				PartitionFile f = partition(group.getKey());
+				for(Object key : group.getValue().keySet())
+				{
+					byte[] value = f.get(key);
+					if(value != null)
+						loaded.put(key, toObject(value));
+				}
+			}
+		} 
+		catch (IOException e) {
+			throw new HazelcastException("["+mapName+"] Unable to load from store", e);
+		}
+		return loaded;
+	}
+
+	/**
+	 * Keys are streamed partition by partition, so only one partition file is scanned at a time, as Hazelcast consumes the keys.
+	 */
+	@Override
+	public Iterable<Object> loadAllKeys() {
+		final File[] files = dir.listFiles(new FilenameFilter() {
+			
+			@Override
+			public boolean accept(File d, String name) {
+				return name.endsWith(SUFFIX) && new File(d, name).length() > 0;
+			}
+		});
+		if(files.length > 0)
+			log.info("["+mapName+"] Restoring entries of "+files.length+" partitions from store");
+		return new Iterable<Object>() {
+			
+			@Override
+			public Iterator<Object> iterator() {
+				return new Iterator<Object>() {
+					private int next = 0;
+					private Iterator<Object> keys = Collections.emptyIterator();
+					
+					@Override
+					public boolean hasNext() {
+						while(!keys.hasNext() && next < files.length)
+						{
+							String name = files[next++].getName();
+							keys = partition(Integer.parseInt(name.substring(0, name.length() - SUFFIX.length()))).keys().iterator();
+						}
+						return keys.hasNext();
+					}
+
+					@Override
+					public Object next() {
+						if(!hasNext())
+							throw new NoSuchElementException();
+						return keys.next();
+					}
+				};
+			}
+		};
+	}
+
+	@Override
+	public void store(Object key, Object value) {
+		storeAll(Collections.singletonMap(key, value));
+	}
+
+	@Override
+	public void storeAll(Map<Object, Object> map) {
+		try 
+		{
+			for(Entry<Integer, Map<Object, byte[]>> group : keysByPartition(map.keySet()).entrySet())
+			{
+				Map<Object, byte[]> values = new HashMap<>();
+				for(Object key : group.getValue().keySet())
+					values.put(key, serializer.toBytes(map.get(key)));
+				partition(group.getKey()).put(group.getValue(), values);
+			}
+		} 
+		catch (IOException e) {
+			throw new HazelcastException("["+mapName+"] Unable to write to store", e);
+		}
+	}
+
+	@Override
+	public void delete(Object key) {
+		deleteAll(Collections.singleton(key));
+	}
+
+	@Override
+	public void deleteAll(Collection<Object> keys) {
+		try 
+		{
+			for(Entry<Integer, Map<Object, byte[]>> group : keysByPartition(keys).entrySet())
+			{
+				partition(group.getKey()).remove(group.getValue());
+			}
+		} 
+		catch (IOException e) {
+			throw new HazelcastException("["+mapName+"] Unable to delete from store", e);
+		}
+	}
+
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.datagrid;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+
+import org.reactivetechnologies.ticker.messaging.data.ByteData;
+import org.reactivetechnologies.ticker.messaging.data.MapData;
+import org.reactivetechnologies.ticker.messaging.data.ObjectData;
+import org.reactivetechnologies.ticker.messaging.data.ObjectsData;
+import org.reactivetechnologies.ticker.messaging.data.TextData;
+import org.reactivetechnologies.ticker.messaging.data.ext.LongKey;
+import org.reactivetechnologies.ticker.messaging.data.ext.LongMapData;
+import org.reactivetechnologies.ticker.messaging.data.ext.PartitionKey;
+import org.reactivetechnologies.ticker.messaging.data.ext.StringKey;
+import org.reactivetechnologies.ticker.messaging.data.ext.StringMapData;
+import org.reactivetechnologies.ticker.messaging.data.ext.TimeUIDKey;
+import org.reactivetechnologies.ticker.messaging.data.ext.TimeUIDMapData;
+import org.reactivetechnologies.ticker.mqtt.MqttData;
+import org.reactivetechnologies.ticker.scheduler.Clock;
+import org.reactivetechnologies.ticker.utils.ApplicationContextWrapper;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.DataSerializable;
+import com.hazelcast.nio.serialization.DataSerializableFactory;
+import com.hazelcast.nio.serialization.HazelcastSerializationException;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+/**
+ * {@linkplain DataSerializableFactory} for the platform data types. Hazelcast writes only the factory and type id
+ * for these types, instead of the class name, and creates instances without reflection. The type ids are part of
+ * the wire format and should never be changed or reused.
+ * <p>Note: The message types are final by contract. A subclass of a registered type has to override 
+ * {@linkplain IdentifiedDataSerializable#getFactoryId()} and {@linkplain IdentifiedDataSerializable#getId()} with its own 
+ * registered factory, else serialization will fail fast (see {@link #typeId(Object, Class, int)}), instead of reading back 
+ * as the base type. Hazelcast resolves a {@linkplain DataSerializable} before any custom serializer, so there is no 
+ * class name fallback for an unregistered subclass. Entries written with the class name (before the type ids) are still read.
+ * @author esutdal
+ *
+ */
+public class TickerDataSerializableFactory implements DataSerializableFactory {
+
+	public static final int FACTORY_ID = 1001;
+	
+	public static final int TEXT_DATA = 1;
+	public static final int BYTE_DATA = 2;
+	public static final int OBJECT_DATA = 3;
+	public static final int OBJECTS_DATA = 4;
+	public static final int MAP_DATA = 5;
+	public static final int MQTT_DATA = 6;
+	public static final int LONG_KEY = 7;
+	public static final int STRING_KEY = 8;
+	public static final int TIMEUID_KEY = 9;
+	public static final int PARTITION_KEY = 10;
+	public static final int CLOCK = 11;
+	public static final int LONG_MAP_DATA = 12;
+	public static final int STRING_MAP_DATA = 13;
+	public static final int TIMEUID_MAP_DATA = 14;
+	
+	/**
+	 * Return the type id, if the instance is exactly of the registered type. Else a subclass has not been given its own
+	 * factory, and is refused rather than written with the id of its parent.
+	 * @param instance
+	 * @param registered
+	 * @param typeId
+	 * @return
+	 */
+	public static int typeId(Object instance, Class<?> registered, int typeId)
+	{
+		if(instance.getClass() != registered)
+			throw new HazelcastSerializationException(instance.getClass().getName() + " extends " + registered.getName()
+					+ ", but does not override getFactoryId()/getId() with its own registered DataSerializableFactory");
+		return typeId;
+	}
+	
+	private static final TickerDataSerializableFactory instance = new TickerDataSerializableFactory();
+	private static final byte TYPE_ID = 1;
+	private static final byte TYPE_CLASS = 0;
+	/**
+	 * Write a type reference for the instance, to be read by {@link #readTypeRef(ObjectDataInput)}. A registered type is written 
+	 * as its type id, else as the class name. To be used by containers which write many instances of the same type.
+	 * @param out
+	 * @param instance
+	 * @throws IOException
+	 */
+	public static void writeTypeRef(ObjectDataOutput out, Object instance) throws IOException
+	{
+		if(instance instanceof IdentifiedDataSerializable && ((IdentifiedDataSerializable) instance).getFactoryId() == FACTORY_ID)
+		{
+			out.writeByte(TYPE_ID);
+			out.writeInt(((IdentifiedDataSerializable) instance).getId());
+		}
+		else
+		{
+			out.writeByte(TYPE_CLASS);
+			out.writeUTF(instance.getClass().getName());
+		}
+	}
+	/**
+	 * Read a type reference written by {@link #writeTypeRef(ObjectDataOutput, Object)}, as a supplier of new instances.
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public static Supplier<DataSerializable> readTypeRef(ObjectDataInput in) throws IOException
+	{
+		if(in.readByte() == TYPE_ID)
+		{
+			final int typeId = in.readInt();
+			return new Supplier<DataSerializable>() {
+				
+				@Override
+				public DataSerializable get() {
+					return instance.create(typeId);
+				}
+			};
+		}
+		return readTypeRef(in.readUTF());
+	}
+	/**
+	 * A supplier of new instances of the named class, for a type written as its class name.
+	 * @param type
+	 * @return
+	 * @throws IOException
+	 */
+	public static Supplier<DataSerializable> readTypeRef(String type) throws IOException
+	{
+		final Class<?> typeClass;
+		try {
+			typeClass = ClassUtils.forName(type, ClassUtils.getDefaultClassLoader());
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+		Assert.notNull(ApplicationContextWrapper.newInstance(typeClass), "Unable to instantiate "+type);
+		return new Supplier<DataSerializable>() {
+			
+			@Override
+			public DataSerializable get() {
+				return (DataSerializable) ApplicationContextWrapper.newInstance(typeClass);
+			}
+		};
+	}
+	
+	@SuppressWarnings("rawtypes")
+	@Override
+	public IdentifiedDataSerializable create(int typeId) {
+		switch(typeId)
+		{
+			case TEXT_DATA:
+				return new TextData();
+			case BYTE_DATA:
+				return new ByteData();
+			case OBJECT_DATA:
+				return new ObjectData();
+			case OBJECTS_DATA:
+				return new ObjectsData();
+			case MAP_DATA:
+				return new MapData();
+			case MQTT_DATA:
+				return new MqttData();
+			case LONG_KEY:
+				return new LongKey();
+			case STRING_KEY:
+				return new StringKey();
+			case TIMEUID_KEY:
+				return new TimeUIDKey();
+			case PARTITION_KEY:
+				return new PartitionKey();
+			case CLOCK:
+				return new Clock();
+			case LONG_MAP_DATA:
+				return new LongMapData();
+			case STRING_MAP_DATA:
+				return new StringMapData();
+			case TIMEUID_MAP_DATA:
+				return new TimeUIDMapData();
+			default:
+				return null;
+		}
+	}
+
+}
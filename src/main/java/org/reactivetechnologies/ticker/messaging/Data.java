@@ -21,6 +21,18 @@ public abstract class Data implements DataSerializable, Serializable{
 	public static final byte STATE_LOCKED = 1;
 	public static final byte STATE_PROCESSED = 2;
 	public static final byte STATE_FAILED = -1;
+	/**
+	 * Entry key is a generated id, and the entry is placed in any partition.
+	 */
+	public static final byte ROUTE_NONE = 0;
+	/**
+	 * Entry is placed in a partition owned by the publishing member.
+	 */
+	public static final byte ROUTE_LOCAL = 1;
+	/**
+	 * Entry is placed in a partition decided by the hash of its correlationID.
+	 */
+	public static final byte ROUTE_CORRELATION = 2;
 	/**
 	 * 
 	 */
@@ -33,12 +45,13 @@ public abstract class Data implements DataSerializable, Serializable{
 	private long expiryMillis = 0;
 	private short redeliveryCount = 0;
 	private byte processState = STATE_OPEN;
+	private String claimedBy = "";
 	
 	@Override
 	public String toString() {
 		return "Data [correlationID=" + correlationID + ", timestamp=" + timestamp + ", destination=" + destination
 				+ ", replyTo=" + replyTo + ", redelivered=" + redelivered + ", expiryMillis=" + expiryMillis
-				+ ", redeliveryCount=" + redeliveryCount + ", processState=" + processState + "]";
+				+ ", redeliveryCount=" + redeliveryCount + ", processState=" + processState + ", claimedBy=" + claimedBy + "]";
 	}
 
 	public byte getProcessState() {
@@ -48,31 +61,61 @@ public abstract class Data implements DataSerializable, Serializable{
 	public void setProcessState(byte processState) {
 		this.processState = processState;
 	}
+	/**
+	 * The consumer that claimed this entry, if {@linkplain #STATE_LOCKED}. Set in the grid on claiming.
+	 * @return the claimer token, or empty
+	 */
+	public String getClaimedBy() {
+		return claimedBy;
+	}
+
+	public void setClaimedBy(String claimedBy) {
+		this.claimedBy = claimedBy;
+	}
 
 	private transient boolean addAsync = false;
+	private transient byte keyRouting = ROUTE_NONE;
+	
+	private transient boolean destinationImplied = false;
 	
+	/**
+	 * Writes a compact header. See {@linkplain DataHeader}.
+	 */
 	@Override
 	public void writeData(ObjectDataOutput out) throws IOException {
-		out.writeUTF(correlationID);
-		out.writeUTF(destination);
-		out.writeUTF(replyTo);
-		out.writeLong(expiryMillis);
-		out.writeLong(timestamp);
-		out.writeBoolean(redelivered);
-		out.writeShort(redeliveryCount);
-		out.writeByte(processState);
+		DataHeader.write(this, out);
 	}
-
+	/**
+	 * Reads a compact header, or a legacy header from entries written by an older version.
+	 */
 	@Override
 	public void readData(ObjectDataInput in) throws IOException {
-		setCorrelationID(in.readUTF());
-		setDestination(in.readUTF());
-		setReplyTo(in.readUTF());
-		setExpiryMillis(in.readLong());
-		setTimestamp(in.readLong());
-		setRedelivered(in.readBoolean());
-		setRedeliveryCount(in.readShort());
-		setProcessState(in.readByte());
+		DataHeader.read(this, in);
+	}
+	/**
+	 * Whether the destination is omitted on serialization, being same as the name of the map this entry is stored in.
+	 * @return
+	 */
+	public boolean isDestinationImplied() {
+		return destinationImplied;
+	}
+	/**
+	 * Set to omit the destination on serialization, since a queue entry is always stored in the map named by its destination.
+	 * Only the queue containers restore it on consumption, with {@link #resolveDestination(String)}. Any other reader of the map
+	 * (for e.g. a plain {@linkplain com.hazelcast.core.IMap#get(Object) get}) sees an empty destination, hence publishers do not 
+	 * set this. To be set by an application whose queue maps are read by the containers alone.
+	 * @param destinationImplied
+	 */
+	public void setDestinationImplied(boolean destinationImplied) {
+		this.destinationImplied = destinationImplied;
+	}
+	/**
+	 * Restore an omitted destination from the name of the map this entry was read from.
+	 * @param mapName
+	 */
+	public void resolveDestination(String mapName) {
+		if(destination == null || destination.isEmpty())
+			setDestination(mapName);
 	}
 		
 	public String getCorrelationID() {
@@ -153,4 +196,21 @@ public abstract class Data implements DataSerializable, Serializable{
 		this.addAsync = addAsync;
 	}
 	
-}
\ No newline at end of file
+	/**
+	 * 
+	 * @return
+	 */
+	public byte getKeyRouting() {
+		return keyRouting;
+	}
+	/**
+	 * Set how the entry key is to be partitioned on publishing. One of {@link #ROUTE_NONE} (default), {@link #ROUTE_LOCAL}
+	 * or {@link #ROUTE_CORRELATION}. Entries routed by correlationID share a partition per correlationID. An empty correlationID
+	 * falls back to {@link #ROUTE_NONE}.
+	 * @param keyRouting
+	 */
+	public void setKeyRouting(byte keyRouting) {
+		this.keyRouting = keyRouting;
+	}
+	
+}
@@ -0,0 +1,199 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import com.hazelcast.nio.BufferObjectDataInput;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+/**
+ * Compact wire format for the {@linkplain Data} header. The header starts with a version marker, followed by a
+ * bitmask of the fields present. Timestamps are written as varints, a UUID correlation id in 16 binary bytes, and
+ * empty strings/default values are not written at all. The destination is omitted if marked as implied by the map name ({@linkplain Data#setDestinationImplied(boolean)}).
+ * <p>Entries written before this format (plain UTF/long fields) are still read, by peeking at the marker. The claimer
+ * is written last, and only if flagged, so version 2 headers written without it read as unclaimed.
+ * @author esutdal
+ *
+ */
+final class DataHeader {
+
+	private DataHeader() {
+	}
+	/**
+	 * Marker for the compact header, version 2. A legacy header starts with the UTF length of correlationID, 
+	 * which is never a negative value other than -1 (null).
+	 */
+	static final int MARKER_V2 = 0x80000002;
+	
+	private static final int F_CORR_UUID = 1;
+	private static final int F_CORR_STRING = 1 << 1;
+	private static final int F_DESTINATION = 1 << 2;
+	private static final int F_REPLY_TO = 1 << 3;
+	private static final int F_REDELIVERED = 1 << 4;
+	private static final int F_EXPIRY = 1 << 5;
+	private static final int F_REDELIVERY_COUNT = 1 << 6;
+	private static final int F_CLAIMED_BY = 1 << 7;
+	
+	private static boolean hasText(String s)
+	{
+		return s != null && !s.isEmpty();
+	}
+	private static UUID asUUID(String s)
+	{
+		if(s.length() != 36)
+			return null;
+		try 
+		{
+			UUID u = UUID.fromString(s);
+			//only if it can be restored exactly
+			return u.toString().equals(s) ? u : null;
+		} 
+		catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+	static void writeVarLong(ObjectDataOutput out, long v) throws IOException
+	{
+		while ((v & ~0x7FL) != 0) {
+			out.writeByte((int) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		out.writeByte((int) v);
+	}
+	static long readVarLong(ObjectDataInput in) throws IOException
+	{
+		long v = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = in.readByte();
+			v |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return v;
+	}
+	/**
+	 * 
+	 * @param d
+	 * @param out
+	 * @throws IOException
+	 */
+	static void write(Data d, ObjectDataOutput out) throws IOException
+	{
+		int flags = 0;
+		UUID corrId = null;
+		if(hasText(d.getCorrelationID()))
+		{
+			corrId = asUUID(d.getCorrelationID());
+			flags |= corrId != null ? F_CORR_UUID : F_CORR_STRING;
+		}
+		if(!d.isDestinationImplied() && hasText(d.getDestination()))
+			flags |= F_DESTINATION;
+		if(hasText(d.getReplyTo()))
+			flags |= F_REPLY_TO;
+		if(d.isRedelivered())
+			flags |= F_REDELIVERED;
+		if(d.getExpiryMillis() != 0)
+			flags |= F_EXPIRY;
+		if(d.getRedeliveryCount() != 0)
+			flags |= F_REDELIVERY_COUNT;
+		if(hasText(d.getClaimedBy()))
+			flags |= F_CLAIMED_BY;
+		
+		out.writeInt(MARKER_V2);
+		out.writeByte(flags);
+		if((flags & F_CORR_UUID) != 0)
+		{
+			out.writeLong(corrId.getMostSignificantBits());
+			out.writeLong(corrId.getLeastSignificantBits());
+		}
+		else if((flags & F_CORR_STRING) != 0)
+			out.writeUTF(d.getCorrelationID());
+		if((flags & F_DESTINATION) != 0)
+			out.writeUTF(d.getDestination());
+		if((flags & F_REPLY_TO) != 0)
+			out.writeUTF(d.getReplyTo());
+		writeVarLong(out, d.getTimestamp());
+		if((flags & F_EXPIRY) != 0)
+			writeVarLong(out, d.getExpiryMillis());
+		if((flags & F_REDELIVERY_COUNT) != 0)
+			out.writeShort(d.getRedeliveryCount());
+		out.writeByte(d.getProcessState());
+		if((flags & F_CLAIMED_BY) != 0)
+			out.writeUTF(d.getClaimedBy());
+	}
+	private static boolean isCompact(ObjectDataInput in) throws IOException
+	{
+		if(in instanceof BufferObjectDataInput)
+		{
+			BufferObjectDataInput buff = (BufferObjectDataInput) in;
+			return buff.readInt(buff.position()) == MARKER_V2;
+		}
+		return true;
+	}
+	/**
+	 * 
+	 * @param d
+	 * @param in
+	 * @throws IOException
+	 */
+	static void read(Data d, ObjectDataInput in) throws IOException
+	{
+		if(!isCompact(in))
+		{
+			readLegacy(d, in);
+			return;
+		}
+		int marker = in.readInt();
+		if(marker != MARKER_V2)
+			throw new IOException("Unknown Data header version marker "+Integer.toHexString(marker));
+		
+		int flags = in.readByte();
+		if((flags & F_CORR_UUID) != 0)
+			d.setCorrelationID(new UUID(in.readLong(), in.readLong()).toString());
+		else if((flags & F_CORR_STRING) != 0)
+			d.setCorrelationID(in.readUTF());
+		else
+			d.setCorrelationID("");
+		if((flags & F_DESTINATION) != 0)
+			d.setDestination(in.readUTF());
+		else
+		{
+			d.setDestination("");
+			d.setDestinationImplied(true);
+		}
+		d.setReplyTo((flags & F_REPLY_TO) != 0 ? in.readUTF() : "");
+		d.setTimestamp(readVarLong(in));
+		d.setExpiryMillis((flags & F_EXPIRY) != 0 ? readVarLong(in) : 0);
+		d.setRedeliveryCount((flags & F_REDELIVERY_COUNT) != 0 ? in.readShort() : 0);
+		d.setRedelivered((flags & F_REDELIVERED) != 0);
+		d.setProcessState(in.readByte());
+		d.setClaimedBy((flags & F_CLAIMED_BY) != 0 ? in.readUTF() : "");
+	}
+	private static void readLegacy(Data d, ObjectDataInput in) throws IOException
+	{
+		d.setCorrelationID(in.readUTF());
+		d.setDestination(in.readUTF());
+		d.setReplyTo(in.readUTF());
+		d.setExpiryMillis(in.readLong());
+		d.setTimestamp(in.readLong());
+		d.setRedelivered(in.readBoolean());
+		d.setRedeliveryCount(in.readShort());
+		d.setProcessState(in.readByte());
+	}
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging;
+
+import java.util.BitSet;
+/**
+ * Thrown from a batch consume to acknowledge a part of the batch. Entries at the failed indices 
+ * are recorded as dead letters, and the rest are committed.
+ * @author esutdal
+ *
+ */
+public class PartialBatchException extends MessageProcessingException {
+
+	private final BitSet failed;
+	/**
+	 * 
+	 * @param failed indices of the failed entries in the batch
+	 * @param cause
+	 */
+	public PartialBatchException(BitSet failed, Throwable cause) {
+		super("Batch partially processed. Failed "+failed.cardinality(), cause);
+		this.failed = failed;
+	}
+	/**
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public boolean isFailed(int index) {
+		return failed.get(index);
+	}
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+
+}
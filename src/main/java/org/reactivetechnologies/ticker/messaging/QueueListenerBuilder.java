@@ -19,6 +19,8 @@ public class QueueListenerBuilder {
 	private Class<? extends Data> data;
 	private Consumer<? extends Data> consumer;
 	private boolean useSharedPool = true;
+	private boolean blocking;
+	private boolean virtualThreads;
 	
 	public QueueListenerBuilder() {
 	}
@@ -43,6 +45,16 @@ public class QueueListenerBuilder {
 		this.useSharedPool = r;
 		return this;
 	}
+	public QueueListenerBuilder blocking(boolean r)
+	{
+		this.blocking = r;
+		return this;
+	}
+	public QueueListenerBuilder virtualThreads(boolean r)
+	{
+		this.virtualThreads = r;
+		return this;
+	}
 	
 	public <T extends Data> QueueListenerBuilder dataType(Class<T> d)
 	{
@@ -78,6 +90,18 @@ public class QueueListenerBuilder {
 			
 		}
 		
+		@Override
+		public boolean isBlocking()
+		{
+			return blocking;
+		}
+		
+		@Override
+		public boolean useVirtualThreads()
+		{
+			return virtualThreads;
+		}
+		
 		public String identifier() {
 			return identifier != null ? identifier : super.identifier();
 		}
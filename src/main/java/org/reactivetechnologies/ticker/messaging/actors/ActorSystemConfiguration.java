@@ -25,6 +25,7 @@ import org.reactivetechnologies.ticker.datagrid.HazelcastOperations;
 import org.reactivetechnologies.ticker.messaging.Data;
 import org.reactivetechnologies.ticker.messaging.base.DeadLetterHandler;
 import org.reactivetechnologies.ticker.messaging.base.ItemPartKeyGenerator;
+import org.reactivetechnologies.ticker.messaging.base.PendingEntryRecovery;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -60,7 +61,8 @@ public class ActorSystemConfiguration {
 			"akka-actor.ticker-dispatcher.executor = fork-join-executor \n" +
 			"akka-actor.ticker-dispatcher.fork-join-executor.parallelism-min = 8 \n" +
 			"akka-actor.ticker-dispatcher.fork-join-executor.parallelism-factor = 3.0 \n" +
-			"akka-actor.ticker-dispatcher.fork-join-executor.parallelism-max = 64 \n" 
+			"akka-actor.ticker-dispatcher.fork-join-executor.parallelism-max = 64 \n" +
+			"akka-actor.ticker-worker-mailbox.mailbox-type = \"akka.dispatch.SingleConsumerOnlyUnboundedMailbox\" \n"
 			);
 
 	@Autowired
@@ -158,6 +160,46 @@ public class ActorSystemConfiguration {
 		private boolean removeImmediate;
 		@Value("${container.process_entry_exclusive:false}")
 		private boolean checkExclusiveAccess;
+		@Value("${container.commit.batch_size:1}")
+		private int commitBatchSize;
+		@Value("${container.commit.linger_millis:10}")
+		private long commitLingerMillis;
+		@Value("${container.dispatch.mode:"+ConsumerSupervisorActor.DISPATCH_BALANCING+"}")
+		private String dispatchMode;
+		@Value("${container.consume.mode:push}")
+		private String consumeMode;
+		@Value("${container.pull.page_size:100}")
+		private int pullPageSize;
+		@Value("${container.pull.max_inflight:1000}")
+		private int pullMaxInFlight;
+		@Value("${container.pull.max_backoff_millis:100}")
+		private long pullMaxBackoffMillis;
+		@Value("${container.recovery.threads:"+PendingEntryRecovery.DEFAULT_PARALLELISM+"}")
+		private int recoveryThreads;
+		@Value("${container.recovery.page_size:"+PendingEntryRecovery.DEFAULT_PAGE_SIZE+"}")
+		private int recoveryPageSize;
+		@Value("${container.recovery.max_inflight:"+PendingEntryRecovery.DEFAULT_MAX_IN_FLIGHT+"}")
+		private int recoveryMaxInFlight;
+		@Value("${container.autoscale.enable:false}")
+		private boolean autoscale;
+		@Value("${container.autoscale.min_workers:1}")
+		private int autoscaleMinWorkers;
+		@Value("${container.autoscale.max_workers:16}")
+		private int autoscaleMaxWorkers;
+		@Value("${container.autoscale.target_drain_millis:1000}")
+		private long autoscaleTargetDrainMillis;
+		@Value("${container.autoscale.interval_millis:1000}")
+		private long autoscaleIntervalMillis;
+		@Value("${container.dispatcher.threads:0}")
+		private int dispatcherThreads;
+		@Value("${container.dispatcher.executor:"+ListenerDispatchers.EXECUTOR_THREAD_POOL+"}")
+		private String dispatcherExecutor;
+		@Value("${container.dispatcher.blocking_threads:32}")
+		private int blockingThreads;
+		@Value("${container.virtual.max_inflight:1000}")
+		private int virtualMaxInFlight;
+		@Value("${container.virtual.fallback_threads:64}")
+		private int virtualFallbackThreads;
 		/**
 		 * 
 		 */
@@ -171,6 +213,20 @@ public class ActorSystemConfiguration {
 				log.warn("'clear_all_pending' is set to TRUE. This is not advisable in production environment!");
 			qc.setRemoveImmediate(removeImmediate);
 			qc.setCheckExclusiveAccess(checkExclusiveAccess);
+			qc.setCommitBatchSize(commitBatchSize);
+			qc.setCommitLingerMillis(commitLingerMillis);
+			qc.setDispatchMode(dispatchMode.trim().toLowerCase());
+			boolean pullMode = "pull".equalsIgnoreCase(consumeMode.trim());
+			qc.setPullMode(pullMode);
+			if(pullMode && qc.isClearAllPendingEntries())
+				log.warn("'clear_all_pending' is ignored in 'pull' consume mode. Only the locally owned partitions are scanned");
+			qc.setPullPageSize(pullPageSize);
+			qc.setPullMaxInFlight(pullMaxInFlight);
+			qc.setPullMaxBackoffMillis(pullMaxBackoffMillis);
+			qc.setRecovery(new PendingEntryRecovery(ops.hazelcastInstance(), recoveryThreads, recoveryPageSize, recoveryMaxInFlight));
+			if(autoscale)
+				qc.setAutoscale(new AdaptiveWorkerResizer.Settings(autoscaleMinWorkers, autoscaleMaxWorkers, autoscaleTargetDrainMillis, autoscaleIntervalMillis));
+			qc.setDispatchers(new ListenerDispatchers(dispatcherThreads, dispatcherExecutor, blockingThreads, virtualMaxInFlight, virtualFallbackThreads));
 			qc.migrationListener = migrListener;
 			qc.deadLetterHandler = dlHandler;
 			return qc;
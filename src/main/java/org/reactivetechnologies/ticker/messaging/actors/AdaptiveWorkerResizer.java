@@ -0,0 +1,280 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.actors;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hazelcast.core.IMap;
+
+import akka.routing.Resizer;
+import akka.routing.Routee;
+import scala.collection.immutable.IndexedSeq;
+/**
+ * Grows and shrinks a worker pool within bounds, based on the estimated time to drain the local backlog. The backlog is 
+ * the larger of the locally owned queue entries and the entries dispatched to workers but not yet ended (mailbox and 
+ * processing). The drain time is backlog * p99 processing time / workers.
+ * <p>
+ * The pool grows when the drain time is above the target for {@value #SCALE_UP_CHECKS} consecutive checks, and shrinks when 
+ * it is below a quarter of the target for {@value #SCALE_DOWN_CHECKS} consecutive checks. Checks are made at most once per 
+ * interval, when a message is routed. The supervisor routes a {@linkplain #RESIZE_TICK tick} every interval, so that an idle 
+ * pool is checked as well. The metrics are exposed over JMX as a {@linkplain WorkerPoolMXBean}.
+ * @author esutdal
+ *
+ */
+class AdaptiveWorkerResizer implements Resizer, WorkerPoolMXBean, Serializable {
+
+	private static final long serialVersionUID = 1L;
+	private static final Logger log = LoggerFactory.getLogger(AdaptiveWorkerResizer.class);
+	
+	static final int SCALE_UP_CHECKS = 2;
+	static final int SCALE_DOWN_CHECKS = 5;
+	private static final int LATENCY_SAMPLES = 1024;
+	private static final String JMX_DOMAIN = "org.reactivetechnologies.ticker";
+	/**
+	 * Routed to the pool periodically, to trigger a resize check while no entries are being dispatched. Ignored by the workers.
+	 */
+	static final Object RESIZE_TICK = new Object() {
+		@Override
+		public String toString() {
+			return "RESIZE_TICK";
+		}
+	};
+	/**
+	 * Autoscaling configuration.
+	 */
+	static final class Settings
+	{
+		final int minWorkers;
+		final int maxWorkers;
+		final long targetDrainMillis;
+		final long intervalMillis;
+		/**
+		 * 
+		 * @param minWorkers
+		 * @param maxWorkers
+		 * @param targetDrainMillis
+		 * @param intervalMillis
+		 */
+		Settings(int minWorkers, int maxWorkers, long targetDrainMillis, long intervalMillis) {
+			this.minWorkers = Math.max(1, minWorkers);
+			this.maxWorkers = Math.max(this.minWorkers, maxWorkers);
+			this.targetDrainMillis = Math.max(1, targetDrainMillis);
+			this.intervalMillis = Math.max(1, intervalMillis);
+		}
+		/**
+		 * The initial pool size, within bounds.
+		 * @param parallelism
+		 * @return
+		 */
+		int initialWorkers(int parallelism)
+		{
+			return Math.min(maxWorkers, Math.max(minWorkers, parallelism));
+		}
+	}
+	
+	private final Settings settings;
+	private final transient IMap<?, ?> queueMap;
+	
+	private final LongAdder inFlight = new LongAdder();
+	private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_SAMPLES);
+	private final AtomicLong latencyCount = new AtomicLong();
+	private final AtomicLong nextCheckAt = new AtomicLong();
+	
+	//resize is invoked by the router, one at a time
+	private int upStreak, downStreak;
+	
+	private volatile int workers;
+	private volatile long backlog;
+	private volatile long p99Micros;
+	private volatile long drainMillis;
+	private final AtomicLong scaleUps = new AtomicLong();
+	private final AtomicLong scaleDowns = new AtomicLong();
+	private transient ObjectName jmxName;
+	/**
+	 * 
+	 * @param settings
+	 * @param queueMap
+	 */
+	AdaptiveWorkerResizer(Settings settings, IMap<?, ?> queueMap) {
+		this.settings = settings;
+		this.queueMap = queueMap;
+	}
+	/**
+	 * Register the metrics as a {@linkplain WorkerPoolMXBean}, replacing one registered for the queue by a previous incarnation.
+	 */
+	void registerMBean()
+	{
+		try 
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(JMX_DOMAIN + ":type=WorkerPool,name=" + ObjectName.quote(queueMap.getName()));
+			if(server.isRegistered(name))
+				server.unregisterMBean(name);
+			server.registerMBean(this, name);
+			jmxName = name;
+		} 
+		catch (JMException e) {
+			log.warn("["+queueMap.getName()+"] worker pool metrics not registered to JMX. "+e);
+		}
+	}
+	/**
+	 * 
+	 */
+	void unregisterMBean()
+	{
+		if(jmxName == null)
+			return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(jmxName);
+		} catch (JMException e) {
+			log.debug("", e);
+		}
+		jmxName = null;
+	}
+	/**
+	 * An entry has been dispatched to a worker.
+	 */
+	void dispatched()
+	{
+		inFlight.increment();
+	}
+	/**
+	 * A dispatched entry has ended, committed or not.
+	 */
+	void ended()
+	{
+		inFlight.decrement();
+	}
+	/**
+	 * Record the processing time of an entry.
+	 * @param nanos
+	 */
+	void recordLatency(long nanos)
+	{
+		latencies.set((int) (latencyCount.getAndIncrement() & (LATENCY_SAMPLES - 1)), nanos);
+	}
+	
+	private long p99Nanos()
+	{
+		int n = (int) Math.min(latencyCount.get(), LATENCY_SAMPLES);
+		if(n == 0)
+			return 0;
+		long[] samples = new long[n];
+		for (int i = 0; i < n; i++) {
+			samples[i] = latencies.get(i);
+		}
+		Arrays.sort(samples);
+		return samples[(int) Math.ceil(n * 0.99) - 1];
+	}
+	
+	@Override
+	public boolean isTimeForResize(long messageCounter) {
+		long now = System.currentTimeMillis();
+		long at = nextCheckAt.get();
+		return now >= at && nextCheckAt.compareAndSet(at, now + settings.intervalMillis);
+	}
+
+	@Override
+	public int resize(IndexedSeq<Routee> currentRoutees) {
+		int current = Math.max(1, currentRoutees.size());
+		long p99 = p99Nanos();
+		long depth = Math.max(queueMap.getLocalMapStats().getOwnedEntryCount(), inFlight.sum());
+		long drain = depth * p99 / current / 1000000;
+		
+		int delta = 0;
+		if(drain > settings.targetDrainMillis && current < settings.maxWorkers)
+		{
+			downStreak = 0;
+			if(++upStreak >= SCALE_UP_CHECKS)
+			{
+				upStreak = 0;
+				delta = Math.min(settings.maxWorkers - current, Math.max(1, current / 2));
+				scaleUps.incrementAndGet();
+			}
+		}
+		else if(drain < settings.targetDrainMillis / 4 && current > settings.minWorkers)
+		{
+			upStreak = 0;
+			if(++downStreak >= SCALE_DOWN_CHECKS)
+			{
+				downStreak = 0;
+				delta = -Math.min(current - settings.minWorkers, Math.max(1, current / 4));
+				scaleDowns.incrementAndGet();
+			}
+		}
+		else
+		{
+			upStreak = 0;
+			downStreak = 0;
+		}
+		
+		workers = current + delta;
+		backlog = depth;
+		p99Micros = p99 / 1000;
+		drainMillis = drain;
+		if(delta != 0)
+			log.info("["+queueMap.getName()+"] resizing workers "+current+" -> "+workers+". "+this);
+		return delta;
+	}
+	
+	@Override
+	public int getWorkers() {
+		return workers;
+	}
+	@Override
+	public long getBacklog() {
+		return backlog;
+	}
+	@Override
+	public long getInFlight() {
+		return inFlight.sum();
+	}
+	@Override
+	public long getP99Micros() {
+		return p99Micros;
+	}
+	@Override
+	public long getDrainMillis() {
+		return drainMillis;
+	}
+	@Override
+	public long getScaleUps() {
+		return scaleUps.get();
+	}
+	@Override
+	public long getScaleDowns() {
+		return scaleDowns.get();
+	}
+	@Override
+	public String toString() {
+		return "AdaptiveWorkerResizer [workers=" + workers + ", backlog=" + backlog + ", inFlight=" + getInFlight()
+				+ ", p99Micros=" + p99Micros + ", drainMillis=" + drainMillis + ", scaleUps=" + getScaleUps()
+				+ ", scaleDowns=" + getScaleDowns() + "]";
+	}
+
+}
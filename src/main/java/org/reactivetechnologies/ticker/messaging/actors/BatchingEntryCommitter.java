@@ -0,0 +1,265 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.actors;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hazelcast.core.ExecutionCallback;
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.PartitionService;
+import com.hazelcast.map.AbstractEntryProcessor;
+/**
+ * Gathers the keys of committed (consumed) entries per partition, and removes them with a single
+ * {@linkplain IMap#executeOnKeys(java.util.Set, com.hazelcast.map.EntryProcessor) executeOnKeys} call, when 
+ * either the batch size is reached or the linger time has elapsed. Keys can be committed from any thread.
+ * @author esutdal
+ *
+ */
+class BatchingEntryCommitter {
+
+	private static final Logger log = LoggerFactory.getLogger(BatchingEntryCommitter.class);
+	
+	private static final ScheduledExecutorService flusher = Executors.newScheduledThreadPool(2, new ThreadFactory() {
+		private final AtomicInteger n = new AtomicInteger();
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "ticker-commit-flush-" + n.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	});
+	/**
+	 * Deletes the entry on primary and backup.
+	 */
+	static class RemoveEntryProcessor extends AbstractEntryProcessor<Object, Object>
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Object process(Entry<Object, Object> entry) {
+			entry.setValue(null);
+			return null;
+		}
+	}
+	private static final RemoveEntryProcessor REMOVE = new RemoveEntryProcessor();
+	
+	private final IMap<Serializable, ?> queueMap;
+	private final PartitionService partitionService;
+	private final int batchSize;
+	private final ConcurrentMap<Integer, List<Serializable>> buckets = new ConcurrentHashMap<>();
+	private final ScheduledFuture<?> lingerTask;
+	
+	private final AtomicLong flushCount = new AtomicLong();
+	private final AtomicLong flushedKeys = new AtomicLong();
+	private final AtomicLong flushNanos = new AtomicLong();
+	private final AtomicLong maxFlushNanos = new AtomicLong();
+	/**
+	 * 
+	 * @param queueMap
+	 * @param partitionService
+	 * @param batchSize max keys per partition, before a flush is triggered
+	 * @param lingerMillis max time a key will wait before being flushed
+	 */
+	BatchingEntryCommitter(IMap<Serializable, ?> queueMap, PartitionService partitionService, int batchSize, long lingerMillis) {
+		this.queueMap = queueMap;
+		this.partitionService = partitionService;
+		this.batchSize = batchSize;
+		lingerTask = flusher.scheduleWithFixedDelay(new Runnable() {
+			
+			@Override
+			public void run() {
+				flushAll();
+			}
+		}, lingerMillis, lingerMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	private List<Serializable> bucket(Integer partition)
+	{
+		List<Serializable> bucket = buckets.get(partition);
+		if(bucket == null)
+		{
+			bucket = new ArrayList<>(batchSize);
+			List<Serializable> prev = buckets.putIfAbsent(partition, bucket);
+			if(prev != null)
+				bucket = prev;
+		}
+		return bucket;
+	}
+	private static List<Serializable> drain(List<Serializable> bucket)
+	{
+		synchronized (bucket) {
+			if(bucket.isEmpty())
+				return null;
+			List<Serializable> keys = new ArrayList<>(bucket);
+			bucket.clear();
+			return keys;
+		}
+	}
+	/**
+	 * Add a key to be removed in the next flush of its partition.
+	 * @param key
+	 */
+	void commit(Serializable key)
+	{
+		List<Serializable> bucket = bucket(partitionService.getPartition(key).getPartitionId());
+		List<Serializable> full = null;
+		synchronized (bucket) {
+			bucket.add(key);
+			if(bucket.size() >= batchSize)
+			{
+				full = new ArrayList<>(bucket);
+				bucket.clear();
+			}
+		}
+		if(full != null)
+		{
+			final List<Serializable> keys = full;
+			flusher.execute(new Runnable() {
+				
+				@Override
+				public void run() {
+					flush(keys);
+				}
+			});
+		}
+	}
+	private void flush(List<Serializable> keys)
+	{
+		long start = System.nanoTime();
+		try 
+		{
+			queueMap.executeOnKeys(new HashSet<>(keys), REMOVE);
+		} 
+		catch (Exception e) {
+			log.warn("Commit flush failed for "+keys.size()+" keys on map "+queueMap.getName()+". Removing them one by one", e);
+			removeEach(keys);
+			return;
+		}
+		long elapsed = System.nanoTime() - start;
+		flushCount.incrementAndGet();
+		flushedKeys.addAndGet(keys.size());
+		flushNanos.addAndGet(elapsed);
+		long max = maxFlushNanos.get();
+		while(elapsed > max && !maxFlushNanos.compareAndSet(max, elapsed))
+			max = maxFlushNanos.get();
+		if (log.isDebugEnabled()) {
+			log.debug("Flushed " + keys.size() + " commits in " + TimeUnit.NANOSECONDS.toMicros(elapsed) + " micros");
+		}
+	}
+	/**
+	 * Fallback for a failed bulk remove, so that committed entries are not left in the map to be redelivered.
+	 * @param keys
+	 */
+	private void removeEach(List<Serializable> keys)
+	{
+		for(Serializable key : keys)
+		{
+			try 
+			{
+				removeAsync(queueMap, key);
+			} 
+			catch (Exception e) {
+				log.error("Commit failed for key "+key+" on map "+queueMap.getName()+". Entry may be redelivered", e);
+			}
+		}
+	}
+	private <V> void removeAsync(final IMap<Serializable, V> map, final Serializable key)
+	{
+		map.removeAsync(key).andThen(new ExecutionCallback<V>() {
+
+			@Override
+			public void onResponse(V response) {
+				flushedKeys.incrementAndGet();
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				log.error("Commit failed for key "+key+" on map "+map.getName()+". Entry may be redelivered", t);
+			}
+		});
+	}
+	/**
+	 * Flush all pending keys, of all partitions, in a single bulk remove.
+	 */
+	void flushAll()
+	{
+		List<Serializable> keys = new ArrayList<>();
+		for(Map.Entry<Integer, List<Serializable>> bucket : buckets.entrySet())
+		{
+			List<Serializable> drained = drain(bucket.getValue());
+			if(drained != null)
+				keys.addAll(drained);
+		}
+		if(!keys.isEmpty())
+			flush(keys);
+	}
+	/**
+	 * Stop the linger timer and flush pending keys.
+	 */
+	void close()
+	{
+		lingerTask.cancel(false);
+		flushAll();
+		log.info("["+queueMap.getName()+"] commit flushes: "+getFlushCount()+", keys: "+getFlushedKeyCount()+", avg latency(micros): "
+		+getAvgFlushMicros()+", max latency(micros): "+getMaxFlushMicros());
+	}
+	/**
+	 * Number of bulk removes done.
+	 * @return
+	 */
+	long getFlushCount() {
+		return flushCount.get();
+	}
+	/**
+	 * Number of keys removed in bulk.
+	 * @return
+	 */
+	long getFlushedKeyCount() {
+		return flushedKeys.get();
+	}
+	/**
+	 * Average bulk remove latency in micro seconds.
+	 * @return
+	 */
+	long getAvgFlushMicros() {
+		long n = flushCount.get();
+		return n == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(flushNanos.get() / n);
+	}
+	/**
+	 * Max bulk remove latency in micro seconds.
+	 * @return
+	 */
+	long getMaxFlushMicros() {
+		return TimeUnit.NANOSECONDS.toMicros(maxFlushNanos.get());
+	}
+}
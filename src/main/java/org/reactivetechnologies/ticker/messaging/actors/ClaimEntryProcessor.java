@@ -0,0 +1,144 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.actors;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.reactivetechnologies.ticker.messaging.Data;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.Member;
+import com.hazelcast.map.AbstractEntryProcessor;
+/**
+ * Atomically moves the {@linkplain Data#getProcessState() process state} of a queue entry from {@linkplain Data#STATE_OPEN} 
+ * to {@linkplain Data#STATE_LOCKED}, on the partition thread, and records the claimer in the entry. Returns the claimed entry value, 
+ * or null if the entry is absent or already claimed. Can be executed on a single key, or on a batch of keys with 
+ * {@linkplain com.hazelcast.core.IMap#executeOnKeys(java.util.Set, com.hazelcast.map.EntryProcessor) executeOnKeys}.
+ * <p>A claimer is a token of the member uuid and a local epoch, one per consumer incarnation. A reclaim takes over a
+ * claimed entry only if its claimer is gone: the claimer member has left the cluster, or the claimer is a previous incarnation
+ * on the local member. 
+ * @author esutdal
+ *
+ */
+class ClaimEntryProcessor extends AbstractEntryProcessor<Object, Data> {
+
+	private static final long serialVersionUID = 1L;
+	private static final char EPOCH_SEPARATOR = '#';
+	private static final AtomicLong epochs = new AtomicLong();
+	private static final Set<String> liveClaimers = ConcurrentHashMap.newKeySet();
+	/**
+	 * Register a new claimer for the local member. To be {@linkplain #unregister(String) unregistered} when the consumer stops,
+	 * so that its claims can be taken over.
+	 * @param hz
+	 * @return the claimer token
+	 */
+	static String register(HazelcastInstance hz)
+	{
+		String claimer = hz.getCluster().getLocalMember().getUuid() + EPOCH_SEPARATOR + epochs.incrementAndGet();
+		liveClaimers.add(claimer);
+		return claimer;
+	}
+	/**
+	 * 
+	 * @param claimer
+	 */
+	static void unregister(String claimer)
+	{
+		liveClaimers.remove(claimer);
+	}
+	private static String memberOf(String claimer)
+	{
+		int i = claimer.lastIndexOf(EPOCH_SEPARATOR);
+		return i == -1 ? claimer : claimer.substring(0, i);
+	}
+	/**
+	 * Claim only if not claimed already.
+	 * @param claimer
+	 * @return
+	 */
+	static ClaimEntryProcessor claim(String claimer)
+	{
+		return new ClaimEntryProcessor(claimer, null, null);
+	}
+	/**
+	 * Claim if not claimed already, or if the previous claimer has gone away. To be used on recovery and on migration.
+	 * Entries claimed by a live consumer are not claimed again.
+	 * @param claimer
+	 * @param hz
+	 * @return
+	 */
+	static ClaimEntryProcessor reclaim(String claimer, HazelcastInstance hz)
+	{
+		Set<String> members = new HashSet<>();
+		for(Member m : hz.getCluster().getMembers())
+			members.add(m.getUuid());
+		
+		String local = memberOf(claimer);
+		Set<String> localClaimers = new HashSet<>();
+		for(String c : liveClaimers)
+		{
+			if(memberOf(c).equals(local))
+				localClaimers.add(c);
+		}
+		return new ClaimEntryProcessor(claimer, members, localClaimers);
+	}
+	
+	private final String claimer;
+	private final Set<String> liveMembers;
+	private final Set<String> liveLocalClaimers;
+	
+	private ClaimEntryProcessor(String claimer, Set<String> liveMembers, Set<String> liveLocalClaimers) {
+		super();
+		this.claimer = claimer;
+		this.liveMembers = liveMembers;
+		this.liveLocalClaimers = liveLocalClaimers == null ? Collections.<String>emptySet() : liveLocalClaimers;
+	}
+	/**
+	 * If the claimer of a locked entry has gone away. Entries locked before claimers were recorded are taken over.
+	 * @param claimedBy
+	 * @return
+	 */
+	private boolean isAbandoned(String claimedBy)
+	{
+		if(claimedBy == null || claimedBy.isEmpty())
+			return true;
+		String member = memberOf(claimedBy);
+		if(!liveMembers.contains(member))
+			return true;
+		return member.equals(memberOf(claimer)) && !liveLocalClaimers.contains(claimedBy);
+	}
+
+	@Override
+	public Object process(Entry<Object, Data> entry) {
+		Data value = entry.getValue();
+		if(value == null)
+			return null;
+		if(value.getProcessState() == Data.STATE_OPEN || (liveMembers != null && value.getProcessState() == Data.STATE_LOCKED && isAbandoned(value.getClaimedBy())))
+		{
+			value.setProcessState(Data.STATE_LOCKED);
+			value.setClaimedBy(claimer);
+			entry.setValue(value);
+			return value;
+		}
+		return null;
+	}
+
+}
@@ -16,13 +16,22 @@
 package org.reactivetechnologies.ticker.messaging.actors;
 
 import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 import org.reactivetechnologies.ticker.messaging.Data;
 import org.reactivetechnologies.ticker.messaging.MessageProcessingException;
+import org.reactivetechnologies.ticker.messaging.base.BatchQueueListener;
 import org.reactivetechnologies.ticker.messaging.base.DeadLetterHandler;
+import org.reactivetechnologies.ticker.messaging.base.PendingEntryRecovery;
 import org.reactivetechnologies.ticker.messaging.base.QueueListener;
 import org.reactivetechnologies.ticker.messaging.data.DataWrapper;
+import org.reactivetechnologies.ticker.messaging.dto.__BatchRequest;
 import org.reactivetechnologies.ticker.messaging.dto.__CommitRequest;
 import org.reactivetechnologies.ticker.messaging.dto.__DeadLetterRequest;
 import org.reactivetechnologies.ticker.messaging.dto.__EntryRequest;
@@ -32,20 +41,24 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.hazelcast.core.EntryEvent;
-import com.hazelcast.core.EntryEventType;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.IMap;
+import com.hazelcast.core.Member;
+import com.hazelcast.core.PartitionAware;
+import com.hazelcast.core.PartitionService;
 import com.hazelcast.map.listener.EntryAddedListener;
 import com.hazelcast.map.listener.EntryUpdatedListener;
 
 import akka.actor.ActorRef;
 import akka.actor.AllForOneStrategy;
+import akka.actor.Cancellable;
 import akka.actor.Props;
 import akka.actor.SupervisorStrategy;
 import akka.actor.SupervisorStrategy.Directive;
 import akka.actor.UntypedActor;
 import akka.japi.Function;
 import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
 
 /**
  * The supervisor actor for a particular queue listener.
@@ -56,7 +69,27 @@ import scala.concurrent.duration.Duration;
 class ConsumerSupervisorActor<T extends Data> extends UntypedActor implements EntryAddedListener<Serializable, T>,EntryUpdatedListener<Serializable, T> {
 
 	private static final Logger log = LoggerFactory.getLogger(ConsumerSupervisorActor.class);
+	/**
+	 * Workers share a single mailbox, and any idle worker picks the next message. No ordering across workers.
+	 */
+	static final String DISPATCH_BALANCING = "balancing";
+	/**
+	 * Each worker owns a set of Hazelcast partitions. Messages of a partition are processed in order, by the same worker.
+	 */
+	static final String DISPATCH_PARTITION = "partition";
+	/**
+	 * Each worker owns a set of routing key hashes. Messages of the same routing key ({@linkplain PartitionAware#getPartitionKey()}, 
+	 * as with correlation routed entries) are processed in order, by the same worker. Other keys are unique per message, and so are not ordered.
+	 */
+	static final String DISPATCH_KEY = "key";
+	/**
+	 * Mailbox of the affine workers. Only the owning worker dequeues, so a single consumer queue is used.
+	 */
+	static final String WORKER_MAILBOX = "akka-actor.ticker-worker-mailbox";
+	
 	private ActorRef workerPool;
+	private ActorRef[] workers;
+	private boolean partitionAffine;
 	private boolean clearAll, removeImmediate, checkExclusiveAccess;
 	
 	private final QueueListener<T> listener;
@@ -83,26 +116,111 @@ class ConsumerSupervisorActor<T extends Data> extends UntypedActor implements En
 	 * @param l
 	 * @param hz
 	 */
-	private ConsumerSupervisorActor(QueueListener<T> l, HazelcastInstance hz, boolean clearAll, boolean removeImmediate, boolean checkExclusiveAccess) {
+	private ConsumerSupervisorActor(QueueListener<T> l, HazelcastInstance hz, boolean clearAll, boolean removeImmediate, boolean checkExclusiveAccess, 
+			int commitBatchSize, long commitLingerMillis, String dispatchMode, boolean pullMode, int pullPageSize, int pullMaxInFlight, long pullMaxBackoffMillis,
+			PendingEntryRecovery recovery, AdaptiveWorkerResizer.Settings autoscale, ListenerDispatchers dispatchers) {
 		this.listener = l;
+		this.recovery = recovery;
 		this.hazelcast = hz;
 		this.clearAll = clearAll;
 		this.removeImmediate = removeImmediate;
 		this.checkExclusiveAccess = checkExclusiveAccess;
 		
 		this.queueMap = hazelcast.getMap(listener.routing());
+		this.recoveryCredits = new Semaphore(recovery.getMaxInFlight());
+		if(commitBatchSize > 1)
+			committer = new BatchingEntryCommitter(queueMap, hazelcast.getPartitionService(), commitBatchSize, commitLingerMillis);
+		if(pullMode)
+		{
+			puller = new PartitionPullScanner(queueMap, hazelcast, new PartitionPullScanner.Delivery() {
+				
+				@Override
+				public void deliver(Map<Serializable, Object> page) {
+					onPulledPage(page);
+				}
+			}, pullPageSize, pullMaxInFlight, pullMaxBackoffMillis);
+		}
 		
-		//akka.routing.RoundRobinPool
-		//akka.routing.SmallestMailboxPool;
-		//akka.routing.BalancingPool;
-		//configure the router pool?? 
-		workerPool = getContext().actorOf(new akka.routing.BalancingPool(listener.parallelism()).withSupervisorStrategy(strategy)
-				.props(Props.create(ConsumerWorkerActor.class, listener, this)));
+		if(listener instanceof BatchQueueListener && !DISPATCH_PARTITION.equals(dispatchMode) && !DISPATCH_KEY.equals(dispatchMode))
+		{
+			//batches are gathered per worker, so each worker needs its own mailbox
+			log.info("["+listener.routing()+"] batch listener dispatching by '"+DISPATCH_KEY+"' instead of '"+dispatchMode+"', as batches are gathered per worker");
+			dispatchMode = DISPATCH_KEY;
+		}
+		Props workerProps = Props.create(ConsumerWorkerActor.class, listener, this);
+		String dispatcher = dispatchers != null ? dispatchers.dispatcherFor(listener, getContext().system()) : null;
+		if(dispatcher != null)
+			workerProps = workerProps.withDispatcher(dispatcher);
+		execution = dispatchers != null ? dispatchers.executionFor(listener) : null;
+		
+		if(DISPATCH_PARTITION.equals(dispatchMode) || DISPATCH_KEY.equals(dispatchMode))
+		{
+			partitionAffine = DISPATCH_PARTITION.equals(dispatchMode);
+			workers = new ActorRef[listener.parallelism()];
+			for (int i = 0; i < workers.length; i++) {
+				workers[i] = getContext().actorOf(workerProps.withMailbox(WORKER_MAILBOX), "worker-"+i);
+			}
+			log.info("["+listener.routing()+"] dispatching to "+workers.length+" workers by "+dispatchMode);
+			if(autoscale != null)
+				log.warn("["+listener.routing()+"] autoscaling is not applied to '"+dispatchMode+"' dispatch, using a fixed "+workers.length+" workers");
+		}
+		else if(autoscale != null)
+		{
+			//a balancing pool cannot be resized. Each routee has its own mailbox, and the least loaded one is picked
+			resizer = new AdaptiveWorkerResizer(autoscale, queueMap);
+			workerPool = getContext().actorOf(new akka.routing.SmallestMailboxPool(autoscale.initialWorkers(listener.parallelism()))
+					.withResizer(resizer).withSupervisorStrategy(strategy)
+					.props(workerProps));
+			resizer.registerMBean();
+			FiniteDuration interval = Duration.create(autoscale.intervalMillis, TimeUnit.MILLISECONDS);
+			resizeTick = getContext().system().scheduler().schedule(interval, interval, workerPool, AdaptiveWorkerResizer.RESIZE_TICK, 
+					getContext().dispatcher(), ActorRef.noSender());
+			log.info("["+listener.routing()+"] autoscaling workers between "+autoscale.minWorkers+" and "+autoscale.maxWorkers);
+		}
+		else if(dispatcher != null)
+		{
+			//a balancing pool runs its routees on its own dispatcher. Each routee has its own mailbox, and the least loaded one is picked
+			workerPool = getContext().actorOf(new akka.routing.SmallestMailboxPool(listener.parallelism()).withSupervisorStrategy(strategy)
+					.props(workerProps));
+		}
+		else
+		{
+			//akka.routing.RoundRobinPool
+			//akka.routing.SmallestMailboxPool;
+			//akka.routing.BalancingPool;
+			//configure the router pool?? 
+			workerPool = getContext().actorOf(new akka.routing.BalancingPool(listener.parallelism()).withSupervisorStrategy(strategy)
+					.props(Props.create(ConsumerWorkerActor.class, listener, this)));
+		}
 
 		log.debug("New instance @" + hashCode());
 	}
 
 	private final IMap<Serializable, T> queueMap;
+	private BatchingEntryCommitter committer;
+	private PartitionPullScanner puller;
+	private final PendingEntryRecovery recovery;
+	private Future<Long> recoveryRun;
+	/**
+	 * Bounds the recovered entries in flight. Released on end of transaction of a recovered key.
+	 */
+	private final Semaphore recoveryCredits;
+	private final Set<Serializable> recovering = ConcurrentHashMap.newKeySet();
+	/**
+	 * Keys delivered while a recovery runs, without exclusive access. An entry added after the listener registration
+	 * can be read by the recovery as well, so either path delivers a key only once. Cleared when the recovery ends.
+	 */
+	private final Set<Serializable> deliveredOnRecovery = ConcurrentHashMap.newKeySet();
+	private volatile boolean recoveryRunning;
+	private AdaptiveWorkerResizer resizer;
+	private Cancellable resizeTick;
+	private VirtualThreadExecution execution;
+	
+	@Override
+	public SupervisorStrategy supervisorStrategy() {
+		//applies to the affine workers. The balancing pool has its own
+		return strategy;
+	}
 	
 	/**
 	 * Record as a dead letter. A {@linkplain DeadLetterHandler} will have the strategy to reject
@@ -114,11 +232,25 @@ class ConsumerSupervisorActor<T extends Data> extends UntypedActor implements En
 	}
 
 	private volatile String listnrRegId;
+	/**
+	 * The claimer token of this incarnation, recorded in the entries it claims.
+	 */
+	private volatile String claimer;
 
 	private void registerLocalEntryListener()
 	{
-		processPendingEntries();
+		claimer = ClaimEntryProcessor.register(hazelcast);
+		if(puller != null)
+		{
+			//pending entries are drained by the scans
+			puller.start();
+			return;
+		}
+		//entries added from now on are delivered by the listener. Recovery runs in the background, and reclaims
+		//only entries whose claimer has gone away, so that entries claimed through the listener are not claimed again.
+		//Without exclusive access, the keys delivered by either path are tracked until the recovery ends
 		addEntryListener();
+		processPendingEntries();
 	}
 	@Override
 	public void preStart() {
@@ -131,25 +263,108 @@ class ConsumerSupervisorActor<T extends Data> extends UntypedActor implements En
 		registerLocalEntryListener();
 	}
 	/**
-	 * Process the pending entries.
+	 * Process the pending entries in the background. Entries are read in pages per partition, and streamed to the workers.
 	 */
 	private void processPendingEntries() 
 	{
-		T entry;
-		EntryEvent<Serializable, T> event;
-		for(Object key : clearAll ? queueMap.keySet() : queueMap.localKeySet())
+		recoveryRunning = !checkExclusiveAccess;
+		recoveryRun = recovery.recoverAsync(queueMap, clearAll, new PendingEntryRecovery.PageHandler<T>() {
+
+			@Override
+			public void onPage(Map<Serializable, T> page) {
+				if(checkExclusiveAccess)
+				{
+					claimPendingEntries(page.keySet());
+					return;
+				}
+				for(Map.Entry<Serializable, T> entry : page.entrySet())
+				{
+					if(!deliveredOnRecovery.add(entry.getKey()))
+						continue; //delivered by the listener
+					entry.getValue().resolveDestination(queueMap.getName());
+					delegateRecovered(new DataWrapper(entry.getValue(), false, entry.getKey()));
+				}
+			}
+		}, new Runnable() {
+			
+			@Override
+			public void run() {
+				recoveryRunning = false;
+				deliveredOnRecovery.clear();
+			}
+		});
+		log.debug("Submitted pending entries with clearAll?"+clearAll);
+	}
+	private void stopRecovery()
+	{
+		if(recoveryRun != null)
+			recoveryRun.cancel(true);
+	}
+	private void unregisterClaimer()
+	{
+		if(claimer != null)
+			ClaimEntryProcessor.unregister(claimer);
+	}
+	/**
+	 * Delegate a recovered entry, waiting for a credit if the max recovered entries are in flight. Invoked from the recovery threads.
+	 * @param consume
+	 */
+	private void delegateRecovered(DataWrapper consume)
+	{
+		try {
+			recoveryCredits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("["+listener.routing()+"] recovery stopped", e);
+		}
+		recovering.add(consume.key);
+		delegateToWorker(consume);
+	}
+	/**
+	 * Claim and process a page of pending entries, with a batched claim per ownership. Entries of locally owned partitions
+	 * are reclaimed if their claimer has gone away, with an owner failure or a restart. Entries of other partitions 
+	 * (on clearAll) are only claimed if open, as their owner may still be processing them. The claim values are returned,
+	 * so the entries need not be fetched again.
+	 * @param keys
+	 */
+	private void claimPendingEntries(Set<Serializable> keys)
+	{
+		PartitionService partitions = hazelcast.getPartitionService();
+		Set<Serializable> owned = new HashSet<>(), notOwned = new HashSet<>();
+		for(Serializable key : keys)
 		{
-			entry = queueMap.get(key);
-			event = new EntryEvent<Serializable, T>(listener.routing() + "-listener",
-					hazelcast.getCluster().getLocalMember(), EntryEventType.MERGED.getType(), (Serializable) key,
-					entry);
-			entryAdded(event);
+			Member owner = partitions.getPartition(key).getOwner();
+			if(owner != null && owner.localMember())
+				owned.add(key);
+			else
+				notOwned.add(key);
+		}
+		if(!owned.isEmpty())
+			claimPendingEntries(owned, ClaimEntryProcessor.reclaim(claimer, hazelcast));
+		if(!notOwned.isEmpty())
+			claimPendingEntries(notOwned, ClaimEntryProcessor.claim(claimer));
+	}
+	@SuppressWarnings("unchecked")
+	private void claimPendingEntries(Set<Serializable> keys, ClaimEntryProcessor claim)
+	{
+		for(Map.Entry<Serializable, Object> claimed : queueMap.executeOnKeys(keys, claim).entrySet())
+		{
+			if(claimed.getValue() != null)
+			{
+				T entry = (T) claimed.getValue();
+				entry.resolveDestination(queueMap.getName());
+				delegateRecovered(new DataWrapper(entry, false, claimed.getKey()));
+			}
 		}
-		log.debug("Submitted pending entries with clearAll?"+clearAll);
 	}
 
 	private void removeEntryListener()
 	{
+		if(puller != null)
+		{
+			puller.stop();
+			return;
+		}
 		if (isHazelcastActive()) {
 			queueMap.removeEntryListener(listnrRegId);
 		}
@@ -160,15 +375,63 @@ class ConsumerSupervisorActor<T extends Data> extends UntypedActor implements En
 			listnrRegId = queueMap.addLocalEntryListener(this);
 		}
 	}
+	private void stopResizer()
+	{
+		if(resizeTick != null)
+			resizeTick.cancel();
+		if(resizer != null)
+			resizer.unregisterMBean();
+	}
+	private void shutdownExecution()
+	{
+		if(execution != null)
+			execution.shutdown();
+	}
+	private void closeCommitter()
+	{
+		if(committer != null && isHazelcastActive())
+			committer.close();
+	}
+	/**
+	 * The execution of deliveries off the worker threads, if the listener uses virtual threads.
+	 * @return
+	 */
+	final VirtualThreadExecution getExecution() {
+		return execution;
+	}
+	/**
+	 * Record the processing time of an entry. Invoked from the workers.
+	 * @param nanos
+	 */
+	final void recordProcessingTime(long nanos)
+	{
+		if(resizer != null)
+			resizer.recordLatency(nanos);
+	}
 	@Override
 	public void postStop() {
+		if(resizer != null)
+			log.info("["+listener.routing()+"] "+resizer);
+		stopResizer();
+		stopRecovery();
 		removeEntryListener();
+		unregisterClaimer();
+		closeCommitter();
+		shutdownExecution();
 		listener.destroy();
 	}
 	@Override
 	public void preRestart(Throwable t, scala.Option<Object> msg)
 	{
+		stopResizer();
+		stopRecovery();
 		removeEntryListener();
+		unregisterClaimer();
+		closeCommitter();
+		shutdownExecution();
+		//the new instance creates its own workers. Akka creates it only after these have terminated, so the worker names are free
+		for(ActorRef child : getContext().getChildren())
+			getContext().stop(child);
 	}
 
 	@Override
@@ -177,10 +440,28 @@ class ConsumerSupervisorActor<T extends Data> extends UntypedActor implements En
 		{
 			endTransaction((DataWrapper) msg);
 		}
+		else if(msg instanceof __BatchRequest)
+		{
+			for(DataWrapper consumed : ((__BatchRequest) msg).consumed)
+				endTransaction(consumed);
+		}
 		else if(msg instanceof __EntryRequest)
 		{
+			//migrated entry, reclaimed only if the previous claimer has gone away
 			DataWrapper consume = ((__EntryRequest) msg).consume;
-			delegateExclusively(consume);
+			if(puller == null)
+				delegateExclusively(consume, true);
+			else if(puller.track(consume.key))
+			{
+				boolean delegated = false;
+				try {
+					delegated = delegateExclusively(consume, true);
+				} 
+				finally {
+					if(!delegated)
+						puller.release(consume.key);
+				}
+			}
 			
 		}
 		else if(msg instanceof __RetryRequest)
@@ -204,6 +485,10 @@ class ConsumerSupervisorActor<T extends Data> extends UntypedActor implements En
 	 * @param msg
 	 */
 	final void endTransaction(DataWrapper msg) {
+		if(resizer != null)
+			resizer.ended();
+		if(recovering.remove(msg.key))
+			recoveryCredits.release();
 		
 		if(msg.commit)
 			commitDelivery(msg, msg.isRemoveImmediate());
@@ -214,8 +499,11 @@ class ConsumerSupervisorActor<T extends Data> extends UntypedActor implements En
 		log.debug("end transaction..");
 	}
 
-	public static <E extends Data> Props newProps(QueueListener<E> listener, HazelcastInstance hazel, boolean clearAll, boolean removeImmediate, boolean checkExclusiveAccess) {
-		return Props.create(ConsumerSupervisorActor.class, listener, hazel, clearAll, removeImmediate, checkExclusiveAccess);
+	public static <E extends Data> Props newProps(QueueListener<E> listener, HazelcastInstance hazel, boolean clearAll, boolean removeImmediate, boolean checkExclusiveAccess,
+			int commitBatchSize, long commitLingerMillis, String dispatchMode, boolean pullMode, int pullPageSize, int pullMaxInFlight, long pullMaxBackoffMillis,
+			PendingEntryRecovery recovery, AdaptiveWorkerResizer.Settings autoscale, ListenerDispatchers dispatchers) {
+		return Props.create(ConsumerSupervisorActor.class, listener, hazel, clearAll, removeImmediate, checkExclusiveAccess, commitBatchSize, commitLingerMillis, dispatchMode,
+				pullMode, pullPageSize, pullMaxInFlight, pullMaxBackoffMillis, recovery, autoscale, dispatchers);
 	}
 
 	boolean isHazelcastActive()
@@ -241,8 +529,12 @@ class ConsumerSupervisorActor<T extends Data> extends UntypedActor implements En
 	{
 		if(immediate)
 			queueMap.remove(key);
+		else if(committer != null)
+			committer.commit(key);
 		else
 			queueMap.removeAsync(key);
+		if(puller != null)
+			puller.committed(key);
 		log.debug("Commit..");
 	}
 
@@ -251,33 +543,84 @@ class ConsumerSupervisorActor<T extends Data> extends UntypedActor implements En
 		if (log.isDebugEnabled()) {
 			log.debug("New entry received:: " + event);
 		}
+		if(recoveryRunning && !deliveredOnRecovery.add(event.getKey()))
+			return; //delivered by the recovery
 		onEntryEvent(event.getValue(), event.getKey());
 	}
 	
 	private void onEntryEvent(T val, Serializable key)
 	{
+		val.resolveDestination(queueMap.getName());
 		DataWrapper consume = new DataWrapper(val, false, key);
 		delegateExclusively(consume);
 	}
 	
+	/**
+	 * Claim and process a pulled page, with a batched claim. Keys not delegated are released in the end, so
+	 * that they are scanned again.
+	 * @param page
+	 */
+	@SuppressWarnings("unchecked")
+	private void onPulledPage(Map<Serializable, Object> page)
+	{
+		Set<Serializable> handled = new HashSet<>();
+		try 
+		{
+			Map<Serializable, Object> claimed = page;
+			if(checkExclusiveAccess)
+			{
+				//only locally owned partitions are scanned, so reclaim like the pending entries in push mode
+				claimed = queueMap.executeOnKeys(page.keySet(), ClaimEntryProcessor.reclaim(claimer, hazelcast));
+			}
+			for(Map.Entry<Serializable, Object> entry : claimed.entrySet())
+			{
+				if(entry.getValue() == null)
+				{
+					puller.committed(entry.getKey()); //removed meanwhile
+					handled.add(entry.getKey());
+					continue;
+				}
+				T val = (T) entry.getValue();
+				val.resolveDestination(queueMap.getName());
+				delegateToWorker(new DataWrapper(val, false, entry.getKey()));
+				handled.add(entry.getKey());
+			}
+		} 
+		finally {
+			for(Serializable key : page.keySet())
+			{
+				if(!handled.contains(key))
+					puller.release(key);
+			}
+		}
+	}
 	private void delegateExclusively(DataWrapper consume)
 	{
-		if (hasExclusiveAccess(consume)) {
+		delegateExclusively(consume, false);
+	}
+	private boolean delegateExclusively(DataWrapper consume, boolean reclaim)
+	{
+		if (hasExclusiveAccess(consume, reclaim)) {
 			delegateToWorker(consume);
+			return true;
 		}
+		return false;
 	}
-	private boolean hasExclusiveAccess(DataWrapper consumeMessage)
+	/**
+	 * Claim the entry in the grid, in a single round trip.
+	 * @param consumeMessage
+	 * @param reclaim
+	 * @return
+	 */
+	private boolean hasExclusiveAccess(DataWrapper consumeMessage, boolean reclaim)
 	{
 		if (checkExclusiveAccess) 
 		{
-			queueMap.lock(consumeMessage.key);
-			try {
-				if (consumeMessage.data.getProcessState() == Data.STATE_OPEN) {
-					consumeMessage.data.setProcessState(Data.STATE_LOCKED);
-					return true;
-				}
-			} finally {
-				queueMap.unlock(consumeMessage.key);
+			Object claimed = queueMap.executeOnKey(consumeMessage.key, reclaim ? ClaimEntryProcessor.reclaim(claimer, hazelcast) : ClaimEntryProcessor.claim(claimer));
+			if (claimed != null) {
+				consumeMessage.data.setProcessState(Data.STATE_LOCKED);
+				consumeMessage.data.setClaimedBy(claimer);
+				return true;
 			}
 			return false;
 		}
@@ -290,7 +633,50 @@ class ConsumerSupervisorActor<T extends Data> extends UntypedActor implements En
 	 */
 	private void delegateToWorker(DataWrapper consumeMessage) {
 		consumeMessage.setRemoveImmediate(removeImmediate);
-		workerPool.tell(consumeMessage, getSelf());
+		if(resizer != null)
+			resizer.dispatched();
+		if(workers != null)
+			workers[workerIndex(consumeMessage.key)].tell(consumeMessage, getSelf());
+		else
+			workerPool.tell(consumeMessage, getSelf());
+	}
+	/**
+	 * The ordering key of an entry, for deliveries run off the worker threads. Deliveries with the same affinity are run one
+	 * at a time, in order. 
+	 * @param key
+	 * @return the partition id, or the routing key, in the affine dispatch modes. Null for balancing dispatch, which is unordered.
+	 */
+	final Object affinityOf(Serializable key)
+	{
+		if(workers == null)
+			return null;
+		return partitionAffine ? hazelcast.getPartitionService().getPartition(key).getPartitionId() : routingKeyOf(key);
+	}
+	/**
+	 * The ordering key for 'key' dispatch. Entries of the same routing key share it.
+	 * @param key
+	 * @return the partition key of a {@linkplain PartitionAware} key, else the key itself
+	 */
+	private static Object routingKeyOf(Serializable key)
+	{
+		if(key instanceof PartitionAware)
+		{
+			Object routing = ((PartitionAware<?>) key).getPartitionKey();
+			if(routing != null)
+				return routing;
+		}
+		return key;
+	}
+	/**
+	 * The affine worker for a key. Fixed for the lifetime of this supervisor, so that messages of the same
+	 * partition (or routing key) are delivered in order to the same mailbox.
+	 * @param key
+	 * @return
+	 */
+	private int workerIndex(Serializable key)
+	{
+		int hash = partitionAffine ? hazelcast.getPartitionService().getPartition(key).getPartitionId() : routingKeyOf(key).hashCode();
+		return (hash & Integer.MAX_VALUE) % workers.length;
 	}
 	public boolean isCheckExclusiveAccess() {
 		return checkExclusiveAccess;
@@ -301,6 +687,8 @@ class ConsumerSupervisorActor<T extends Data> extends UntypedActor implements En
 	@Override
 	public void entryUpdated(EntryEvent<Serializable, T> event) {
 		log.debug("Modified entry received:: "+event);
+		if(checkExclusiveAccess && event.getValue().getProcessState() != Data.STATE_OPEN)
+			return; //update from a claim
 		onEntryEvent(event.getValue(), event.getKey());
 	}
 	
@@ -15,39 +15,150 @@
  */
 package org.reactivetechnologies.ticker.messaging.actors;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import org.reactivetechnologies.ticker.messaging.Data;
+import org.reactivetechnologies.ticker.messaging.PartialBatchException;
+import org.reactivetechnologies.ticker.messaging.base.BatchQueueListener;
 import org.reactivetechnologies.ticker.messaging.base.QueueListener;
 import org.reactivetechnologies.ticker.messaging.data.DataWrapper;
+import org.reactivetechnologies.ticker.messaging.dto.__BatchRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import akka.actor.ActorRef;
+import akka.actor.Cancellable;
 import akka.actor.UntypedActor;
+import scala.concurrent.duration.Duration;
 
 final class ConsumerWorkerActor<E extends Data> extends UntypedActor {
 	private final QueueListener<E> listener;
 	private ConsumerSupervisorActor<E> supervisorInstance;
 	
 	private static final Logger log = LoggerFactory.getLogger(ConsumerWorkerActor.class);
+	/**
+	 * Scheduled to self, when the first entry of a batch is gathered.
+	 */
+	private static final Object FLUSH_BATCH = new Object();
+	
+	private final BatchQueueListener<E> batchListener;
+	private final List<DataWrapper> batch;
+	private ActorRef batchReplyTo;
+	private Cancellable batchLinger;
+	private final VirtualThreadExecution execution;
 	
+	@SuppressWarnings("unchecked")
 	public ConsumerWorkerActor(QueueListener<E> listener, ConsumerSupervisorActor<E> supervisorInstance) {
 		this.listener = listener;
 		this.supervisorInstance = supervisorInstance;
+		if (listener instanceof BatchQueueListener) {
+			batchListener = (BatchQueueListener<E>) listener;
+			batch = new ArrayList<>(batchListener.maxBatchSize());
+		} else {
+			batchListener = null;
+			batch = null;
+		}
+		execution = supervisorInstance != null ? supervisorInstance.getExecution() : null;
 		log.debug("New instance @"+hashCode());
 	}
 	@Override
 	public void onReceive(Object msg) throws Throwable {
 		if (msg instanceof DataWrapper) {
-			executeDelivery((DataWrapper) msg);
-		} else
+			if(batchListener != null)
+				gatherDelivery((DataWrapper) msg);
+			else if(execution != null)
+				executeDeliveryAsync((DataWrapper) msg);
+			else
+				executeDelivery((DataWrapper) msg);
+		} 
+		else if (msg == FLUSH_BATCH) {
+			batchLinger = null;
+			executeBatchDelivery();
+		}
+		else if (msg == AdaptiveWorkerResizer.RESIZE_TICK) {
+			//routed only to trigger a resize check of the pool
+		}
+		else
 			unhandled(msg);
 
 	}
+	@Override
+	public void postStop() {
+		if(batchLinger != null)
+			batchLinger.cancel();
+	}
+	/**
+	 * Add to the current batch, and deliver if full. The first entry of a batch schedules the delivery after the max wait.
+	 * @param msg
+	 * @throws Exception
+	 */
+	private void gatherDelivery(DataWrapper msg) throws Exception {
+		batchReplyTo = getSender();
+		batch.add(msg);
+		if (batch.size() >= batchListener.maxBatchSize()) {
+			executeBatchDelivery();
+		} 
+		else if (batchLinger == null) {
+			batchLinger = getContext().system().scheduler().scheduleOnce(
+					Duration.create(batchListener.maxBatchWaitMillis(), TimeUnit.MILLISECONDS), getSelf(), FLUSH_BATCH,
+					getContext().dispatcher(), ActorRef.noSender());
+		}
+	}
+	@SuppressWarnings("unchecked")
+	private void executeBatchDelivery() throws Exception {
+		if (batchLinger != null) {
+			batchLinger.cancel();
+			batchLinger = null;
+		}
+		if(batch.isEmpty())
+			return;
+		
+		List<DataWrapper> consumed = new ArrayList<>(batch);
+		batch.clear();
+		List<E> items = new ArrayList<>(consumed.size());
+		for (DataWrapper msg : consumed) {
+			items.add((E) msg.data);
+		}
+		boolean commit = false;
+		PartialBatchException partial = null;
+		try
+		{
+			batchListener.onMessages(items);
+			commit = true;
+		}
+		catch (PartialBatchException e) {
+			partial = e;
+			throw e;
+		}
+		finally
+		{
+			endBatch(consumed, commit, partial);
+		}
+	}
+	private void endBatch(List<DataWrapper> consumed, boolean commit, PartialBatchException partial)
+	{
+		List<DataWrapper> ended = new ArrayList<>(consumed.size());
+		for (int i = 0; i < consumed.size(); i++) {
+			DataWrapper msg = consumed.get(i);
+			ended.add(new DataWrapper(msg.data, commit || (partial != null && !partial.isFailed(i)), msg.key));
+		}
+		if (consumed.get(0).isRemoveImmediate()) {
+			for (DataWrapper msg : ended) {
+				supervisorInstance.endTransaction(msg);
+			}
+		}
+		else
+			batchReplyTo.tell(new __BatchRequest(ended), getSelf());
+	}
 	//The router actor forwards messages onto its routees without changing the original sender. 
 	//When a routee replies to a routed message, the reply will be sent to the original sender, not to the router actor.
 	
 	@SuppressWarnings("unchecked")
 	private void executeDelivery(DataWrapper msg) throws Exception {
 		boolean commit = false;
+		long start = System.nanoTime();
 		try
 		{
 			listener.onMessage((E) msg.data);
@@ -55,12 +166,50 @@ final class ConsumerWorkerActor<E extends Data> extends UntypedActor {
 		}
 		finally
 		{
-			if(msg.isRemoveImmediate())
-				supervisorInstance.endTransaction(new DataWrapper(msg.data, commit, msg.key));
-			else
-				getSender().tell(new DataWrapper(msg.data, commit, msg.key), getSelf());
+			supervisorInstance.recordProcessingTime(System.nanoTime() - start);
+			endDelivery(msg, commit, getSender(), getSelf());
 		}
 		
 	}
+	private void endDelivery(DataWrapper msg, boolean commit, ActorRef replyTo, ActorRef self)
+	{
+		if(msg.isRemoveImmediate())
+			supervisorInstance.endTransaction(new DataWrapper(msg.data, commit, msg.key));
+		else
+			replyTo.tell(new DataWrapper(msg.data, commit, msg.key), self);
+	}
+	/**
+	 * Deliver on the listener's execution, off this actor thread. A failure is logged, and ends the delivery uncommitted
+	 * as in {@link #executeDelivery(DataWrapper)}. It is not escalated to the supervisor. In the affine dispatch modes, deliveries 
+	 * of the same partition (or key) are still run in order.
+	 * @param msg
+	 * @throws InterruptedException
+	 */
+	private void executeDeliveryAsync(final DataWrapper msg) throws InterruptedException {
+		final ActorRef replyTo = getSender();
+		final ActorRef self = getSelf();
+		execution.execute(supervisorInstance.affinityOf(msg.key), new Runnable() {
+			
+			@SuppressWarnings("unchecked")
+			@Override
+			public void run() {
+				boolean commit = false;
+				long start = System.nanoTime();
+				try
+				{
+					listener.onMessage((E) msg.data);
+					commit = true;
+				}
+				catch (Exception e) {
+					log.error("--Message consume caught error--", e);
+				}
+				finally
+				{
+					supervisorInstance.recordProcessingTime(System.nanoTime() - start);
+					endDelivery(msg, commit, replyTo, self);
+				}
+			}
+		});
+	}
 
 }
\ No newline at end of file
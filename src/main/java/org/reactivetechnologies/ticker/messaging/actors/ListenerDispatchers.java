@@ -0,0 +1,138 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.actors;
+
+import org.reactivetechnologies.ticker.messaging.base.AbstractQueueListener;
+import org.reactivetechnologies.ticker.messaging.base.BatchQueueListener;
+import org.reactivetechnologies.ticker.messaging.base.QueueListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import akka.actor.ActorSystem;
+import akka.dispatch.DispatcherConfigurator;
+import akka.dispatch.Dispatchers;
+import akka.dispatch.MessageDispatcherConfigurator;
+import akka.dispatch.PinnedDispatcherConfigurator;
+/**
+ * Resolves the dispatcher for the workers of a {@linkplain QueueListener}, for isolation between queues. A listener
+ * not using the {@linkplain AbstractQueueListener#useSharedPool() shared pool} gets a dispatcher of its own. A blocking
+ * listener on the shared pool gets a shared, separate dispatcher for blocking I/O. Dispatchers are registered on first use.
+ * @author esutdal
+ *
+ */
+class ListenerDispatchers {
+
+	private static final Logger log = LoggerFactory.getLogger(ListenerDispatchers.class);
+	static final String EXECUTOR_THREAD_POOL = "thread-pool";
+	static final String EXECUTOR_PINNED = "pinned";
+	static final String BLOCKING_DISPATCHER = "ticker-blocking-dispatcher";
+	private static final String LISTENER_DISPATCHER_PREFIX = "ticker-listener-dispatcher-";
+	
+	private final int threads;
+	private final boolean pinned;
+	private final int blockingThreads;
+	private final int virtualMaxInFlight;
+	private final int virtualFallbackThreads;
+	/**
+	 * 
+	 * @param threads threads of a dedicated dispatcher. 0 for number of cores
+	 * @param executor {@link #EXECUTOR_THREAD_POOL} or {@link #EXECUTOR_PINNED}
+	 * @param blockingThreads threads of the shared blocking dispatcher
+	 * @param virtualMaxInFlight max deliveries in flight per listener, on virtual threads
+	 * @param virtualFallbackThreads threads per listener, if virtual threads are not supported
+	 */
+	ListenerDispatchers(int threads, String executor, int blockingThreads, int virtualMaxInFlight, int virtualFallbackThreads) {
+		this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		this.pinned = EXECUTOR_PINNED.equalsIgnoreCase(executor.trim());
+		this.blockingThreads = Math.max(1, blockingThreads);
+		this.virtualMaxInFlight = virtualMaxInFlight;
+		this.virtualFallbackThreads = virtualFallbackThreads;
+	}
+	
+	private static boolean isShared(QueueListener<?> listener)
+	{
+		return !(listener instanceof AbstractQueueListener) || ((AbstractQueueListener<?>) listener).useSharedPool();
+	}
+	private static boolean useVirtualThreads(QueueListener<?> listener)
+	{
+		return listener instanceof AbstractQueueListener && !(listener instanceof BatchQueueListener)
+				&& ((AbstractQueueListener<?>) listener).useVirtualThreads();
+	}
+	private static boolean isBlocking(QueueListener<?> listener)
+	{
+		return listener instanceof AbstractQueueListener && ((AbstractQueueListener<?>) listener).isBlocking();
+	}
+	
+	private static Config threadPoolConfig(int threads)
+	{
+		return ConfigFactory.parseString(
+				"type = Dispatcher \n" +
+				"executor = thread-pool-executor \n" +
+				"thread-pool-executor.fixed-pool-size = " + threads + " \n" +
+				"throughput = 1 \n");
+	}
+	private static Config pinnedConfig()
+	{
+		return ConfigFactory.parseString(
+				"type = PinnedDispatcher \n" +
+				"executor = thread-pool-executor \n");
+	}
+	
+	private static void register(ActorSystem system, String id, Config config, boolean pinned)
+	{
+		Dispatchers dispatchers = system.dispatchers();
+		if(dispatchers.hasDispatcher(id))
+			return;
+		Config withFallback = dispatchers.config(id, config);
+		MessageDispatcherConfigurator configurator = pinned ? new PinnedDispatcherConfigurator(withFallback, dispatchers.prerequisites())
+				: new DispatcherConfigurator(withFallback, dispatchers.prerequisites());
+		if(dispatchers.registerConfigurator(id, configurator))
+			log.info("Registered dispatcher ["+id+"]" + (pinned ? ", thread per worker" : ", threads "+config.getInt("thread-pool-executor.fixed-pool-size")));
+	}
+	/**
+	 * The dispatcher id for the workers of the listener.
+	 * @param listener
+	 * @param system
+	 * @return dispatcher id, or null to use the default dispatcher
+	 */
+	String dispatcherFor(QueueListener<?> listener, ActorSystem system)
+	{
+		if(isShared(listener))
+		{
+			if(!isBlocking(listener))
+				return null;
+			register(system, BLOCKING_DISPATCHER, threadPoolConfig(blockingThreads), false);
+			return BLOCKING_DISPATCHER;
+		}
+		String id = LISTENER_DISPATCHER_PREFIX + listener.routing().replaceAll("[^A-Za-z0-9_\\-]", "_");
+		register(system, id, pinned ? pinnedConfig() : threadPoolConfig(threads), pinned);
+		return id;
+	}
+	/**
+	 * The execution of deliveries off the worker threads, for a listener using virtual threads.
+	 * @param listener
+	 * @return a new execution, or null if the listener is delivered on the worker threads
+	 */
+	VirtualThreadExecution executionFor(QueueListener<?> listener)
+	{
+		if(!useVirtualThreads(listener))
+			return null;
+		return new VirtualThreadExecution(listener.routing(), virtualMaxInFlight, virtualFallbackThreads);
+	}
+}
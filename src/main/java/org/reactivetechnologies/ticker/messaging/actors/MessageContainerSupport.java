@@ -20,7 +20,7 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -84,13 +84,16 @@ public class MessageContainerSupport extends AbstractMigratedPartitionListener i
 	private final List<String> queueMaps = Collections.synchronizedList(new ArrayList<>());
 
 	@Override
-	public void onMigratedKeySet(IMap<Object, Object> map, Set<Object> migratedKeySet) {
-		for (Object key : migratedKeySet) {
-			DataWrapper c = new DataWrapper((Data) map.get(key), false, (Serializable) key);
+	public void onMigratedEntries(IMap<Object, Object> map, Map<Object, Object> migratedEntries) {
+		for (Map.Entry<Object, Object> migrated : migratedEntries.entrySet()) {
+			Data entry = (Data) migrated.getValue();
+			entry.resolveDestination(map.getName());
+			DataWrapper c = new DataWrapper(entry, false, (Serializable) migrated.getKey());
 			containerActor.tell(new __EntryRequest(c), ActorRef.noSender());
 
-			log.info("Submitted migrated entry for key -> " + key);
+			log.debug("Submitted migrated entry for key -> " + migrated.getKey());
 		}
+		log.info("Submitted " + migratedEntries.size() + " migrated entries for " + map.getName());
 
 	}
 
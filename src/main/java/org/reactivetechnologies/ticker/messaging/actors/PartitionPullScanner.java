@@ -0,0 +1,261 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.actors;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.Partition;
+import com.hazelcast.map.impl.proxy.MapProxyImpl;
+/**
+ * Pull based consumption of a queue map, as an alternative to local entry listeners. The locally owned partitions are 
+ * drained in partition order, each with a paged partition iterator. A partition found empty is backed off exponentially, 
+ * till a max backoff. Entries delivered and not yet committed are tracked, which bounds the entries in flight and 
+ * prevents a redelivery on the next scan.
+ * @author esutdal
+ *
+ */
+class PartitionPullScanner implements Runnable {
+
+	private static final Logger log = LoggerFactory.getLogger(PartitionPullScanner.class);
+	
+	private static final ScheduledExecutorService scanner = Executors.newScheduledThreadPool(2, new ThreadFactory() {
+		private final AtomicInteger n = new AtomicInteger();
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "ticker-pull-scan-" + n.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	});
+	/**
+	 * A committed entry is removed asynchronously. So its key is remembered for a while after commit, to not redeliver
+	 * the entry if a scan sees it before the removal. If the removal is lost, the entry is redelivered after this.
+	 */
+	private static final long COMMITTED_RETENTION_MILLIS = 30000;
+	private static final long IN_FLIGHT = 0;
+	
+	/**
+	 * Callback for a pulled page. Each key of the page is tracked, and must be {@linkplain PartitionPullScanner#committed(Serializable) committed}
+	 * or {@linkplain PartitionPullScanner#release(Serializable) released}, even if the delivery fails.
+	 */
+	static interface Delivery
+	{
+		void deliver(Map<Serializable, Object> page);
+	}
+	
+	private final IMap<Serializable, ?> queueMap;
+	private final HazelcastInstance hazelcast;
+	private final Delivery delivery;
+	private final int pageSize;
+	private final int maxInFlight;
+	private final long maxBackoffMillis;
+	
+	/**
+	 * Tracked keys. Value is {@link #IN_FLIGHT}, or the commit time.
+	 */
+	private final ConcurrentMap<Serializable, Long> tracked = new ConcurrentHashMap<>();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final long[] backoff;
+	private final long[] nextScanAt;
+	private long nextPurgeAt;
+	
+	private volatile boolean running;
+	private ScheduledFuture<?> nextRun;
+	/**
+	 * 
+	 * @param queueMap
+	 * @param hazelcast
+	 * @param delivery
+	 * @param pageSize
+	 * @param maxInFlight
+	 * @param maxBackoffMillis
+	 */
+	PartitionPullScanner(IMap<Serializable, ?> queueMap, HazelcastInstance hazelcast, Delivery delivery, int pageSize,
+			int maxInFlight, long maxBackoffMillis) {
+		this.queueMap = queueMap;
+		this.hazelcast = hazelcast;
+		this.delivery = delivery;
+		this.pageSize = Math.max(1, pageSize);
+		this.maxInFlight = Math.max(this.pageSize, maxInFlight);
+		this.maxBackoffMillis = Math.max(1, maxBackoffMillis);
+		int partitions = hazelcast.getPartitionService().getPartitions().size();
+		backoff = new long[partitions];
+		nextScanAt = new long[partitions];
+	}
+	
+	synchronized void start()
+	{
+		running = true;
+		nextRun = scanner.schedule(this, 0, TimeUnit.MILLISECONDS);
+		log.info("["+queueMap.getName()+"] pull consumption started, page size "+pageSize+", max in flight "+maxInFlight);
+	}
+	
+	synchronized void stop()
+	{
+		running = false;
+		if(nextRun != null)
+			nextRun.cancel(false);
+	}
+	/**
+	 * Track a key delivered outside of a scan.
+	 * @param key
+	 * @return false if the key is already tracked
+	 */
+	boolean track(Serializable key)
+	{
+		Long prev = tracked.get(key);
+		if(prev != null && (prev == IN_FLIGHT || System.currentTimeMillis() - prev < COMMITTED_RETENTION_MILLIS))
+			return false;
+		if((prev == null ? tracked.putIfAbsent(key, IN_FLIGHT) == null : tracked.replace(key, prev, IN_FLIGHT)))
+		{
+			inFlight.incrementAndGet();
+			return true;
+		}
+		return false;
+	}
+	/**
+	 * Mark a delivered key as committed. Can be invoked from any thread.
+	 * @param key
+	 */
+	void committed(Serializable key)
+	{
+		Long prev = tracked.get(key);
+		if(prev != null && prev == IN_FLIGHT && tracked.replace(key, prev, System.currentTimeMillis()))
+			inFlight.decrementAndGet();
+	}
+	
+	/**
+	 * Stop tracking a key which was not delivered, so that it is picked up again by the next scan.
+	 * @param key
+	 */
+	void release(Serializable key)
+	{
+		Long prev = tracked.get(key);
+		if(prev != null && prev == IN_FLIGHT && tracked.remove(key, prev))
+			inFlight.decrementAndGet();
+	}
+	
+	private void purgeCommitted(long now)
+	{
+		if(now < nextPurgeAt)
+			return;
+		for(Iterator<Long> iter = tracked.values().iterator(); iter.hasNext();)
+		{
+			long at = iter.next();
+			if(at != IN_FLIGHT && now - at >= COMMITTED_RETENTION_MILLIS)
+				iter.remove();
+		}
+		nextPurgeAt = now + COMMITTED_RETENTION_MILLIS;
+	}
+	/**
+	 * Deliver up to a page of untracked entries from the partition, as one page.
+	 * @param partitionId
+	 * @return number of entries delivered
+	 */
+	@SuppressWarnings("unchecked")
+	private int drain(int partitionId)
+	{
+		Map<Serializable, Object> page = new HashMap<>();
+		try 
+		{
+			Iterator<Map.Entry<Serializable, Object>> iter = ((MapProxyImpl<Serializable, Object>) queueMap).iterator(pageSize, partitionId, true);
+			while(iter.hasNext() && page.size() < pageSize && inFlight.get() < maxInFlight)
+			{
+				Entry<Serializable, Object> entry = iter.next();
+				if(entry.getValue() != null && track(entry.getKey()))
+					page.put(entry.getKey(), entry.getValue());
+			}
+		} 
+		catch (RuntimeException e) {
+			for(Serializable key : page.keySet())
+				release(key);
+			throw e;
+		}
+		if(!page.isEmpty())
+			delivery.deliver(page);
+		return page.size();
+	}
+	
+	private long scan()
+	{
+		long now = System.currentTimeMillis();
+		purgeCommitted(now);
+		long nextDue = now + maxBackoffMillis;
+		for(Partition partition : hazelcast.getPartitionService().getPartitions())
+		{
+			if(inFlight.get() >= maxInFlight)
+			{
+				//bounded by consumer capacity. Check again shortly
+				return 1;
+			}
+			if(partition.getOwner() == null || !partition.getOwner().localMember())
+				continue;
+			
+			int pid = partition.getPartitionId();
+			if(nextScanAt[pid] > now)
+			{
+				nextDue = Math.min(nextDue, nextScanAt[pid]);
+				continue;
+			}
+			if(drain(pid) > 0)
+			{
+				backoff[pid] = 0;
+				nextDue = now;
+			}
+			else
+			{
+				backoff[pid] = Math.min(maxBackoffMillis, backoff[pid] == 0 ? 1 : backoff[pid] * 2);
+				nextScanAt[pid] = now + backoff[pid];
+				nextDue = Math.min(nextDue, nextScanAt[pid]);
+			}
+		}
+		return Math.max(0, nextDue - System.currentTimeMillis());
+	}
+
+	@Override
+	public void run() {
+		long delay = maxBackoffMillis;
+		try {
+			if(running && hazelcast.getLifecycleService().isRunning())
+				delay = scan();
+		} catch (Exception e) {
+			log.warn("["+queueMap.getName()+"] pull scan failed, will be retried. "+e);
+			log.debug("", e);
+		}
+		synchronized (this) {
+			if(running)
+				nextRun = scanner.schedule(this, delay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+}
@@ -25,6 +25,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import org.reactivetechnologies.ticker.datagrid.HazelcastOperations;
 import org.reactivetechnologies.ticker.messaging.Data;
 import org.reactivetechnologies.ticker.messaging.base.DeadLetterHandler;
+import org.reactivetechnologies.ticker.messaging.base.PendingEntryRecovery;
 import org.reactivetechnologies.ticker.messaging.base.QueueContainer;
 import org.reactivetechnologies.ticker.messaging.base.QueueListener;
 import org.reactivetechnologies.ticker.messaging.data.DataWrapper;
@@ -213,11 +214,22 @@ class QueueContainerActor extends UntypedActor implements QueueContainer {
 
 	private <T extends Data> void register0(QueueListener<T> listener) {
 		Props listenerProp = ConsumerSupervisorActor.newProps(listener, hazelWrap.hazelcastInstance(),
-				isClearAllPendingEntries(), isRemoveImmediate(), isCheckExclusiveAccess());
+				isClearAllPendingEntries(), isRemoveImmediate(), isCheckExclusiveAccess(), getCommitBatchSize(), getCommitLingerMillis(), getDispatchMode(),
+				isPullMode(), getPullPageSize(), getPullMaxInFlight(), getPullMaxBackoffMillis(), getRecovery(), getAutoscale(), getDispatchers());
 		consumerActors.replace(listener.routing(), listenerMapValue, listenerProp);
 	}
 
 	private boolean checkExclusiveAccess;
+	private int commitBatchSize;
+	private long commitLingerMillis;
+	private String dispatchMode;
+	private boolean pullMode;
+	private int pullPageSize;
+	private int pullMaxInFlight;
+	private long pullMaxBackoffMillis;
+	private PendingEntryRecovery recovery;
+	private AdaptiveWorkerResizer.Settings autoscale;
+	private ListenerDispatchers dispatchers;
 	@Override
 	public <T extends Data> void register(QueueListener<T> listener) {
 		//there should be only one listener per queue, per instance. Or else there will be multiple Hazelcast
@@ -266,4 +278,105 @@ class QueueContainerActor extends UntypedActor implements QueueContainer {
 		this.checkExclusiveAccess = checkExclusiveAccess;
 	}
 
+
+	public int getCommitBatchSize() {
+		return commitBatchSize;
+	}
+
+
+	public void setCommitBatchSize(int commitBatchSize) {
+		this.commitBatchSize = commitBatchSize;
+	}
+
+
+	public long getCommitLingerMillis() {
+		return commitLingerMillis;
+	}
+
+
+	public void setCommitLingerMillis(long commitLingerMillis) {
+		this.commitLingerMillis = commitLingerMillis;
+	}
+
+
+
+	public String getDispatchMode() {
+		return dispatchMode;
+	}
+
+
+	public void setDispatchMode(String dispatchMode) {
+		this.dispatchMode = dispatchMode;
+	}
+
+
+	public boolean isPullMode() {
+		return pullMode;
+	}
+
+
+	public void setPullMode(boolean pullMode) {
+		this.pullMode = pullMode;
+	}
+
+
+	public int getPullPageSize() {
+		return pullPageSize;
+	}
+
+
+	public void setPullPageSize(int pullPageSize) {
+		this.pullPageSize = pullPageSize;
+	}
+
+
+	public int getPullMaxInFlight() {
+		return pullMaxInFlight;
+	}
+
+
+	public void setPullMaxInFlight(int pullMaxInFlight) {
+		this.pullMaxInFlight = pullMaxInFlight;
+	}
+
+
+	public long getPullMaxBackoffMillis() {
+		return pullMaxBackoffMillis;
+	}
+
+
+	public void setPullMaxBackoffMillis(long pullMaxBackoffMillis) {
+		this.pullMaxBackoffMillis = pullMaxBackoffMillis;
+	}
+
+
+	public PendingEntryRecovery getRecovery() {
+		return recovery;
+	}
+
+
+	public void setRecovery(PendingEntryRecovery recovery) {
+		this.recovery = recovery;
+	}
+
+
+	AdaptiveWorkerResizer.Settings getAutoscale() {
+		return autoscale;
+	}
+
+
+	void setAutoscale(AdaptiveWorkerResizer.Settings autoscale) {
+		this.autoscale = autoscale;
+	}
+
+
+	ListenerDispatchers getDispatchers() {
+		return dispatchers;
+	}
+
+
+	void setDispatchers(ListenerDispatchers dispatchers) {
+		this.dispatchers = dispatchers;
+	}
+
 }
@@ -15,8 +15,11 @@
  */
 package org.reactivetechnologies.ticker.messaging.actors;
 
+import java.util.Collection;
+
 import org.reactivetechnologies.ticker.datagrid.HazelcastOperations;
 import org.reactivetechnologies.ticker.messaging.Data;
+import org.reactivetechnologies.ticker.messaging.base.BatchPublishSupport;
 import org.reactivetechnologies.ticker.messaging.base.ItemPartKeyGenerator;
 import org.reactivetechnologies.ticker.messaging.base.Publisher;
 import org.slf4j.Logger;
@@ -38,25 +41,36 @@ class QueuePublisherActor extends UntypedActor implements Publisher {
 		log.debug("New instance @"+hashCode());
 	}
 
-	private IMap<Long, Data> getMap(Data d)
+	private IMap<Object, Data> getMap(Data d)
 	{
 		Assert.isTrue(StringUtils.hasText(d.getDestination()), "queue name not provided in Data");
 		return hazelWrap.getMap(d.getDestination());
 	}
 	private final HazelcastOperations hazelWrap;
 	private ItemPartKeyGenerator keyGen;
+	private BatchPublishSupport batchSupport;
 	@Override
 	public <E extends Data> boolean offer(E item) {
-		getMap(item).set(keyGen.getNext(item.getDestination()), item);
+		getMap(item).set(keyGen.getNextKey(item), item);
 		return true;
 	}
 
 	@Override
 	public <E extends Data> ICompletableFuture<Void> ingest(E item) {
-		ICompletableFuture<Void> ret = getMap(item).setAsync(keyGen.getNext(item.getDestination()), item);
+		ICompletableFuture<Void> ret = getMap(item).setAsync(keyGen.getNextKey(item), item);
 		return ret;
 	}
 
+	@Override
+	public <E extends Data> boolean offerAll(Collection<E> items) {
+		return batchSupport.offerAll(items);
+	}
+
+	@Override
+	public <E extends Data> ICompletableFuture<Void> ingestAll(Collection<E> items) {
+		return batchSupport.ingestAll(items);
+	}
+
 	@Override
 	public void onReceive(Object message) throws Throwable {
 		if(message instanceof Data)
@@ -79,6 +93,7 @@ class QueuePublisherActor extends UntypedActor implements Publisher {
 
 	public void setKeyGen(ItemPartKeyGenerator keyGen) {
 		this.keyGen = keyGen;
+		this.batchSupport = new BatchPublishSupport(hazelWrap, keyGen);
 	}
 
 }
@@ -0,0 +1,155 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.actors;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+/**
+ * Runs message deliveries of a listener off the worker actor thread, on virtual threads when the runtime supports them
+ * (Java 21+), else on a fixed thread pool. The deliveries in flight are bounded, and a worker blocks when the bound is
+ * reached, which applies back pressure to its mailbox. Deliveries with the same affinity key (partition or key, in the affine
+ * dispatch modes) are run one at a time in submission order, so the ordering of the dispatch mode is kept.
+ * @author esutdal
+ *
+ */
+class VirtualThreadExecution {
+
+	private static final Logger log = LoggerFactory.getLogger(VirtualThreadExecution.class);
+	
+	private final ExecutorService executor;
+	private final Semaphore inFlight;
+	private final boolean virtual;
+	/**
+	 * Deliveries waiting for a running delivery of the same affinity key. A key is present while a delivery of it is running.
+	 */
+	private final Map<Object, Queue<Runnable>> lanes = new HashMap<>();
+	/**
+	 * 
+	 * @param name
+	 * @param maxInFlight
+	 * @param fallbackThreads threads of the pool, if virtual threads are not supported
+	 */
+	VirtualThreadExecution(final String name, int maxInFlight, int fallbackThreads) {
+		inFlight = new Semaphore(Math.max(1, maxInFlight));
+		ExecutorService vtExecutor = newVirtualThreadExecutor();
+		virtual = vtExecutor != null;
+		executor = virtual ? vtExecutor : Executors.newFixedThreadPool(Math.max(1, fallbackThreads), new ThreadFactory() {
+			private final AtomicInteger n = new AtomicInteger();
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "ticker-consumer-" + name + "-" + n.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		log.info("["+name+"] deliveries run on "+(virtual ? "virtual threads" : fallbackThreads+" pooled threads")+", max in flight "+maxInFlight);
+	}
+	
+	private static ExecutorService newVirtualThreadExecutor()
+	{
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+	
+	boolean isVirtual() {
+		return virtual;
+	}
+	/**
+	 * Run a delivery, blocking while the max deliveries are in flight. If a delivery of the same affinity key is running,
+	 * this one is queued behind it, and run by the same thread after it.
+	 * @param affinity ordering key, or null if unordered
+	 * @param delivery
+	 * @throws InterruptedException
+	 */
+	void execute(final Object affinity, final Runnable delivery) throws InterruptedException
+	{
+		inFlight.acquire();
+		if(affinity != null)
+		{
+			synchronized (lanes) {
+				Queue<Runnable> lane = lanes.get(affinity);
+				if(lane != null)
+				{
+					lane.add(delivery);
+					return;
+				}
+				lanes.put(affinity, new ArrayDeque<Runnable>());
+			}
+		}
+		try {
+			executor.execute(new Runnable() {
+				
+				@Override
+				public void run() {
+					Runnable next = delivery;
+					while(next != null)
+					{
+						try {
+							next.run();
+						} finally {
+							inFlight.release();
+						}
+						next = affinity != null ? pollLane(affinity) : null;
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			inFlight.release();
+			if(affinity != null)
+			{
+				synchronized (lanes) {
+					lanes.remove(affinity);
+				}
+			}
+			throw e;
+		}
+	}
+	/**
+	 * The next queued delivery of the affinity key. If none, the key is removed.
+	 * @param affinity
+	 * @return
+	 */
+	private Runnable pollLane(Object affinity)
+	{
+		synchronized (lanes) {
+			Runnable next = lanes.get(affinity).poll();
+			if(next == null)
+				lanes.remove(affinity);
+			return next;
+		}
+	}
+	
+	void shutdown()
+	{
+		executor.shutdown();
+	}
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.actors;
+/**
+ * JMX view of an autoscaled worker pool of a queue listener. Registered as <code>org.reactivetechnologies.ticker:type=WorkerPool,name=&lt;queue&gt;</code>.
+ * @author esutdal
+ *
+ */
+public interface WorkerPoolMXBean {
+
+	/**
+	 * Pool size as of the last resize check.
+	 * @return
+	 */
+	int getWorkers();
+	/**
+	 * Local backlog as of the last resize check.
+	 * @return
+	 */
+	long getBacklog();
+	/**
+	 * Entries dispatched to workers and not yet ended.
+	 * @return
+	 */
+	long getInFlight();
+	/**
+	 * p99 processing time in micro seconds, as of the last resize check.
+	 * @return
+	 */
+	long getP99Micros();
+	/**
+	 * Estimated time to drain the backlog, as of the last resize check.
+	 * @return
+	 */
+	long getDrainMillis();
+	/**
+	 * Number of times the pool has grown.
+	 * @return
+	 */
+	long getScaleUps();
+	/**
+	 * Number of times the pool has shrunk.
+	 * @return
+	 */
+	long getScaleDowns();
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.base;
+
+import java.util.Collections;
+
+import org.reactivetechnologies.ticker.messaging.Data;
+/**
+ * Abstract base class to be extended for registering batch queue listeners.
+ * @author esutdal
+ * @see QueueContainer#register(QueueListener)
+ */
+public abstract class AbstractBatchQueueListener<T extends Data> extends AbstractQueueListener<T> implements BatchQueueListener<T> {
+
+	/**
+	 * Delegates to {@linkplain #onMessages(java.util.List)} with a single entry batch.
+	 */
+	@Override
+	public void onMessage(T m) throws Exception {
+		onMessages(Collections.singletonList(m));
+	}
+	/**
+	 * Default 500.
+	 */
+	@Override
+	public int maxBatchSize() {
+		return 500;
+	}
+	/**
+	 * Default 100.
+	 */
+	@Override
+	public long maxBatchWaitMillis() {
+		return 100;
+	}
+
+}
@@ -17,6 +17,7 @@ package org.reactivetechnologies.ticker.messaging.base;
 
 import java.io.Closeable;
 import java.io.Serializable;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -128,21 +129,27 @@ public abstract class AbstractQueueContainer implements QueueContainer, EntryAdd
 	 * @param mapName
 	 * @param all true, if all entries to be processed
 	 */
-	protected <T extends Data> void processPendingEntries(String mapName, boolean all) {
+	protected <T extends Data> void processPendingEntries(final String mapName, boolean all) {
 		IMap<Serializable, T> imap = hazelWrap.getMap(mapName);
-		T entry;
-		DataWrapper item;
-		for(Object key : all ? imap.keySet() : imap.localKeySet())
-		{
-			entry = imap.get(key);
-			item = new DataWrapper(entry, false, (Serializable) key);
-			onEntryAdded(item);
-		}
+		PendingEntryRecovery recovery = new PendingEntryRecovery(hazelWrap.hazelcastInstance(), PendingEntryRecovery.DEFAULT_PARALLELISM, 
+				PendingEntryRecovery.DEFAULT_PAGE_SIZE);
+		recovery.recover(imap, all, new PendingEntryRecovery.PageHandler<T>() {
+
+			@Override
+			public void onPage(Map<Serializable, T> page) {
+				for(Map.Entry<Serializable, T> entry : page.entrySet())
+				{
+					entry.getValue().resolveDestination(mapName);
+					onEntryAdded(new DataWrapper(entry.getValue(), false, entry.getKey()));
+				}
+			}
+		});
 		log.info("Cleared "+(all ? "all " : "local ")+"pending entries for "+mapName);
 		
 	}
 	@Override
 	public void entryAdded(EntryEvent<Serializable, Data> event) {
+		event.getValue().resolveDestination(event.getName());
 		onEntryAdded(new DataWrapper(event.getValue(), false, event.getKey()));
 	}
 	/**
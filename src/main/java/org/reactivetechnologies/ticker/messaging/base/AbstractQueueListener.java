@@ -74,16 +74,35 @@ public abstract class AbstractQueueListener<T extends Data> implements QueueList
 		
 	}
 	/**
-	 * Return false if a dedicated thread pool is requested for this consumer. When using a
-	 * dedicated pool, the worker thread is not configurable. It will be kept equal to the number of cores available.
-	 * The consumer concurrency however, can always be configured. This is done to limit the number of threads created
-	 * with an application creating arbitrary number of consumers. 
+	 * Return false if a dedicated thread pool is requested for this consumer. A dedicated pool isolates this consumer from
+	 * the others on the node. Its threads are set by 'container.dispatcher.threads' (default number of cores available), or 
+	 * a thread per worker with a 'pinned' executor. The consumer concurrency however, can always be configured. 
 	 * @return Whether to use the shared pool. Default true.
 	 */
 	public boolean useSharedPool()
 	{
 		return true;
 	}
+	/**
+	 * Return true if this consumer does blocking I/O. On the shared pool, a blocking consumer runs on a separate dispatcher
+	 * for blocking I/O, shared by the blocking consumers only.
+	 * @return Whether this consumer blocks. Default false.
+	 */
+	public boolean isBlocking()
+	{
+		return false;
+	}
+	/**
+	 * Return true to run {@link #onMessage(Data)} on virtual threads, when the runtime supports them (Java 21+), else on a 
+	 * thread pool of 'container.virtual.fallback_threads'. A blocking call then does not hold a worker thread, and up to
+	 * 'container.virtual.max_inflight' messages can be in process at a time. With 'partition' or 'key' dispatch, messages of the same
+	 * partition (or key) are still processed in order. Not applicable to a {@linkplain BatchQueueListener}.
+	 * @return Whether to use virtual threads. Default false.
+	 */
+	public boolean useVirtualThreads()
+	{
+		return false;
+	}
 	private static final Logger log = LoggerFactory.getLogger(AbstractQueueListener.class);
 	/*
 	 * (non-Javadoc)
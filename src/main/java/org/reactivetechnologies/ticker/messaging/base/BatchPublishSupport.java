@@ -0,0 +1,180 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.base;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.reactivetechnologies.ticker.datagrid.HazelcastOperations;
+import org.reactivetechnologies.ticker.messaging.Data;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import com.hazelcast.core.ICompletableFuture;
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.Member;
+import com.hazelcast.core.PartitionService;
+/**
+ * Batch publishing of {@linkplain Data} items. Items are grouped by destination, keys are reserved
+ * in bulk per destination, and each group is written with a single {@linkplain IMap#putAll(Map)}. For
+ * asynchronous writes, the groups are further split by partition owner so that each member receives one bulk operation.
+ * @author esutdal
+ *
+ */
+public class BatchPublishSupport {
+
+	/**
+	 * Max bulk writes waiting for a writer thread. Beyond this the write is rejected, so that a burst of 
+	 * {@linkplain #ingestAll(Collection)} calls neither grows the pool nor blocks the caller.
+	 */
+	private static final int MAX_PENDING_WRITES = 1024;
+	private static final ExecutorService batchWriter = newBatchWriter();
+	
+	private static ExecutorService newBatchWriter()
+	{
+		int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, 
+				new LinkedBlockingQueue<Runnable>(MAX_PENDING_WRITES), new ThreadFactory() {
+			private final AtomicInteger n = new AtomicInteger();
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "ticker-batch-pub-" + n.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
+	private final HazelcastOperations hazelWrap;
+	private final ItemPartKeyGenerator keyGen;
+	/**
+	 *
+	 * @param hazelWrap
+	 * @param keyGen
+	 */
+	public BatchPublishSupport(HazelcastOperations hazelWrap, ItemPartKeyGenerator keyGen) {
+		this.hazelWrap = hazelWrap;
+		this.keyGen = keyGen;
+	}
+
+	private static <E extends Data> Map<String, List<E>> groupByDestination(Collection<E> items)
+	{
+		Map<String, List<E>> byDestination = new LinkedHashMap<>();
+		for(E item : items)
+		{
+			Assert.isTrue(StringUtils.hasText(item.getDestination()), "'destination' not provided in Data");
+			List<E> group = byDestination.get(item.getDestination());
+			if(group == null)
+			{
+				group = new ArrayList<>();
+				byDestination.put(item.getDestination(), group);
+			}
+			group.add(item);
+		}
+		return byDestination;
+	}
+
+	private <E extends Data> Map<Object, Data> assignKeys(String destination, List<E> items)
+	{
+		long[] keys = keyGen.getNext(destination, items.size());
+		Map<Object, Data> entries = new HashMap<>(items.size() * 2);
+		for (int i = 0; i < keys.length; i++) {
+			entries.put(keyGen.toKey(keys[i], items.get(i)), items.get(i));
+		}
+		return entries;
+	}
+
+	private Map<Member, Map<Object, Data>> groupByOwner(Map<Object, Data> entries)
+	{
+		PartitionService partitions = hazelWrap.hazelcastInstance().getPartitionService();
+		Map<Member, Map<Object, Data>> byOwner = new HashMap<>();
+		for(Entry<Object, Data> entry : entries.entrySet())
+		{
+			Member owner = partitions.getPartition(entry.getKey()).getOwner();
+			Map<Object, Data> group = byOwner.get(owner);
+			if(group == null)
+			{
+				group = new HashMap<>();
+				byOwner.put(owner, group);
+			}
+			group.put(entry.getKey(), entry.getValue());
+		}
+		return byOwner;
+	}
+	/**
+	 * Synchronous batch write. One bulk write per destination.
+	 * @param items
+	 * @return
+	 */
+	public <E extends Data> boolean offerAll(Collection<E> items)
+	{
+		for(Entry<String, List<E>> group : groupByDestination(items).entrySet())
+		{
+			IMap<Object, Data> map = hazelWrap.getMap(group.getKey());
+			map.putAll(assignKeys(group.getKey(), group.getValue()));
+		}
+		return true;
+	}
+	/**
+	 * Asynchronous batch write. One bulk write per destination and partition owner, run on a bounded
+	 * pool of writer threads. If the writers are saturated, the bulk writes not queued fail with an 
+	 * {@linkplain IngestRejectedException}, and the returned future completes exceptionally. Bulk writes already 
+	 * queued are still run, so a rejected batch may be partially written.
+	 * @param items
+	 * @return
+	 */
+	public <E extends Data> ICompletableFuture<Void> ingestAll(Collection<E> items)
+	{
+		List<CompletableFuture<Void>> writes = new ArrayList<>();
+		for(Entry<String, List<E>> group : groupByDestination(items).entrySet())
+		{
+			IMap<Object, Data> map = hazelWrap.getMap(group.getKey());
+			for(Map<Object, Data> ownerGroup : groupByOwner(assignKeys(group.getKey(), group.getValue())).values())
+			{
+				CompletableFuture<Void> write;
+				try {
+					write = CompletableFuture.runAsync(new Runnable() {
+
+						@Override
+						public void run() {
+							map.putAll(ownerGroup);
+						}
+					}, batchWriter);
+				} catch (RejectedExecutionException e) {
+					write = new CompletableFuture<>();
+					write.completeExceptionally(new IngestRejectedException("Batch writers saturated, "+ownerGroup.size()+" items not written to "+group.getKey()));
+				}
+				writes.add(write);
+			}
+		}
+		return CompletableBatchFuture.whenAll(writes.toArray(new CompletableFuture<?>[writes.size()]));
+	}
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.base;
+
+import java.util.List;
+
+import org.reactivetechnologies.ticker.messaging.Data;
+import org.reactivetechnologies.ticker.messaging.PartialBatchException;
+/**
+ * A {@linkplain QueueListener} that consumes entries in micro batches. Entries are gathered per worker, and delivered
+ * together once {@linkplain #maxBatchSize()} entries are gathered, or {@linkplain #maxBatchWaitMillis()} has elapsed since the
+ * first of them. 
+ * <p>
+ * The batch is committed if {@linkplain #onMessages(List)} returns normally, and recorded as dead letters if it throws. To
+ * acknowledge a part of the batch, throw a {@linkplain PartialBatchException}.
+ * @author esutdal
+ *
+ * @param <T>
+ */
+public interface BatchQueueListener<T extends Data> extends QueueListener<T> {
+
+	/**
+	 * Callback method invoked with a batch of messages added to queue.
+	 * @param batch
+	 * @throws Exception
+	 */
+	void onMessages(List<T> batch) throws Exception;
+	/**
+	 * Max number of entries delivered in a batch.
+	 * @return
+	 */
+	int maxBatchSize();
+	/**
+	 * Max time in millis the first entry of a batch will wait for the batch to fill.
+	 * @return
+	 */
+	long maxBatchWaitMillis();
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.base;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+
+import com.hazelcast.core.ExecutionCallback;
+import com.hazelcast.core.ICompletableFuture;
+/**
+ * A {@linkplain CompletableFuture} exposed as a Hazelcast {@linkplain ICompletableFuture}, so that
+ * batch operations can be combined and returned from {@linkplain Publisher} methods.
+ * @author esutdal
+ *
+ * @param <V>
+ */
+class CompletableBatchFuture<V> extends CompletableFuture<V> implements ICompletableFuture<V> {
+
+	/**
+	 * A future which completes when all the given futures complete, or exceptionally on the first failure.
+	 * @param futures
+	 * @return
+	 */
+	static CompletableBatchFuture<Void> whenAll(CompletableFuture<?>... futures)
+	{
+		CompletableBatchFuture<Void> all = new CompletableBatchFuture<>();
+		CompletableFuture.allOf(futures).whenComplete(new BiConsumer<Void, Throwable>() {
+
+			@Override
+			public void accept(Void v, Throwable t) {
+				if(t != null)
+					all.completeExceptionally(t);
+				else
+					all.complete(null);
+			}
+		});
+		return all;
+	}
+
+	private static <T> BiConsumer<T, Throwable> asConsumer(ExecutionCallback<T> callback)
+	{
+		return new BiConsumer<T, Throwable>() {
+
+			@Override
+			public void accept(T v, Throwable t) {
+				if(t != null)
+					callback.onFailure(t);
+				else
+					callback.onResponse(v);
+			}
+		};
+	}
+	@Override
+	public void andThen(ExecutionCallback<V> callback) {
+		whenComplete(asConsumer(callback));
+	}
+
+	@Override
+	public void andThen(ExecutionCallback<V> callback, Executor executor) {
+		whenCompleteAsync(asConsumer(callback), executor);
+	}
+
+}
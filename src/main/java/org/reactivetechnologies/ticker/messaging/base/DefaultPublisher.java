@@ -15,22 +15,52 @@
  */
 package org.reactivetechnologies.ticker.messaging.base;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
 import org.reactivetechnologies.ticker.datagrid.HazelcastOperations;
 import org.reactivetechnologies.ticker.messaging.Data;
+import org.reactivetechnologies.ticker.messaging.base.IngestFlowControl.OverflowPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
+import com.hazelcast.core.ExecutionCallback;
+import com.hazelcast.core.HazelcastException;
 import com.hazelcast.core.ICompletableFuture;
 import com.hazelcast.core.IMap;
+import com.hazelcast.internal.serialization.InternalSerializationService;
 
 public class DefaultPublisher implements Publisher {
 
+	private static final Logger log = LoggerFactory.getLogger(DefaultPublisher.class);
+	/**
+	 * Write-behind {@linkplain #offer(Data) offer} returns when the item is buffered locally.
+	 */
+	public static final String DURABILITY_BUFFERED = "buffered";
+	/**
+	 * Write-behind {@linkplain #offer(Data) offer} returns when the item is flushed to the grid.
+	 */
+	public static final String DURABILITY_FLUSHED = "flushed";
+
 	public DefaultPublisher(HazelcastOperations hazelWrap) {
 		this.hazelWrap = hazelWrap;
 	}
 
-	private IMap<Long, Data> getMap(Data d)
+	private IMap<Object, Data> getMap(Data d)
 	{
 		Assert.isTrue(StringUtils.hasText(d.getDestination()), "'destination' not provided in Data");
 		return hazelWrap.getMap(d.getDestination());
@@ -39,16 +69,356 @@ public class DefaultPublisher implements Publisher {
 
 	@Autowired
 	ItemPartKeyGenerator keyGen;
+	private BatchPublishSupport batchSupport;
+	
+	@Value("${pub.ingest.max_inflight:0}")
+	private int maxInFlight;
+	@Value("${pub.ingest.max_inflight_per_destination:0}")
+	private int maxInFlightPerDestination;
+	@Value("${pub.ingest.overflow_policy:BLOCK}")
+	private String overflowPolicy;
+	@Value("${pub.ingest.block_timeout_millis:1000}")
+	private long blockTimeoutMillis;
+	private IngestFlowControl flowControl;
+	
+	@Value("${pub.write_behind.enable:false}")
+	private boolean writeBehind;
+	@Value("${pub.write_behind.buffer_size:8192}")
+	private int writeBehindBufferSize;
+	@Value("${pub.write_behind.batch_size:256}")
+	private int writeBehindBatchSize;
+	@Value("${pub.write_behind.durability:"+DURABILITY_FLUSHED+"}")
+	private String durability;
+	@Value("${pub.write_behind.flush_timeout_millis:5000}")
+	private long flushTimeoutMillis;
+	@Value("${pub.write_behind.max_destinations:64}")
+	private int writeBehindMaxDestinations;
+	private WriteBehindBuffer writeBehindBuffer;
+	private boolean awaitFlush;
+	
+	@Value("${pub.wal.enable:false}")
+	private boolean walEnabled;
+	@Value("${pub.wal.dir:wal}")
+	private String walDir;
+	@Value("${pub.wal.segment_size_mb:64}")
+	private int walSegmentSizeMb;
+	@Value("${pub.wal.group_commit_max:256}")
+	private int walGroupCommitMax;
+	@Value("${pub.wal.max_pending:10000}")
+	private int walMaxPending;
+	@Autowired
+	private InternalSerializationService serializer;
+	private WriteAheadLogSupport wal;
+	
+	@PostConstruct
+	private void init() throws IOException
+	{
+		batchSupport = new BatchPublishSupport(hazelWrap, keyGen);
+		flowControl = new IngestFlowControl(maxInFlight, maxInFlightPerDestination, 
+				OverflowPolicy.valueOf(overflowPolicy.trim().toUpperCase()), blockTimeoutMillis);
+		if(writeBehind)
+		{
+			writeBehindBuffer = new WriteBehindBuffer(hazelWrap, keyGen, writeBehindBufferSize, writeBehindBatchSize, 
+					flowControl.getPolicy(), blockTimeoutMillis, writeBehindMaxDestinations);
+			awaitFlush = !DURABILITY_BUFFERED.equalsIgnoreCase(durability.trim());
+			log.info("Write-behind publishing enabled, offer returns when "+(awaitFlush ? DURABILITY_FLUSHED : DURABILITY_BUFFERED));
+		}
+		if(walEnabled)
+		{
+			wal = new WriteAheadLogSupport(new File(walDir), walSegmentSizeMb * 1024 * 1024, walGroupCommitMax, walMaxPending, serializer);
+			wal.replayAsync(hazelWrap, keyGen);
+		}
+	}
+	@PreDestroy
+	private void destroy() throws IOException
+	{
+		if(writeBehindBuffer != null)
+			writeBehindBuffer.shutdown();
+		if(wal != null)
+			wal.close();
+		log.info(flowControl.toString());
+	}
+	/**
+	 * The flow control applied on {@linkplain #ingest(Data)}, for current credits and wait metrics.
+	 * @return
+	 */
+	public IngestFlowControl getFlowControl() {
+		return flowControl;
+	}
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * If the write ahead log is enabled, returns once the item is durable in the local log. The grid write is then
+	 * asynchronous, and the item is replayed from the log on restart if that write was not completed.
+	 */
 	@Override
 	public <E extends Data> boolean offer(E item) {
-		getMap(item).set(keyGen.getNext(item.getDestination()), item);
+		if(wal != null)
+		{
+			Assert.isTrue(StringUtils.hasText(item.getDestination()), "'destination' not provided in Data");
+			logAndIngest(item);
+			return true;
+		}
+		IMap<Object, Data> map = getMap(item);
+		if(writeBehindBuffer != null)
+		{
+			CompletableBatchFuture<Void> ack = awaitFlush ? new CompletableBatchFuture<>() : null;
+			if(writeBehindBuffer.append(item, ack))
+			{
+				return ack == null || awaitFlush(ack);
+			}
+		}
+		map.set(keyGen.getNextKey(item), item);
 		return true;
 	}
+	private void logAndIngest(Data item)
+	{
+		final long segment = wal.append(item);
+		ICompletableFuture<Void> written;
+		try {
+			written = ingest(item);
+		} catch (IngestRejectedException e) {
+			getMap(item).set(keyGen.getNextKey(item), item);
+			wal.applied(segment);
+			return;
+		}
+		written.andThen(new ExecutionCallback<Void>() {
+
+			@Override
+			public void onResponse(Void response) {
+				wal.applied(segment);
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				log.warn("Logged item not written to grid, it will be replayed on restart", t);
+			}
+		});
+	}
+	/**
+	 * 
+	 * @param ack
+	 * @return false on timeout
+	 */
+	private boolean awaitFlush(CompletableBatchFuture<Void> ack)
+	{
+		try 
+		{
+			ack.get(flushTimeoutMillis, TimeUnit.MILLISECONDS);
+			return true;
+		} 
+		catch (TimeoutException e) {
+			log.warn("Write-behind flush not acknowledged in "+flushTimeoutMillis+" millis");
+			return false;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		catch (ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new HazelcastException(e.getCause());
+		}
+	}
 
 	@Override
 	public <E extends Data> ICompletableFuture<Void> ingest(E item) {
-		ICompletableFuture<Void> ret = getMap(item).setAsync(keyGen.getNext(item.getDestination()), item);
+		IMap<Object, Data> map = getMap(item);
+		if(writeBehindBuffer != null)
+		{
+			CompletableBatchFuture<Void> ack = new CompletableBatchFuture<>();
+			if(writeBehindBuffer.append(item, ack))
+				return ack;
+		}
+		final String destination = item.getDestination();
+		if(!flowControl.acquire(destination))
+		{
+			map.set(keyGen.getNextKey(item), item);
+			CompletableBatchFuture<Void> spilled = new CompletableBatchFuture<>();
+			spilled.complete(null);
+			return spilled;
+		}
+		ICompletableFuture<Void> ret;
+		try {
+			ret = map.setAsync(keyGen.getNextKey(item), item);
+		} catch (RuntimeException e) {
+			flowControl.release(destination);
+			throw e;
+		}
+		ret.andThen(new ExecutionCallback<Void>() {
+
+			@Override
+			public void onResponse(Void response) {
+				flowControl.release(destination);
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				flowControl.release(destination);
+			}
+		});
 		return ret;
 	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Goes through the same write ahead log and write-behind buffer as {@linkplain #offer(Data)}, if enabled. The log records
+	 * of a batch are group committed.
+	 */
+	@Override
+	public <E extends Data> boolean offerAll(Collection<E> items) {
+		if(wal != null)
+		{
+			for(E item : items)
+				Assert.isTrue(StringUtils.hasText(item.getDestination()), "'destination' not provided in Data");
+			logAndIngestAll(items);
+			return true;
+		}
+		if(writeBehindBuffer != null)
+		{
+			List<CompletableFuture<?>> acks = awaitFlush ? new ArrayList<CompletableFuture<?>>(items.size()) : null;
+			List<E> spilled = appendAll(items, acks, false);
+			if(!spilled.isEmpty())
+				batchSupport.offerAll(spilled);
+			return acks == null || awaitFlush(CompletableBatchFuture.whenAll(acks.toArray(new CompletableFuture<?>[acks.size()])));
+		}
+		return batchSupport.offerAll(items);
+	}
+	private void logAndIngestAll(Collection<? extends Data> items)
+	{
+		final long[] segments = wal.appendAll(items);
+		ingestAll(items, true).andThen(new ExecutionCallback<Void>() {
+
+			@Override
+			public void onResponse(Void response) {
+				for(long segment : segments)
+					wal.applied(segment);
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				log.warn("Logged items not written to grid, they will be replayed on restart", t);
+			}
+		});
+	}
+	/**
+	 * Append the items to the write-behind buffer.
+	 * @param items
+	 * @param acks to collect the flush acknowledgements, or null
+	 * @param spillRejected whether to return rejected items as spilled, instead of throwing
+	 * @return the items not buffered, to be written directly
+	 */
+	private <E extends Data> List<E> appendAll(Collection<E> items, List<CompletableFuture<?>> acks, boolean spillRejected)
+	{
+		List<E> spilled = new ArrayList<>();
+		for(E item : items)
+		{
+			Assert.isTrue(StringUtils.hasText(item.getDestination()), "'destination' not provided in Data");
+			CompletableBatchFuture<Void> ack = acks != null ? new CompletableBatchFuture<Void>() : null;
+			boolean buffered;
+			try {
+				buffered = writeBehindBuffer.append(item, ack);
+			} catch (IngestRejectedException e) {
+				if(!spillRejected)
+					throw e;
+				buffered = false;
+			}
+			if(buffered)
+			{
+				if(ack != null)
+					acks.add(ack);
+			}
+			else
+				spilled.add(item);
+		}
+		return spilled;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Goes through the same write-behind buffer and in-flight credits as {@linkplain #ingest(Data)}. Each item not buffered holds 
+	 * a credit of its destination till its bulk write completes, and items spilled by the overflow policy are written synchronously. 
+	 * On an {@linkplain IngestRejectedException}, the credits acquired for the batch are released and none of its items are written,
+	 * except those already appended to the write-behind buffer, which are still flushed.
+	 */
+	@Override
+	public <E extends Data> ICompletableFuture<Void> ingestAll(Collection<E> items) {
+		return ingestAll(items, false);
+	}
+	/**
+	 * 
+	 * @param items
+	 * @param spillRejected whether to write rejected items synchronously, instead of throwing. Used for logged items, 
+	 * which are durable already
+	 * @return
+	 */
+	private <E extends Data> ICompletableFuture<Void> ingestAll(Collection<E> items, boolean spillRejected) {
+		List<CompletableFuture<?>> writes = new ArrayList<>();
+		Collection<E> unbuffered = items;
+		if(writeBehindBuffer != null)
+		{
+			unbuffered = appendAll(items, writes, spillRejected);
+		}
+		final List<E> acquired = new ArrayList<>(unbuffered.size());
+		List<E> spilled = new ArrayList<>();
+		try 
+		{
+			for(E item : unbuffered)
+			{
+				Assert.isTrue(StringUtils.hasText(item.getDestination()), "'destination' not provided in Data");
+				boolean credited;
+				try {
+					credited = flowControl.acquire(item.getDestination());
+				} catch (IngestRejectedException e) {
+					if(!spillRejected)
+						throw e;
+					credited = false;
+				}
+				if(credited)
+					acquired.add(item);
+				else
+					spilled.add(item);
+			}
+		} 
+		catch (RuntimeException e) {
+			releaseAll(acquired);
+			throw e;
+		}
+		if(!spilled.isEmpty())
+			batchSupport.offerAll(spilled);
+		if(!acquired.isEmpty())
+		{
+			final CompletableBatchFuture<Void> written = new CompletableBatchFuture<>();
+			try {
+				batchSupport.ingestAll(acquired).andThen(new ExecutionCallback<Void>() {
+
+					@Override
+					public void onResponse(Void response) {
+						releaseAll(acquired);
+						written.complete(null);
+					}
+
+					@Override
+					public void onFailure(Throwable t) {
+						releaseAll(acquired);
+						written.completeExceptionally(t);
+					}
+				});
+			} catch (RuntimeException e) {
+				releaseAll(acquired);
+				throw e;
+			}
+			writes.add(written);
+		}
+		return CompletableBatchFuture.whenAll(writes.toArray(new CompletableFuture<?>[writes.size()]));
+	}
+	private void releaseAll(Collection<? extends Data> acquired)
+	{
+		for(Data item : acquired)
+			flowControl.release(item.getDestination());
+	}
 	
 }
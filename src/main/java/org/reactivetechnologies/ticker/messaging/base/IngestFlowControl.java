@@ -0,0 +1,235 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.base;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+/**
+ * Credit based flow control for asynchronous writes. Every in-flight write holds a credit of its destination and
+ * one of this node, which is returned when the write completes. When a credit is not available, the
+ * {@linkplain OverflowPolicy} decides whether the caller waits, is rejected, or spills to a synchronous write.
+ * @author esutdal
+ *
+ */
+public class IngestFlowControl {
+
+	/**
+	 * What to do when the in-flight limit is reached.
+	 */
+	public static enum OverflowPolicy
+	{
+		/**
+		 * Wait for a credit, till the block timeout. Rejected on timeout.
+		 */
+		BLOCK,
+		/**
+		 * Reject immediately with an {@linkplain IngestRejectedException}.
+		 */
+		REJECT,
+		/**
+		 * Write synchronously in the caller thread, without holding a credit.
+		 */
+		SPILL
+	}
+	
+	private final int nodeLimit;
+	private final int destinationLimit;
+	private final OverflowPolicy policy;
+	private final long blockTimeoutNanos;
+	
+	private final Semaphore nodeCredits;
+	private final ConcurrentMap<String, Semaphore> destinationCredits = new ConcurrentHashMap<>();
+	
+	private final LongAdder waitCount = new LongAdder();
+	private final LongAdder waitNanos = new LongAdder();
+	private final LongAdder rejectCount = new LongAdder();
+	private final LongAdder spillCount = new LongAdder();
+	/**
+	 * 
+	 * @param nodeLimit max in-flight writes on this node, 0 for no limit
+	 * @param destinationLimit max in-flight writes per destination, 0 for no limit
+	 * @param policy
+	 * @param blockTimeoutMillis max wait for a credit, on {@linkplain OverflowPolicy#BLOCK}
+	 */
+	public IngestFlowControl(int nodeLimit, int destinationLimit, OverflowPolicy policy, long blockTimeoutMillis) {
+		this.nodeLimit = nodeLimit;
+		this.destinationLimit = destinationLimit;
+		this.policy = policy;
+		this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMillis);
+		this.nodeCredits = nodeLimit > 0 ? new Semaphore(nodeLimit) : null;
+	}
+
+	private Semaphore destinationCredits(String destination)
+	{
+		if(destinationLimit <= 0)
+			return null;
+		Semaphore credits = destinationCredits.get(destination);
+		if(credits == null)
+		{
+			destinationCredits.putIfAbsent(destination, new Semaphore(destinationLimit));
+			credits = destinationCredits.get(destination);
+		}
+		return credits;
+	}
+	/**
+	 * Wait for a credit as per the policy.
+	 * @param credits
+	 * @param deadline
+	 * @return false if the write is to be spilled
+	 * @throws IngestRejectedException
+	 */
+	private boolean acquire(Semaphore credits, long deadline, String name)
+	{
+		if(credits == null || credits.tryAcquire())
+			return true;
+		
+		switch(policy)
+		{
+			case SPILL:
+				return false;
+			case BLOCK:
+				long start = System.nanoTime();
+				waitCount.increment();
+				try 
+				{
+					if(credits.tryAcquire(deadline - start, TimeUnit.NANOSECONDS))
+						return true;
+				} 
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				finally {
+					waitNanos.add(System.nanoTime() - start);
+				}
+				break;
+			default:
+				break;
+		}
+		rejectCount.increment();
+		throw new IngestRejectedException("No in-flight credit available for "+name);
+	}
+	/**
+	 * Acquire the credits for an asynchronous write to the destination. If acquired, the credits must be
+	 * {@linkplain #release(String) released} on completion of the write.
+	 * @param destination
+	 * @return true if acquired, false if the write should be spilled to a synchronous write instead
+	 * @throws IngestRejectedException if no credit is available as per the policy
+	 */
+	public boolean acquire(String destination)
+	{
+		long deadline = System.nanoTime() + blockTimeoutNanos;
+		Semaphore credits = destinationCredits(destination);
+		if(!acquire(credits, deadline, "destination '"+destination+"'"))
+		{
+			spillCount.increment();
+			return false;
+		}
+		boolean acquired = false;
+		try 
+		{
+			acquired = acquire(nodeCredits, deadline, "node");
+		} 
+		finally {
+			if(!acquired && credits != null)
+				credits.release();
+		}
+		if(!acquired)
+			spillCount.increment();
+		return acquired;
+	}
+	/**
+	 * Return the credits of a completed write.
+	 * @param destination
+	 */
+	public void release(String destination)
+	{
+		if(nodeCredits != null)
+			nodeCredits.release();
+		Semaphore credits = destinationCredits(destination);
+		if(credits != null)
+			credits.release();
+	}
+	/**
+	 * 
+	 * @return credits available on this node, or -1 if not limited
+	 */
+	public int getAvailableCredits()
+	{
+		return nodeCredits != null ? nodeCredits.availablePermits() : -1;
+	}
+	/**
+	 * 
+	 * @param destination
+	 * @return credits available for the destination, or -1 if not limited
+	 */
+	public int getAvailableCredits(String destination)
+	{
+		Semaphore credits = destinationCredits(destination);
+		return credits != null ? credits.availablePermits() : -1;
+	}
+	/**
+	 * 
+	 * @return in-flight writes on this node, if limited
+	 */
+	public int getInFlight()
+	{
+		return nodeCredits != null ? nodeLimit - nodeCredits.availablePermits() : 0;
+	}
+	/**
+	 * 
+	 * @return no of times a caller had to wait for a credit
+	 */
+	public long getWaitCount()
+	{
+		return waitCount.sum();
+	}
+	/**
+	 * 
+	 * @return total time in millis callers have waited for credits
+	 */
+	public long getWaitMillis()
+	{
+		return TimeUnit.NANOSECONDS.toMillis(waitNanos.sum());
+	}
+	/**
+	 * 
+	 * @return no of rejected writes
+	 */
+	public long getRejectCount()
+	{
+		return rejectCount.sum();
+	}
+	/**
+	 * 
+	 * @return no of writes spilled to synchronous writes
+	 */
+	public long getSpillCount()
+	{
+		return spillCount.sum();
+	}
+	public OverflowPolicy getPolicy() {
+		return policy;
+	}
+	@Override
+	public String toString() {
+		return "IngestFlowControl [policy=" + policy + ", nodeLimit=" + nodeLimit + ", destinationLimit=" + destinationLimit
+				+ ", inFlight=" + getInFlight() + ", waits=" + getWaitCount() + ", waitMillis=" + getWaitMillis()
+				+ ", rejected=" + getRejectCount() + ", spilled=" + getSpillCount() + "]";
+	}
+}
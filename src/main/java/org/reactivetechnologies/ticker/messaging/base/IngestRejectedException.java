@@ -0,0 +1,34 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.base;
+/**
+ * Thrown by {@linkplain Publisher#ingest(org.reactivetechnologies.ticker.messaging.Data) ingest}, when no in-flight credit
+ * is available and the {@linkplain IngestFlowControl.OverflowPolicy overflow policy} does not allow waiting (any longer).
+ * @author esutdal
+ *
+ */
+public class IngestRejectedException extends RuntimeException {
+
+	public IngestRejectedException(String message) {
+		super(message);
+	}
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+
+}
@@ -15,16 +15,56 @@
  */
 package org.reactivetechnologies.ticker.messaging.base;
 
+import javax.annotation.PostConstruct;
+
 import org.reactivetechnologies.ticker.datagrid.HazelcastOperations;
+import org.reactivetechnologies.ticker.messaging.Data;
+import org.reactivetechnologies.ticker.messaging.data.ext.PartitionKey;
+import org.reactivetechnologies.ticker.messaging.base.keygen.BlockAllocatingStrategy;
+import org.reactivetechnologies.ticker.messaging.base.keygen.IdGeneratorStrategy;
+import org.reactivetechnologies.ticker.messaging.base.keygen.KeyGenerationStrategy;
+import org.reactivetechnologies.ticker.messaging.base.keygen.SnowflakeStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.util.StringUtils;
 
 import com.hazelcast.util.UuidUtil;
-
+/**
+ * Generates the keys for queue entries, using a configured {@linkplain KeyGenerationStrategy}.
+ * @author esutdal
+ *
+ */
 public class ItemPartKeyGenerator {
 
+	private static final Logger log = LoggerFactory.getLogger(ItemPartKeyGenerator.class);
+	public static final String STRATEGY_IDGEN = "idgen";
+	public static final String STRATEGY_BLOCK = "block";
+	public static final String STRATEGY_SNOWFLAKE = "snowflake";
+	
 	@Autowired
 	HazelcastOperations hazelOps;
-	//TODO: key generation strategy
+	@Value("${pub.keygen.strategy:"+STRATEGY_IDGEN+"}")
+	private String strategyName;
+	@Value("${pub.keygen.block_size:10000}")
+	private long blockSize;
+	
+	private KeyGenerationStrategy strategy;
+	private volatile LocalPartitionRouter localRouter;
+	
+	@PostConstruct
+	void init()
+	{
+		if(STRATEGY_BLOCK.equalsIgnoreCase(strategyName))
+			strategy = new BlockAllocatingStrategy(hazelOps.hazelcastInstance(), blockSize);
+		else if(STRATEGY_SNOWFLAKE.equalsIgnoreCase(strategyName))
+			strategy = new SnowflakeStrategy(hazelOps.hazelcastInstance());
+		else
+			strategy = new IdGeneratorStrategy(hazelOps.hazelcastInstance());
+		
+		log.info("Using key generation strategy- "+strategy.getClass().getSimpleName());
+	}
 	/**
 	 * Get the next partitioning key for distributing queue item.
 	 * @return
@@ -40,6 +80,62 @@ public class ItemPartKeyGenerator {
 	 */
 	public long getNext(String key)
 	{
-		return hazelOps.hazelcastInstance().getIdGenerator(key).newId();
+		return strategy.next(key);
+	}
+	/**
+	 * Get the next 'count' partitioning keys for distributing queue items.
+	 * @param key queue name
+	 * @param count
+	 * @return
+	 */
+	public long[] getNext(String key, int count)
+	{
+		return strategy.next(key, count);
+	}
+	private LocalPartitionRouter localRouter()
+	{
+		if(localRouter == null)
+		{
+			synchronized (this) {
+				if(localRouter == null)
+					localRouter = new LocalPartitionRouter(hazelOps.hazelcastInstance());
+			}
+		}
+		return localRouter;
+	}
+	/**
+	 * Wrap a generated id as per the {@linkplain Data#getKeyRouting() key routing} of the item. Correlation routed
+	 * items without a correlationID are keyed by the plain id.
+	 * @param id
+	 * @param item
+	 * @return a {@linkplain Long}, or a {@linkplain PartitionKey}
+	 */
+	Object toKey(long id, Data item)
+	{
+		switch(item.getKeyRouting())
+		{
+			case Data.ROUTE_LOCAL:
+				return new PartitionKey(id, localRouter().next());
+			case Data.ROUTE_CORRELATION:
+				//without a correlation id every such item would hash to the same partition
+				return StringUtils.hasText(item.getCorrelationID()) ? new PartitionKey(id, item.getCorrelationID()) : id;
+			default:
+				return id;
+		}
+	}
+	/**
+	 * Get the next entry key for the given item, as per its key routing.
+	 * @param item
+	 * @return
+	 */
+	public Object getNextKey(Data item)
+	{
+		return toKey(getNext(item.getDestination()), item);
+	}
+	public KeyGenerationStrategy getStrategy() {
+		return strategy;
+	}
+	public void setStrategy(KeyGenerationStrategy strategy) {
+		this.strategy = strategy;
 	}
 }
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.base;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.Partition;
+import com.hazelcast.core.PartitionService;
+/**
+ * Provides routing keys which map to partitions owned by the local member. A routing key is
+ * found for each partition id once, and the local partitions are picked in a round robin.
+ * @author esutdal
+ *
+ */
+class LocalPartitionRouter {
+
+	private final PartitionService partitionService;
+	private final String[] routingKeys;
+	private volatile Partition[] localPartitions;
+	private final AtomicInteger cursor = new AtomicInteger();
+	/**
+	 * 
+	 * @param hazelcast
+	 */
+	LocalPartitionRouter(HazelcastInstance hazelcast) {
+		partitionService = hazelcast.getPartitionService();
+		routingKeys = new String[partitionService.getPartitions().size()];
+		int found = 0;
+		for (int i = 0; found < routingKeys.length; i++) {
+			String key = "p" + i;
+			int pid = partitionService.getPartition(key).getPartitionId();
+			if (routingKeys[pid] == null) {
+				routingKeys[pid] = key;
+				found++;
+			}
+		}
+		refresh();
+	}
+	
+	private synchronized void refresh()
+	{
+		List<Partition> owned = new ArrayList<>();
+		for(Partition p : partitionService.getPartitions())
+		{
+			if(p.getOwner() != null && p.getOwner().localMember())
+				owned.add(p);
+		}
+		localPartitions = owned.toArray(new Partition[owned.size()]);
+	}
+	/**
+	 * Get a routing key for a locally owned partition. If the member owns no partition (yet), 
+	 * a routing key for any partition is returned.
+	 * @return
+	 */
+	String next()
+	{
+		Partition[] local = localPartitions;
+		if (local.length > 0) {
+			Partition p = local[Math.floorMod(cursor.getAndIncrement(), local.length)];
+			if (p.getOwner() != null && p.getOwner().localMember())
+				return routingKeys[p.getPartitionId()];
+		}
+		//ownership has changed since last refresh
+		refresh();
+		local = localPartitions;
+		if(local.length == 0)
+			return routingKeys[Math.floorMod(cursor.getAndIncrement(), routingKeys.length)];
+		
+		return routingKeys[local[Math.floorMod(cursor.getAndIncrement(), local.length)].getPartitionId()];
+	}
+}
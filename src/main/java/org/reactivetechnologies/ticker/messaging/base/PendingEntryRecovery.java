@@ -0,0 +1,242 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.base;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.reactivetechnologies.ticker.messaging.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.Partition;
+import com.hazelcast.map.impl.proxy.MapProxyImpl;
+/**
+ * Recovery of the pending entries of a queue map, on startup or restart. The partitions are read in parallel by a bounded
+ * number of readers, each streaming pages of entries from a partition to a {@linkplain PageHandler}. This avoids a 
+ * key set fetch followed by a get per key. Progress is logged periodically. Recovery can be run in the background with
+ * {@link #recoverAsync(IMap, boolean, PageHandler)}, in which case the consumer bounds the recovered entries in flight by
+ * blocking in the page handler, upto {@link #getMaxInFlight()}.
+ * @author esutdal
+ *
+ */
+public class PendingEntryRecovery {
+
+	private static final Logger log = LoggerFactory.getLogger(PendingEntryRecovery.class);
+	public static final int DEFAULT_PARALLELISM = 4;
+	public static final int DEFAULT_PAGE_SIZE = 1000;
+	public static final int DEFAULT_MAX_IN_FLIGHT = 10000;
+	private static final long PROGRESS_INTERVAL_SECONDS = 5;
+	
+	/**
+	 * Callback for a page of recovered entries. Invoked concurrently from the reader threads, which are interrupted
+	 * if an asynchronous recovery is cancelled.
+	 * @param <T>
+	 */
+	public static interface PageHandler<T>
+	{
+		void onPage(Map<Serializable, T> page);
+	}
+	
+	private final HazelcastInstance hazelcast;
+	private final int parallelism;
+	private final int pageSize;
+	private final int maxInFlight;
+	/**
+	 * 
+	 * @param hazelcast
+	 * @param parallelism max number of partitions read in parallel
+	 * @param pageSize max entries per page
+	 */
+	public PendingEntryRecovery(HazelcastInstance hazelcast, int parallelism, int pageSize) {
+		this(hazelcast, parallelism, pageSize, DEFAULT_MAX_IN_FLIGHT);
+	}
+	/**
+	 * 
+	 * @param hazelcast
+	 * @param parallelism max number of partitions read in parallel
+	 * @param pageSize max entries per page
+	 * @param maxInFlight max recovered entries delivered and not yet processed, per consumer
+	 */
+	public PendingEntryRecovery(HazelcastInstance hazelcast, int parallelism, int pageSize, int maxInFlight) {
+		this.hazelcast = hazelcast;
+		this.parallelism = Math.max(1, parallelism);
+		this.pageSize = Math.max(1, pageSize);
+		this.maxInFlight = Math.max(1, maxInFlight);
+	}
+	/**
+	 * Max recovered entries delivered and not yet processed, per consumer.
+	 * @return
+	 */
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+	
+	private class Progress
+	{
+		final AtomicLong entries = new AtomicLong();
+		final AtomicInteger partitions = new AtomicInteger();
+		final AtomicInteger failed = new AtomicInteger();
+	}
+	
+	@SuppressWarnings("unchecked")
+	private <T> void recoverPartition(IMap<Serializable, T> map, int partitionId, PageHandler<T> handler, Progress progress)
+	{
+		Map<Serializable, T> page = new LinkedHashMap<>();
+		Iterator<Entry<Serializable, T>> iter = ((MapProxyImpl<Serializable, T>) map).iterator(pageSize, partitionId, true);
+		while(iter.hasNext())
+		{
+			Entry<Serializable, T> entry = iter.next();
+			if(entry.getValue() == null)
+				continue;
+			page.put(entry.getKey(), entry.getValue());
+			if(page.size() >= pageSize)
+			{
+				handler.onPage(page);
+				progress.entries.addAndGet(page.size());
+				page = new LinkedHashMap<>();
+			}
+		}
+		if(!page.isEmpty())
+		{
+			handler.onPage(page);
+			progress.entries.addAndGet(page.size());
+		}
+	}
+	/**
+	 * Recover the pending entries of the map. Returns when all the partitions have been read.
+	 * @param map
+	 * @param all true, if entries of all partitions are to be recovered, else only the locally owned ones
+	 * @param handler
+	 * @return number of entries recovered
+	 */
+	public <T extends Data> long recover(final IMap<Serializable, T> map, boolean all, final PageHandler<T> handler)
+	{
+		final Queue<Integer> partitions = new ConcurrentLinkedQueue<>();
+		for(Partition p : hazelcast.getPartitionService().getPartitions())
+		{
+			if(all || (p.getOwner() != null && p.getOwner().localMember()))
+				partitions.add(p.getPartitionId());
+		}
+		final int total = partitions.size();
+		if(total == 0)
+			return 0;
+		
+		final Progress progress = new Progress();
+		final String name = map.getName();
+		ExecutorService readers = Executors.newFixedThreadPool(Math.min(parallelism, total), new ThreadFactory() {
+			private final AtomicInteger n = new AtomicInteger();
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "ticker-recovery-" + name + "-" + n.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < Math.min(parallelism, total); i++) {
+			readers.execute(new Runnable() {
+				
+				@Override
+				public void run() {
+					Integer pid;
+					while(!Thread.currentThread().isInterrupted() && (pid = partitions.poll()) != null)
+					{
+						try {
+							recoverPartition(map, pid, handler, progress);
+						} catch (Exception e) {
+							progress.failed.incrementAndGet();
+							log.warn("["+name+"] recovery failed for partition "+pid+". "+e);
+							log.debug("", e);
+						}
+						progress.partitions.incrementAndGet();
+					}
+				}
+			});
+		}
+		readers.shutdown();
+		try 
+		{
+			while(!readers.awaitTermination(PROGRESS_INTERVAL_SECONDS, TimeUnit.SECONDS))
+			{
+				log.info("["+name+"] recovering pending entries: "+progress.entries.get()+" entries, "+progress.partitions.get()+"/"+total+" partitions");
+			}
+		} 
+		catch (InterruptedException e) {
+			readers.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		long millis = Math.max(1, System.currentTimeMillis() - start);
+		log.info("["+name+"] recovered "+progress.entries.get()+" pending entries from "+progress.partitions.get()+"/"+total+" partitions in "+millis+" ms ("
+				+ (progress.entries.get() * 1000 / millis)+"/sec)" + (progress.failed.get() > 0 ? ", "+progress.failed.get()+" partitions failed" : ""));
+		return progress.entries.get();
+	}
+	/**
+	 * Recover the pending entries of the map in a background thread, as {@link #recover(IMap, boolean, PageHandler)}.
+	 * @param map
+	 * @param all
+	 * @param handler
+	 * @return a future of the number of entries recovered. Cancelling it (with interrupt) stops the recovery.
+	 */
+	public <T extends Data> Future<Long> recoverAsync(final IMap<Serializable, T> map, final boolean all, final PageHandler<T> handler)
+	{
+		return recoverAsync(map, all, handler, null);
+	}
+	/**
+	 * Recover the pending entries of the map in a background thread, as {@link #recover(IMap, boolean, PageHandler)}.
+	 * @param map
+	 * @param all
+	 * @param handler
+	 * @param onComplete invoked from the recovery thread when the recovery ends, normally or not. Can be null
+	 * @return a future of the number of entries recovered. Cancelling it (with interrupt) stops the recovery.
+	 */
+	public <T extends Data> Future<Long> recoverAsync(final IMap<Serializable, T> map, final boolean all, final PageHandler<T> handler, final Runnable onComplete)
+	{
+		FutureTask<Long> task = new FutureTask<>(new Callable<Long>() {
+
+			@Override
+			public Long call() throws Exception {
+				try {
+					return recover(map, all, handler);
+				} 
+				finally {
+					if(onComplete != null)
+						onComplete.run();
+				}
+			}
+		});
+		Thread t = new Thread(task, "ticker-recovery-" + map.getName());
+		t.setDaemon(true);
+		t.start();
+		return task;
+	}
+}
@@ -15,6 +15,8 @@
  */
 package org.reactivetechnologies.ticker.messaging.base;
 
+import java.util.Collection;
+
 import org.reactivetechnologies.ticker.messaging.Data;
 
 import com.hazelcast.core.ICompletableFuture;
@@ -33,5 +35,20 @@ public interface Publisher {
 	 * @return
 	 */
 	<E extends Data> ICompletableFuture<Void> ingest(E item);
+	/**
+	 * Synchronous batch add to queue tail. Items are grouped by destination and written
+	 * with a single bulk operation per destination.
+	 * @param items
+	 * @return
+	 */
+	<E extends Data> boolean offerAll(Collection<E> items);
+	/**
+	 * Asynchronous batch add to queue tail. Items are grouped by destination and partition owner,
+	 * and each group is written with a single bulk operation. The returned future completes when all groups are written,
+	 * or fails with an {@linkplain IngestRejectedException} if the writers are saturated.
+	 * @param items
+	 * @return
+	 */
+	<E extends Data> ICompletableFuture<Void> ingestAll(Collection<E> items);
 
 }
\ No newline at end of file
@@ -0,0 +1,190 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.base;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.reactivetechnologies.ticker.datagrid.HazelcastOperations;
+import org.reactivetechnologies.ticker.messaging.Data;
+import org.reactivetechnologies.ticker.messaging.base.wal.SegmentLog;
+import org.reactivetechnologies.ticker.messaging.base.wal.SegmentLog.RecordHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hazelcast.core.HazelcastException;
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.nio.BufferObjectDataInput;
+import com.hazelcast.nio.BufferObjectDataOutput;
+/**
+ * Logs published {@linkplain Data} items to a local {@linkplain SegmentLog}, before they are written to the grid. 
+ * Items logged but not known to be written before a crash are replayed into the grid on startup.
+ * @author esutdal
+ *
+ */
+class WriteAheadLogSupport implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(WriteAheadLogSupport.class);
+	
+	private final SegmentLog segmentLog;
+	private final InternalSerializationService serializer;
+	/**
+	 * 
+	 * @param dir
+	 * @param segmentSize
+	 * @param maxGroupCommit
+	 * @param maxPending
+	 * @param serializer
+	 * @throws IOException
+	 */
+	WriteAheadLogSupport(File dir, int segmentSize, int maxGroupCommit, int maxPending, InternalSerializationService serializer) throws IOException {
+		this.segmentLog = new SegmentLog(dir, segmentSize, maxGroupCommit, maxPending);
+		this.serializer = serializer;
+	}
+	
+	private byte[] toRecord(Data item) throws IOException
+	{
+		BufferObjectDataOutput out = serializer.createObjectDataOutput();
+		try 
+		{
+			out.writeUTF(item.getDestination());
+			out.writeByte(item.getKeyRouting());
+			serializer.writeObject(out, item);
+			return out.toByteArray();
+		} 
+		finally {
+			out.close();
+		}
+	}
+	private Data fromRecord(byte[] record) throws IOException
+	{
+		BufferObjectDataInput in = serializer.createObjectDataInput(record);
+		try 
+		{
+			String destination = in.readUTF();
+			byte keyRouting = in.readByte();
+			Data item = serializer.readObject(in);
+			item.resolveDestination(destination);
+			item.setKeyRouting(keyRouting);
+			return item;
+		} 
+		finally {
+			in.close();
+		}
+	}
+	/**
+	 * Log the item, and wait till it is durable.
+	 * @param item
+	 * @return the log segment id, to be marked {@linkplain #applied(long) applied} once written to the grid
+	 */
+	long append(Data item)
+	{
+		try 
+		{
+			return segmentLog.append(toRecord(item)).get();
+		} 
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new HazelcastException("Interrupted while logging item", e);
+		}
+		catch (ExecutionException e) {
+			throw new HazelcastException("Unable to log item", e.getCause());
+		}
+		catch (IOException e) {
+			throw new HazelcastException("Unable to log item", e);
+		}
+	}
+	/**
+	 * Log the items, and wait till all of them are durable. The records are queued together, so that they
+	 * are group committed instead of waiting on an fsync each.
+	 * @param items
+	 * @return the log segment id per item, in iteration order
+	 */
+	long[] appendAll(Collection<? extends Data> items)
+	{
+		try 
+		{
+			List<CompletableFuture<Long>> durable = new ArrayList<>(items.size());
+			for(Data item : items)
+				durable.add(segmentLog.append(toRecord(item)));
+			long[] segments = new long[durable.size()];
+			for (int i = 0; i < segments.length; i++) {
+				segments[i] = durable.get(i).get();
+			}
+			return segments;
+		} 
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new HazelcastException("Interrupted while logging items", e);
+		}
+		catch (ExecutionException e) {
+			throw new HazelcastException("Unable to log items", e.getCause());
+		}
+		catch (IOException e) {
+			throw new HazelcastException("Unable to log items", e);
+		}
+	}
+	/**
+	 * Mark a logged item as written to the grid.
+	 * @param segmentId
+	 */
+	void applied(long segmentId)
+	{
+		segmentLog.applied(segmentId);
+	}
+	/**
+	 * Replay the items logged before a restart into the grid, in a background thread.
+	 * @param hazelWrap
+	 * @param keyGen
+	 */
+	void replayAsync(final HazelcastOperations hazelWrap, final ItemPartKeyGenerator keyGen)
+	{
+		Thread t = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				try 
+				{
+					long count = segmentLog.replay(new RecordHandler() {
+						
+						@Override
+						public void handle(byte[] record) throws Exception {
+							Data item = fromRecord(record);
+							hazelWrap.getMap(item.getDestination()).set(keyGen.getNextKey(item), item);
+						}
+					});
+					if(count > 0)
+						log.info("Replayed "+count+" logged items into the grid");
+				} 
+				catch (IOException e) {
+					log.error("Write ahead log replay failed. Remaining segments will be replayed on next start", e);
+				}
+			}
+		}, "ticker-wal-replay");
+		t.setDaemon(true);
+		t.start();
+	}
+	@Override
+	public void close() throws IOException {
+		segmentLog.close();
+	}
+}
@@ -0,0 +1,320 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.base;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.reactivetechnologies.ticker.datagrid.HazelcastOperations;
+import org.reactivetechnologies.ticker.messaging.Data;
+import org.reactivetechnologies.ticker.messaging.base.IngestFlowControl.OverflowPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hazelcast.core.IMap;
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.EventFactory;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.InsufficientCapacityException;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+/**
+ * A local write-behind buffer for publishing. Items are appended to a per destination {@linkplain Disruptor LMAX disruptor} ring,
+ * and a single flusher thread per destination drains the ring to the distributed map, with a bulk {@linkplain IMap#putAll(Map) putAll}
+ * per batch. Keys are reserved in bulk at flush time. The publishing (transport) threads thus never wait on a grid round trip,
+ * unless they choose to wait for the flush acknowledgement.
+ * <p>A failed bulk write is retried with a backoff, and then written item by item, so that a transient grid failure does not
+ * drop a batch. The number of destinations buffered is bounded, each one having its own ring and flusher thread. Items of 
+ * further destinations are not buffered, and are to be written directly.
+ * @author esutdal
+ *
+ */
+class WriteBehindBuffer {
+
+	private static final Logger log = LoggerFactory.getLogger(WriteBehindBuffer.class);
+	private static final int FLUSH_RETRIES = 3;
+	private static final long FLUSH_RETRY_BACKOFF_MILLIS = 100;
+	
+	private static class BufferedItem
+	{
+		private Data item;
+		private CompletableBatchFuture<Void> ack;
+		
+		private static final EventFactory<BufferedItem> FACTORY = new EventFactory<BufferedItem>() {
+
+			@Override
+			public BufferedItem newInstance() {
+				return new BufferedItem();
+			}
+		};
+	}
+	/**
+	 * Drains a ring buffer to the map of its destination.
+	 */
+	private class Flusher implements EventHandler<BufferedItem>
+	{
+		private final String destination;
+		private final List<Data> items;
+		private final List<CompletableBatchFuture<Void>> acks;
+		
+		Flusher(String destination) {
+			this.destination = destination;
+			this.items = new ArrayList<>(batchSize);
+			this.acks = new ArrayList<>(batchSize);
+		}
+
+		@Override
+		public void onEvent(BufferedItem event, long sequence, boolean endOfBatch) throws Exception {
+			items.add(event.item);
+			acks.add(event.ack);
+			event.item = null;
+			event.ack = null;
+			
+			if(endOfBatch || items.size() >= batchSize)
+				flush();
+		}
+		
+		private void flush()
+		{
+			try 
+			{
+				IMap<Object, Data> map = hazelWrap.getMap(destination);
+				long[] ids = keyGen.getNext(destination, items.size());
+				List<Object> keys = new ArrayList<>(ids.length);
+				for (int i = 0; i < ids.length; i++) {
+					keys.add(keyGen.toKey(ids[i], items.get(i)));
+				}
+				
+				if(putAll(map, keys))
+				{
+					for(CompletableBatchFuture<Void> ack : acks)
+						complete(ack, null);
+				}
+				else
+					setEach(map, keys);
+			} 
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				log.error("["+destination+"] Write-behind flush interrupted, "+items.size()+" items not written");
+				for(CompletableBatchFuture<Void> ack : acks)
+					complete(ack, e);
+			}
+			catch (Exception e) {
+				log.error("["+destination+"] Write-behind flush failed for "+items.size()+" items", e);
+				for(CompletableBatchFuture<Void> ack : acks)
+					complete(ack, e);
+			}
+			finally {
+				items.clear();
+				acks.clear();
+			}
+		}
+		/**
+		 * Bulk write, retried with a backoff. The keys are reserved once, so a retry overwrites a partial write.
+		 * @param map
+		 * @param keys
+		 * @return false if all the attempts failed
+		 * @throws InterruptedException
+		 */
+		private boolean putAll(IMap<Object, Data> map, List<Object> keys) throws InterruptedException
+		{
+			Map<Object, Data> entries = new HashMap<>(items.size() * 2);
+			for (int i = 0; i < keys.size(); i++) {
+				entries.put(keys.get(i), items.get(i));
+			}
+			long backoff = FLUSH_RETRY_BACKOFF_MILLIS;
+			for (int attempt = 0; ; attempt++) 
+			{
+				try {
+					map.putAll(entries);
+					return true;
+				} catch (RuntimeException e) {
+					if(attempt == FLUSH_RETRIES)
+					{
+						log.warn("["+destination+"] Write-behind flush failed for "+items.size()+" items after "+(attempt+1)+" attempts. Writing them one by one", e);
+						return false;
+					}
+					log.debug("["+destination+"] Write-behind flush failed, retrying in "+backoff+" ms", e);
+					Thread.sleep(backoff);
+					backoff *= 2;
+				}
+			}
+		}
+		/**
+		 * Fallback for a failed bulk write, so that only the items that cannot be written at all are dropped.
+		 * @param map
+		 * @param keys
+		 */
+		private void setEach(IMap<Object, Data> map, List<Object> keys)
+		{
+			for (int i = 0; i < keys.size(); i++) 
+			{
+				try {
+					map.set(keys.get(i), items.get(i));
+					complete(acks.get(i), null);
+				} catch (RuntimeException e) {
+					log.error("["+destination+"] Write-behind flush failed for item "+keys.get(i), e);
+					complete(acks.get(i), e);
+				}
+			}
+		}
+		private void complete(CompletableBatchFuture<Void> ack, Throwable failure)
+		{
+			if(ack == null)
+				return;
+			if(failure != null)
+				ack.completeExceptionally(failure);
+			else
+				ack.complete(null);
+		}
+	}
+	
+	private final HazelcastOperations hazelWrap;
+	private final ItemPartKeyGenerator keyGen;
+	private final int bufferSize;
+	private final int batchSize;
+	private final OverflowPolicy policy;
+	private final long blockTimeoutNanos;
+	private final int maxDestinations;
+	private final ConcurrentMap<String, Disruptor<BufferedItem>> buffers = new ConcurrentHashMap<>();
+	private volatile boolean warnedMaxDestinations;
+	/**
+	 * 
+	 * @param hazelWrap
+	 * @param keyGen
+	 * @param bufferSize ring buffer size per destination, power of 2
+	 * @param batchSize max items per bulk write
+	 * @param policy what to do when a ring buffer is full
+	 * @param blockTimeoutMillis max wait for ring buffer capacity, on {@linkplain OverflowPolicy#BLOCK}
+	 * @param maxDestinations max destinations buffered, each with a ring buffer and a flusher thread
+	 */
+	WriteBehindBuffer(HazelcastOperations hazelWrap, ItemPartKeyGenerator keyGen, int bufferSize, int batchSize, OverflowPolicy policy, long blockTimeoutMillis,
+			int maxDestinations) {
+		this.hazelWrap = hazelWrap;
+		this.keyGen = keyGen;
+		this.bufferSize = bufferSize;
+		this.batchSize = batchSize;
+		this.policy = policy;
+		this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMillis);
+		this.maxDestinations = maxDestinations;
+	}
+
+	/**
+	 * 
+	 * @param destination
+	 * @return the ring buffer of the destination, or null if max destinations are buffered already
+	 */
+	private RingBuffer<BufferedItem> ringBuffer(String destination)
+	{
+		Disruptor<BufferedItem> disruptor = buffers.get(destination);
+		if(disruptor == null)
+		{
+			synchronized (buffers) {
+				disruptor = buffers.get(destination);
+				if(disruptor == null)
+				{
+					if(buffers.size() >= maxDestinations)
+					{
+						if(!warnedMaxDestinations)
+						{
+							log.warn("Write-behind buffers reached max "+maxDestinations+" destinations. Items of destinations like '"+destination+"' are written directly");
+							warnedMaxDestinations = true;
+						}
+						return null;
+					}
+					log.info("["+destination+"] Initiating write-behind buffer with size "+bufferSize);
+					disruptor = new Disruptor<>(BufferedItem.FACTORY, bufferSize, new ThreadFactory() {
+						
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r, destination+"-write-behind");
+							t.setDaemon(true);
+							return t;
+						}
+					}, ProducerType.MULTI, new BlockingWaitStrategy());
+					disruptor.handleEventsWith(new Flusher[]{new Flusher(destination)});
+					disruptor.start();
+					buffers.put(destination, disruptor);
+				}
+			}
+		}
+		return disruptor.getRingBuffer();
+	}
+	/**
+	 * Claim the next slot of the ring buffer, as per the overflow policy.
+	 * @param ringBuffer
+	 * @param destination
+	 * @return the sequence, or -1 if the item is to be spilled
+	 */
+	private long next(RingBuffer<BufferedItem> ringBuffer, String destination)
+	{
+		long deadline = System.nanoTime() + blockTimeoutNanos;
+		while(true)
+		{
+			try {
+				return ringBuffer.tryNext();
+			} catch (InsufficientCapacityException e) {
+				if(policy == OverflowPolicy.SPILL)
+					return -1;
+				if(policy == OverflowPolicy.REJECT || System.nanoTime() >= deadline)
+					throw new IngestRejectedException("Write-behind buffer full for destination '"+destination+"'");
+				LockSupport.parkNanos(1000);
+			}
+		}
+	}
+	/**
+	 * Append an item to the buffer of its destination.
+	 * @param item
+	 * @param ack to be completed on flush, or null
+	 * @return false if the buffer is full and the policy is {@linkplain OverflowPolicy#SPILL}, or if the destination is not
+	 * buffered as max destinations are reached. The item is not buffered then.
+	 * @throws IngestRejectedException if the buffer is full as per the policy
+	 */
+	boolean append(Data item, CompletableBatchFuture<Void> ack)
+	{
+		RingBuffer<BufferedItem> ringBuffer = ringBuffer(item.getDestination());
+		if(ringBuffer == null)
+			return false;
+		long sequence = next(ringBuffer, item.getDestination());
+		if(sequence == -1)
+			return false;
+		
+		try {
+			BufferedItem slot = ringBuffer.get(sequence);
+			slot.item = item;
+			slot.ack = ack;
+		} finally {
+			ringBuffer.publish(sequence);
+		}
+		return true;
+	}
+	/**
+	 * Flush pending items and stop the flusher threads.
+	 */
+	void shutdown()
+	{
+		for(Disruptor<BufferedItem> disruptor : buffers.values())
+			disruptor.shutdown();
+	}
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.base.keygen;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import org.springframework.util.Assert;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IAtomicLong;
+import com.hazelcast.core.ICompletableFuture;
+/**
+ * Key generation by reserving large blocks of keys per queue from a cluster wide {@linkplain IAtomicLong}.
+ * Keys are then handed out locally from the block. The next block is reserved asynchronously when the current block
+ * falls below a low water mark, so that the publishing thread does not wait on a cluster round trip.
+ * <p>
+ * <b>Note:</b> The key space is not shared with {@linkplain IdGeneratorStrategy}. Strategies should not be switched
+ * while there are pending entries in the queues.
+ * @author esutdal
+ *
+ */
+public class BlockAllocatingStrategy implements KeyGenerationStrategy {
+
+	static final String ATOMIC_PREFIX = "ticker:keygen:";
+	private final HazelcastInstance hazelcast;
+	private final long blockSize;
+	private final long lowWaterMark;
+	private final ConcurrentMap<String, BlockAllocator> allocators = new ConcurrentHashMap<>();
+	/**
+	 * 
+	 * @param hazelcast
+	 * @param blockSize number of keys reserved in each round trip
+	 */
+	public BlockAllocatingStrategy(HazelcastInstance hazelcast, long blockSize) {
+		Assert.isTrue(blockSize > 1, "block size should be greater than 1");
+		this.hazelcast = hazelcast;
+		this.blockSize = blockSize;
+		this.lowWaterMark = blockSize / 4;
+	}
+
+	private class BlockAllocator
+	{
+		private final IAtomicLong counter;
+		private long cursor, limit;
+		private ICompletableFuture<Long> nextBlock;
+
+		BlockAllocator(IAtomicLong counter) {
+			this.counter = counter;
+		}
+		private void reserveNext()
+		{
+			if(nextBlock == null)
+				nextBlock = counter.addAndGetAsync(blockSize);
+		}
+		private void switchBlock()
+		{
+			reserveNext();
+			long end;
+			try {
+				end = nextBlock.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while reserving key block", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Unable to reserve key block", e.getCause());
+			}
+			finally {
+				nextBlock = null;
+			}
+			cursor = end - blockSize;
+			limit = end;
+		}
+		synchronized long next()
+		{
+			if(cursor == limit)
+				switchBlock();
+			long id = cursor++;
+			if(limit - cursor <= lowWaterMark)
+				reserveNext();
+			return id;
+		}
+		synchronized void next(long[] ids)
+		{
+			for (int i = 0; i < ids.length; i++) {
+				if(cursor == limit)
+					switchBlock();
+				ids[i] = cursor++;
+			}
+			if(limit - cursor <= lowWaterMark)
+				reserveNext();
+		}
+	}
+	private BlockAllocator allocator(String queue)
+	{
+		BlockAllocator alloc = allocators.get(queue);
+		if(alloc == null)
+		{
+			allocators.putIfAbsent(queue, new BlockAllocator(hazelcast.getAtomicLong(ATOMIC_PREFIX + queue)));
+			alloc = allocators.get(queue);
+		}
+		return alloc;
+	}
+	@Override
+	public long next(String queue) {
+		return allocator(queue).next();
+	}
+
+	@Override
+	public long[] next(String queue, int count) {
+		long[] ids = new long[count];
+		allocator(queue).next(ids);
+		return ids;
+	}
+
+}
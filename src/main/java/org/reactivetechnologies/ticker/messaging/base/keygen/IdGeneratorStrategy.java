@@ -0,0 +1,66 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.base.keygen;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IdGenerator;
+/**
+ * Key generation using Hazelcast {@linkplain IdGenerator}, one per queue. The generator proxies are cached,
+ * so that the distributed object lookup is not done on every key.
+ * @author esutdal
+ *
+ */
+public class IdGeneratorStrategy implements KeyGenerationStrategy {
+
+	private final HazelcastInstance hazelcast;
+	private final ConcurrentMap<String, IdGenerator> generators = new ConcurrentHashMap<>();
+	/**
+	 * 
+	 * @param hazelcast
+	 */
+	public IdGeneratorStrategy(HazelcastInstance hazelcast) {
+		this.hazelcast = hazelcast;
+	}
+
+	private IdGenerator generator(String queue)
+	{
+		IdGenerator idGen = generators.get(queue);
+		if(idGen == null)
+		{
+			generators.putIfAbsent(queue, hazelcast.getIdGenerator(queue));
+			idGen = generators.get(queue);
+		}
+		return idGen;
+	}
+	@Override
+	public long next(String queue) {
+		return generator(queue).newId();
+	}
+
+	@Override
+	public long[] next(String queue, int count) {
+		IdGenerator idGen = generator(queue);
+		long[] ids = new long[count];
+		for (int i = 0; i < count; i++) {
+			ids[i] = idGen.newId();
+		}
+		return ids;
+	}
+
+}
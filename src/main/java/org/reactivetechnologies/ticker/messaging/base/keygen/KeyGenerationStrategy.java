@@ -0,0 +1,40 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.base.keygen;
+
+import org.reactivetechnologies.ticker.messaging.base.ItemPartKeyGenerator;
+
+/**
+ * Strategy for generating queue entry keys. Keys need to be unique per queue across the cluster.
+ * @author esutdal
+ * @see ItemPartKeyGenerator
+ */
+public interface KeyGenerationStrategy {
+
+	/**
+	 * Next key for the given queue.
+	 * @param queue queue name
+	 * @return
+	 */
+	long next(String queue);
+	/**
+	 * Next 'count' keys for the given queue.
+	 * @param queue queue name
+	 * @param count
+	 * @return
+	 */
+	long[] next(String queue, int count);
+}
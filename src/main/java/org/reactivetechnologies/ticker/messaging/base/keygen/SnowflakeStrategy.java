@@ -0,0 +1,159 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.base.keygen;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.Member;
+import com.hazelcast.core.MembershipAdapter;
+import com.hazelcast.core.MembershipEvent;
+/**
+ * Snowflake style key generation. A key is composed of 41 bits of milliseconds since a custom epoch, 10 bits of
+ * member id and 12 bits of sequence within the millisecond. The member id is assigned once on startup, so there is
+ * no cluster coordination while generating keys. Keys are unique across queues and roughly time ordered.
+ * <p>
+ * Member ids are allocated from a cluster map of id to member uuid. An id is released when its member leaves the cluster,
+ * and allocation fails if all the ids are held by live members.
+ * <p>
+ * <b>Note:</b> Uniqueness depends on the member clock not moving backwards across restarts. A clock moving
+ * backwards while running is handled by holding the last timestamp.
+ * @author esutdal
+ *
+ */
+public class SnowflakeStrategy implements KeyGenerationStrategy {
+
+	/**
+	 * 2017-01-01T00:00:00Z
+	 */
+	static final long EPOCH = 1483228800000L;
+	static final int MEMBER_BITS = 10;
+	static final int SEQUENCE_BITS = 12;
+	static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+	static final long MAX_MEMBER = (1L << MEMBER_BITS) - 1;
+	static final String MEMBER_IDS = BlockAllocatingStrategy.ATOMIC_PREFIX + "members";
+	private static final Logger log = LoggerFactory.getLogger(SnowflakeStrategy.class);
+
+	private final long memberBits;
+	private long lastTimestamp = -1;
+	private long sequence = 0;
+	/**
+	 * Create a generator with a member id allocated from the cluster. This is the only cluster operation done.
+	 * @param hazelcast
+	 * @throws IllegalStateException if no member id is free
+	 */
+	public SnowflakeStrategy(HazelcastInstance hazelcast) {
+		this(allocateMemberId(hazelcast));
+	}
+	/**
+	 * Allocate the lowest free member id to the local member, or the id it holds already. Ids of members no longer in the 
+	 * cluster are released first.
+	 * @param hazelcast
+	 * @return
+	 */
+	static long allocateMemberId(HazelcastInstance hazelcast)
+	{
+		final IMap<Long, String> ids = hazelcast.getMap(MEMBER_IDS);
+		hazelcast.getCluster().addMembershipListener(new MembershipAdapter() {
+			
+			@Override
+			public void memberRemoved(MembershipEvent membershipEvent) {
+				release(ids, membershipEvent.getMember().getUuid());
+			}
+		});
+		String local = hazelcast.getCluster().getLocalMember().getUuid();
+		Set<String> live = new HashSet<>();
+		for(Member m : hazelcast.getCluster().getMembers())
+			live.add(m.getUuid());
+		for(Map.Entry<Long, String> id : ids.entrySet())
+		{
+			if(local.equals(id.getValue()))
+				return id.getKey(); //already allocated to this member
+			if(!live.contains(id.getValue()))
+				ids.remove(id.getKey(), id.getValue());
+		}
+		
+		Set<Long> taken = ids.keySet();
+		for (long id = 0; id <= MAX_MEMBER; id++) 
+		{
+			if(taken.contains(id))
+				continue;
+			String holder = ids.putIfAbsent(id, local);
+			if(holder == null || holder.equals(local))
+			{
+				log.info("Allocated snowflake member id "+id);
+				return id;
+			}
+		}
+		throw new IllegalStateException("No free snowflake member id. All "+(MAX_MEMBER + 1)+" ids are held by live members");
+	}
+	private static void release(IMap<Long, String> ids, String memberUuid)
+	{
+		for(Map.Entry<Long, String> id : ids.entrySet())
+		{
+			if(memberUuid.equals(id.getValue()))
+				ids.remove(id.getKey(), memberUuid);
+		}
+	}
+	/**
+	 * Create a generator with a given member id, in the range [0, 1023].
+	 * @param memberId
+	 */
+	public SnowflakeStrategy(long memberId) {
+		if(memberId < 0 || memberId > MAX_MEMBER)
+			throw new IllegalArgumentException("member id should be in range [0, " + MAX_MEMBER + "]");
+		this.memberBits = memberId << SEQUENCE_BITS;
+	}
+
+	private long tick()
+	{
+		long now = System.currentTimeMillis();
+		if(now > lastTimestamp)
+		{
+			lastTimestamp = now;
+			sequence = 0;
+		}
+		else if(++sequence > MAX_SEQUENCE)
+		{
+			//sequence exhausted for this millisecond
+			while((now = System.currentTimeMillis()) <= lastTimestamp)
+				Thread.yield();
+			lastTimestamp = now;
+			sequence = 0;
+		}
+		return ((lastTimestamp - EPOCH) << (MEMBER_BITS + SEQUENCE_BITS)) | memberBits | sequence;
+	}
+	@Override
+	public synchronized long next(String queue) {
+		return tick();
+	}
+
+	@Override
+	public synchronized long[] next(String queue, int count) {
+		long[] ids = new long[count];
+		for (int i = 0; i < count; i++) {
+			ids[i] = tick();
+		}
+		return ids;
+	}
+
+}
@@ -0,0 +1,346 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.base.wal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+/**
+ * An append-only log of records in memory mapped segment files, local to this node. Appends are written by a single
+ * writer thread with group commit: all appends pending at a time are written, and then forced to the device with a single fsync.
+ * An append completes when its record is durable.
+ * <p>
+ * Records are marked {@linkplain #applied(long) applied} once they are processed downstream, and a segment file is deleted when it is 
+ * rolled over and all its records are applied. Segments found on startup are the records not known to be applied before a
+ * crash (or shutdown), and are to be {@linkplain #replay(RecordHandler) replayed}. This gives an at-least-once guarantee.
+ * <p>
+ * Record layout: int length, int CRC32 of the record bytes, record bytes. A zero length marks the end of a segment.
+ * @author esutdal
+ *
+ */
+public class SegmentLog implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(SegmentLog.class);
+	private static final String SUFFIX = ".wal";
+	private static final int RECORD_HEADER = 8;
+	
+	/**
+	 * Handler of replayed records.
+	 */
+	public static interface RecordHandler
+	{
+		/**
+		 * 
+		 * @param record
+		 * @throws Exception
+		 */
+		void handle(byte[] record) throws Exception;
+	}
+	
+	private static final class Segment
+	{
+		private final long id;
+		private final File file;
+		private final FileChannel channel;
+		private final MappedByteBuffer buffer;
+		private final AtomicInteger pending = new AtomicInteger();
+		private final AtomicBoolean deleted = new AtomicBoolean();
+		private volatile boolean sealed;
+		
+		Segment(long id, File file, int size) throws IOException {
+			this.id = id;
+			this.file = file;
+			try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+				raf.setLength(size);
+			}
+			this.channel = new RandomAccessFile(file, "rw").getChannel();
+			this.buffer = channel.map(MapMode.READ_WRITE, 0, size);
+		}
+		
+		/**
+		 * Delete if sealed and all records applied.
+		 */
+		void deleteIfApplied()
+		{
+			if(sealed && pending.get() == 0 && deleted.compareAndSet(false, true))
+			{
+				try {
+					channel.close();
+				} catch (IOException e) {
+					log.debug("", e);
+				}
+				if(!file.delete())
+					log.warn("Unable to delete applied log segment "+file);
+			}
+		}
+	}
+	
+	private static final class Append
+	{
+		private final byte[] record;
+		private final CompletableFuture<Long> durable = new CompletableFuture<>();
+		private long segmentId;
+		Append(byte[] record) {
+			this.record = record;
+		}
+	}
+	
+	private final File dir;
+	private final int segmentSize;
+	private final int maxGroupCommit;
+	private final BlockingQueue<Append> appends;
+	private final ConcurrentMap<Long, Segment> segments = new ConcurrentHashMap<>();
+	private final List<File> recovered;
+	private final Thread writer;
+	private final CRC32 crc = new CRC32();
+	
+	private Segment active;
+	private volatile boolean running = true;
+	/**
+	 * 
+	 * @param dir directory of segment files
+	 * @param segmentSize size of a segment file, in bytes
+	 * @param maxGroupCommit max records written per fsync
+	 * @param maxPending max appends waiting to be written. Appends block when full
+	 * @throws IOException
+	 */
+	public SegmentLog(File dir, int segmentSize, int maxGroupCommit, int maxPending) throws IOException {
+		Assert.isTrue(segmentSize > RECORD_HEADER * 2, "segment size too small");
+		this.dir = dir;
+		this.segmentSize = segmentSize;
+		this.maxGroupCommit = maxGroupCommit;
+		this.appends = new ArrayBlockingQueue<>(maxPending);
+		if(!dir.isDirectory() && !dir.mkdirs())
+			throw new IOException("Unable to create log directory "+dir);
+		
+		File[] files = dir.listFiles(new FilenameFilter() {
+			
+			@Override
+			public boolean accept(File d, String name) {
+				return name.endsWith(SUFFIX);
+			}
+		});
+		Arrays.sort(files);
+		recovered = new ArrayList<>(Arrays.asList(files));
+		
+		long nextId = files.length == 0 ? 0 : segmentId(files[files.length - 1]) + 1;
+		active = newSegment(nextId);
+		
+		writer = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				runWriter();
+			}
+		}, "ticker-wal-writer");
+		writer.setDaemon(true);
+		writer.start();
+		log.info("Write ahead log at "+dir.getAbsolutePath()+", segments to replay: "+recovered.size());
+	}
+	
+	private static long segmentId(File file)
+	{
+		String name = file.getName();
+		return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+	}
+	private Segment newSegment(long id) throws IOException
+	{
+		Segment s = new Segment(id, new File(dir, String.format("%020d", id) + SUFFIX), segmentSize);
+		segments.put(id, s);
+		return s;
+	}
+	private void roll() throws IOException
+	{
+		Segment prev = active;
+		prev.buffer.force();
+		active = newSegment(prev.id + 1);
+		prev.sealed = true;
+		deleteIfApplied(prev);
+	}
+	private void deleteIfApplied(Segment s)
+	{
+		s.deleteIfApplied();
+		if(s.deleted.get())
+			segments.remove(s.id);
+	}
+	private void write(Append a) throws IOException
+	{
+		int size = RECORD_HEADER + a.record.length;
+		if(size + 4 > segmentSize)
+			throw new IllegalArgumentException("Record of "+a.record.length+" bytes exceeds log segment size");
+		if(active.buffer.remaining() < size + 4)
+			roll();
+		
+		crc.reset();
+		crc.update(a.record, 0, a.record.length);
+		active.buffer.putInt(a.record.length);
+		active.buffer.putInt((int) crc.getValue());
+		active.buffer.put(a.record);
+		active.pending.incrementAndGet();
+		a.segmentId = active.id;
+	}
+	private void runWriter()
+	{
+		List<Append> batch = new ArrayList<>(maxGroupCommit);
+		List<Append> written = new ArrayList<>(maxGroupCommit);
+		while(running || !appends.isEmpty())
+		{
+			try 
+			{
+				Append first = appends.poll(100, TimeUnit.MILLISECONDS);
+				if(first == null)
+					continue;
+				batch.add(first);
+				appends.drainTo(batch, maxGroupCommit - 1);
+				
+				for(Append a : batch)
+				{
+					try {
+						write(a);
+						written.add(a);
+					} catch (IllegalArgumentException e) {
+						a.durable.completeExceptionally(e);
+					}
+				}
+				active.buffer.force();
+				for(Append a : written)
+					a.durable.complete(a.segmentId);
+			} 
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+			catch (Exception e) {
+				log.error("Write ahead log append failed", e);
+				for(Append a : batch)
+					a.durable.completeExceptionally(e);
+			}
+			finally {
+				batch.clear();
+				written.clear();
+			}
+		}
+	}
+	/**
+	 * Append a record. Blocks if too many appends are pending.
+	 * @param record
+	 * @return a future that completes with the segment id, when the record is durable
+	 * @throws InterruptedException
+	 */
+	public CompletableFuture<Long> append(byte[] record) throws InterruptedException
+	{
+		Assert.isTrue(running, "Write ahead log is closed");
+		Append a = new Append(record);
+		appends.put(a);
+		return a.durable;
+	}
+	/**
+	 * Mark a record of the given segment as applied.
+	 * @param segmentId
+	 */
+	public void applied(long segmentId)
+	{
+		Segment s = segments.get(segmentId);
+		if(s != null)
+		{
+			s.pending.decrementAndGet();
+			deleteIfApplied(s);
+		}
+	}
+	/**
+	 * Replay the records of segments found on startup, and delete them after. A segment is read till the end marker,
+	 * or a torn (checksum failed) record.
+	 * @param handler
+	 * @return no of records replayed
+	 * @throws IOException
+	 */
+	public long replay(RecordHandler handler) throws IOException
+	{
+		long count = 0;
+		CRC32 check = new CRC32();
+		for(File file : recovered)
+		{
+			try(FileChannel channel = new RandomAccessFile(file, "r").getChannel())
+			{
+				MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+				while(buffer.remaining() >= RECORD_HEADER)
+				{
+					int length = buffer.getInt();
+					int checksum = buffer.getInt();
+					if(length <= 0 || length > buffer.remaining())
+						break;
+					byte[] record = new byte[length];
+					buffer.get(record);
+					check.reset();
+					check.update(record, 0, length);
+					if((int) check.getValue() != checksum)
+					{
+						log.warn("Torn record in log segment "+file+", skipping rest of segment");
+						break;
+					}
+					try {
+						handler.handle(record);
+						count++;
+					} catch (Exception e) {
+						throw new IOException("Replay failed in log segment "+file, e);
+					}
+				}
+			}
+			if(!file.delete())
+				log.warn("Unable to delete replayed log segment "+file);
+		}
+		recovered.clear();
+		return count;
+	}
+	/**
+	 * Write pending appends and stop. The active segment is deleted if all its records are applied.
+	 */
+	@Override
+	public void close() throws IOException {
+		running = false;
+		try {
+			writer.join(TimeUnit.SECONDS.toMillis(10));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		active.buffer.force();
+		active.sealed = true;
+		active.deleteIfApplied();
+		if(!active.deleted.get())
+			active.channel.close();
+	}
+}
@@ -28,17 +28,26 @@ SOFTWARE.
 */
 package org.reactivetechnologies.ticker.messaging.data;
 
+import java.io.DataOutput;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
 
+import org.reactivetechnologies.ticker.datagrid.TickerDataSerializableFactory;
 import org.reactivetechnologies.ticker.messaging.Data;
 
 import com.hazelcast.nio.ObjectDataInput;
 import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
 
 /**
- * Simplest form of {@linkplain Data} that encapsulates utf-8 strings.
+ * Simplest form of {@linkplain Data} that encapsulates utf-8 strings. The payload is held as a
+ * {@linkplain ByteBuffer} view, so that it can be set from a (direct or heap) buffer slice and read back
+ * without any copying. Copies are made only on {@linkplain #getPayload()}, and only if the view does not
+ * span a whole backing array.
  */
-public class ByteData extends Data {
+public class ByteData extends Data implements IdentifiedDataSerializable {
 
 	/**
 	 * 
@@ -85,22 +94,87 @@ public class ByteData extends Data {
 		setCorrelationID(corrID);
 	}
 
+	/**
+	 * Get the payload as a byte array. Returns the backing array as is, if the payload view spans the whole 
+	 * of it, else a copy is made.
+	 * @return
+	 */
 	public byte[] getPayload() {
+		if(payload == null)
+			return null;
+		if(payload.hasArray() && payload.arrayOffset() == 0 && payload.array().length == payload.remaining())
+			return payload.array();
+		
+		byte[] b = new byte[payload.remaining()];
+		payload.duplicate().get(b);
+		return b;
+	}
+	/**
+	 * Get a read-only view of the payload. No copying is done.
+	 * @return
+	 */
+	public ByteBuffer getPayloadBuffer() {
+		return payload == null ? null : payload.asReadOnlyBuffer();
+	}
+	/**
+	 * 
+	 * @return the payload length in bytes, or 0 if not set.
+	 */
+	public int getPayloadLength() {
+		return payload == null ? 0 : payload.remaining();
+	}
+	/**
+	 * The payload view, for subclasses to read from. Position is always 0, and should not be modified.
+	 * @return
+	 */
+	protected final ByteBuffer payload() {
 		return payload;
 	}
 
 	public void setPayload(byte[] payload) {
-		this.payload = payload;
+		this.payload = payload == null ? null : ByteBuffer.wrap(payload);
+	}
+	/**
+	 * Set the payload as a view over the remaining bytes of the given buffer. No copying is done, hence the
+	 * buffer content should not be modified or released while this data is in use.
+	 * @param payload
+	 */
+	public void setPayload(ByteBuffer payload) {
+		this.payload = payload == null ? null : payload.slice();
 	}
 
-	private byte[] payload;
+	private transient ByteBuffer payload;
+	private static final int WRITE_CHUNK = 8192;
+	private static final ThreadLocal<byte[]> writeChunk = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[WRITE_CHUNK];
+		}
+	};
 	
+	private static void write(ByteBuffer buff, DataOutput out) throws IOException
+	{
+		if(buff.hasArray())
+		{
+			out.write(buff.array(), buff.arrayOffset() + buff.position(), buff.remaining());
+			return;
+		}
+		//direct buffer
+		ByteBuffer src = buff.duplicate();
+		byte[] chunk = writeChunk.get();
+		while(src.hasRemaining())
+		{
+			int len = Math.min(chunk.length, src.remaining());
+			src.get(chunk, 0, len);
+			out.write(chunk, 0, len);
+		}
+	}
 	@Override
 	public void writeData(ObjectDataOutput out) throws IOException {
 		super.writeData(out);
 		if(payload != null){
-			out.writeInt(payload.length);
-			out.write(payload);
+			out.writeInt(payload.remaining());
+			write(payload, out);
 		}
 		else
 			out.writeInt(-1);
@@ -111,10 +185,42 @@ public class ByteData extends Data {
 		super.readData(in);
 		int i = in.readInt();
 		if(i != -1){
+			//the serialized buffer is not exposed by Hazelcast, so a single copy is needed here
 			byte[] b = new byte[i];
 			in.readFully(b);
 			setPayload(b);
 		}
 	}
+	
+	private void writeObject(ObjectOutputStream out) throws IOException
+	{
+		out.defaultWriteObject();
+		if(payload != null){
+			out.writeInt(payload.remaining());
+			write(payload, out);
+		}
+		else
+			out.writeInt(-1);
+	}
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		int i = in.readInt();
+		if(i != -1){
+			byte[] b = new byte[i];
+			in.readFully(b);
+			setPayload(b);
+		}
+	}
+
+	@Override
+	public int getFactoryId() {
+		return TickerDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return TickerDataSerializableFactory.typeId(this, ByteData.class, TickerDataSerializableFactory.BYTE_DATA);
+	}
 
 }
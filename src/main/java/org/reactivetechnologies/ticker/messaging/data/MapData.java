@@ -32,17 +32,17 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.function.Supplier;
 
+import org.reactivetechnologies.ticker.datagrid.TickerDataSerializableFactory;
 import org.reactivetechnologies.ticker.messaging.Data;
-import org.reactivetechnologies.ticker.utils.ApplicationContextWrapper;
 import org.springframework.util.Assert;
 
 import com.hazelcast.core.IMap;
 import com.hazelcast.nio.ObjectDataInput;
 import com.hazelcast.nio.ObjectDataOutput;
 import com.hazelcast.nio.serialization.DataSerializable;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
 
 /**
  * A {@linkplain Data} extension that encapsulates a {@linkplain Map} data structure. The underlying implementation is a 'Hazelcast friendly' sorted map data structure
@@ -52,9 +52,9 @@ import com.hazelcast.nio.serialization.DataSerializable;
  * @param <K>
  * @param <V>
  */
-public class MapData<K extends DataComparable<?>, V extends DataSerializable> extends Data implements Map<K, V> {
+public class MapData<K extends DataComparable<?>, V extends DataSerializable> extends Data implements Map<K, V>, IdentifiedDataSerializable {
 
-	private SortedMap<K, V> sortedMap = new TreeMap<>();
+	private SortedArrayMap<K, V> sortedMap = new SortedArrayMap<>();
 	/**
 	 * 
 	 */
@@ -101,16 +101,22 @@ public class MapData<K extends DataComparable<?>, V extends DataSerializable> ex
 		setCorrelationID(corrID);
 	}
 
+	/**
+	 * Marker for entry types written as type references. An older version wrote the entry count first, which is >= 0.
+	 */
+	private static final int TYPE_REFS = -2;
+	
 	@Override
 	public void writeData(ObjectDataOutput out) throws IOException {
 		super.writeData(out);
+		out.writeInt(TYPE_REFS);
 		out.writeInt(sortedMap.size());
 		boolean classRecorded = false;
 		for(Entry<K, V> entry: sortedMap.entrySet())
 		{
 			if (!classRecorded) {
-				out.writeUTF(entry.getKey().getClass().getName());
-				out.writeUTF(entry.getValue().getClass().getName());
+				TickerDataSerializableFactory.writeTypeRef(out, entry.getKey());
+				TickerDataSerializableFactory.writeTypeRef(out, entry.getValue());
 				classRecorded = true;
 			}
 			entry.getKey().writeData(out);
@@ -123,24 +129,39 @@ public class MapData<K extends DataComparable<?>, V extends DataSerializable> ex
 	public void readData(ObjectDataInput in) throws IOException {
 		super.readData(in);
 		int n = in.readInt();
+		boolean typeRefs = n == TYPE_REFS;
+		if(typeRefs)
+			n = in.readInt();
 		if (n > 0) {
-			String keyClass = in.readUTF();
-			String valClass = in.readUTF();
-			Assert.notNull(ApplicationContextWrapper.newInstance(keyClass));
-			Assert.notNull(ApplicationContextWrapper.newInstance(valClass));
+			//an older version wrote the class names
+			Supplier<DataSerializable> keyType = typeRefs ? TickerDataSerializableFactory.readTypeRef(in) : TickerDataSerializableFactory.readTypeRef(in.readUTF());
+			Supplier<DataSerializable> valType = typeRefs ? TickerDataSerializableFactory.readTypeRef(in) : TickerDataSerializableFactory.readTypeRef(in.readUTF());
+			sortedMap.ensureCapacity(n);
 			K k;
 			V v;
 			for (int i = 0; i < n; i++) {
-				k = (K) ApplicationContextWrapper.newInstance(keyClass);
-				v = (V) ApplicationContextWrapper.newInstance(valClass);
+				k = (K) keyType.get();
+				v = (V) valType.get();
 				
 				k.readData(in);
 				v.readData(in);
-				
+				//written in order, so this is an append
 				sortedMap.put(k, v);
 			} 
 		}
 	}
+	/**
+	 * Bulk add entries, which are expected to be in ascending key order. Entries in order are appended without any search.
+	 * @param keys
+	 * @param values
+	 */
+	public void putAllSorted(K[] keys, V[] values) {
+		Assert.isTrue(keys.length == values.length, "keys and values length mismatch");
+		sortedMap.ensureCapacity(sortedMap.size() + keys.length);
+		for (int i = 0; i < keys.length; i++) {
+			sortedMap.put(keys[i], values[i]);
+		}
+	}
 
 	@Override
 	public void clear() {
@@ -202,4 +223,14 @@ public class MapData<K extends DataComparable<?>, V extends DataSerializable> ex
 		return sortedMap.values();
 	}
 
+	@Override
+	public int getFactoryId() {
+		return TickerDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return TickerDataSerializableFactory.typeId(this, MapData.class, TickerDataSerializableFactory.MAP_DATA);
+	}
+
 }
@@ -15,24 +15,41 @@
  */
 package org.reactivetechnologies.ticker.messaging.data;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.reactivetechnologies.ticker.datagrid.TickerDataSerializableFactory;
+import org.reactivetechnologies.ticker.messaging.data.codec.ObjectCodec;
+import org.reactivetechnologies.ticker.messaging.data.codec.ObjectCodecs;
+import org.springframework.util.ClassUtils;
+
+import com.hazelcast.nio.BufferObjectDataInput;
+import com.hazelcast.nio.BufferObjectDataOutput;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
 /**
- * Extends {@linkplain TextData} to store an object in its JSON form. 
+ * Extends {@linkplain TextData} to store an object in an encoded form. The encoding is done by an {@linkplain ObjectCodec}, 
+ * JSON by default (see {@linkplain ObjectCodecs#getDefault()}). The object is encoded directly to the serialization
+ * output, and decoded lazily on {@linkplain #getObject()}.
  * @author esutdal
  *
  * @param <T>
  */
 public class ObjectData<T> extends TextData {
 
+	@SuppressWarnings("unchecked")
 	public T getObject() {
-		if(object == null){
+		if(object == null && encoded != null){
 			try {
-				setObject(om.reader().readValue(getPayload()));
-			} catch (IOException e) {
-				throw new IllegalArgumentException("Exception while deserializing from JSON", e);
+				//type is not known for entries written by an older version, as plain JSON
+				Class<?> type = objectType != null ? ClassUtils.forName(objectType, ClassUtils.getDefaultClassLoader()) : Object.class;
+				setObject((T) ObjectCodecs.get(codecId).decode(new ByteArrayInputStream(encoded), type));
+			} catch (IOException | ClassNotFoundException e) {
+				throw new IllegalArgumentException("Exception while decoding object", e);
 			}
 		}
 		
@@ -41,10 +58,14 @@ public class ObjectData<T> extends TextData {
 
 	public void setObject(T object) {
 		this.object = object;
+		this.encoded = null;
 	}
 
 	private transient T object;
-	private final ObjectMapper om = new ObjectMapper();
+	private transient ObjectCodec codec;
+	private byte codecId;
+	private String objectType;
+	private byte[] encoded;
 	/**
 	 * 
 	 */
@@ -62,13 +83,15 @@ public class ObjectData<T> extends TextData {
 	public ObjectData(T object) {
 		this();
 		this.object = object;
-		try 
-		{
-			String json = om.writer().writeValueAsString(object);
-			setPayload(json);
-		} catch (JsonProcessingException e) {
-			throw new IllegalArgumentException("Exception while serializing to JSON", e);
-		}
+	}
+	/**
+	 * 
+	 * @param object
+	 * @param codec the codec to encode with
+	 */
+	public ObjectData(T object, ObjectCodec codec) {
+		this(object);
+		setCodec(codec);
 	}
 	/**
 	 * 
@@ -89,5 +112,154 @@ public class ObjectData<T> extends TextData {
 		this(object, destination);
 		setCorrelationID(corrID);
 	}
+	/**
+	 * The codec to encode the object with. If not set, the default codec is used.
+	 * @return
+	 */
+	public ObjectCodec getCodec() {
+		return codec != null ? codec : ObjectCodecs.getDefault();
+	}
+
+	public void setCodec(ObjectCodec codec) {
+		this.codec = codec;
+		if(object != null)
+			this.encoded = null;
+	}
+	/**
+	 * The encoded form as a UTF-8 string. This is meaningful for text codecs (like JSON) only.
+	 */
+	@Override
+	public String getPayload() {
+		if(encoded == null && object != null)
+		{
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			try {
+				getCodec().encode(object, out);
+			} catch (IOException e) {
+				throw new IllegalArgumentException("Exception while encoding object", e);
+			}
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		}
+		return encoded != null ? new String(encoded, StandardCharsets.UTF_8) : null;
+	}
+	/**
+	 * The object is transient, so it is carried in the encoded form on Java serialization.
+	 * @param out
+	 * @throws IOException
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException
+	{
+		if(encoded == null && object != null)
+		{
+			ObjectCodec c = getCodec();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			c.encode(object, bytes);
+			codecId = c.id();
+			objectType = object.getClass().getName();
+			encoded = bytes.toByteArray();
+		}
+		out.defaultWriteObject();
+	}
+	/**
+	 * Adapts an {@linkplain ObjectDataOutput} as a stream, without buffering. Closing the stream has no effect
+	 * on the output.
+	 */
+	private static OutputStream asStream(final ObjectDataOutput out)
+	{
+		return new OutputStream() {
+			
+			@Override
+			public void write(int b) throws IOException {
+				out.write(b);
+			}
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+			}
+		};
+	}
+	private void writeEncoded(ObjectDataOutput out) throws IOException
+	{
+		if(encoded != null)
+		{
+			//not decoded since read
+			out.writeByte(codecId);
+			out.writeUTF(objectType);
+			out.writeInt(encoded.length);
+			out.write(encoded);
+			return;
+		}
+		ObjectCodec c = getCodec();
+		out.writeByte(c.id());
+		out.writeUTF(object.getClass().getName());
+		if(out instanceof BufferObjectDataOutput)
+		{
+			//encode in place, and fill in the length after
+			BufferObjectDataOutput buff = (BufferObjectDataOutput) out;
+			int lenPos = buff.position();
+			buff.writeInt(0);
+			c.encode(object, asStream(buff));
+			buff.writeInt(lenPos, buff.position() - lenPos - 4);
+		}
+		else
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			c.encode(object, bytes);
+			out.writeInt(bytes.size());
+			out.write(bytes.toByteArray());
+		}
+	}
+	/**
+	 * Marker for a codec encoded payload. A payload written by an older version starts with the length of its JSON string, which is >= -1.
+	 * Different from the marker of {@linkplain TextData}.
+	 */
+	private static final int ENCODED_OBJECT = -3;
+	
+	@Override
+	protected void writePayload(ObjectDataOutput out) throws IOException {
+		out.writeInt(ENCODED_OBJECT);
+		if(object == null && encoded == null)
+		{
+			out.writeByte(-1);
+			return;
+		}
+		writeEncoded(out);
+	}
+	private static boolean isEncodedObject(ObjectDataInput in) throws IOException
+	{
+		if(in instanceof BufferObjectDataInput)
+		{
+			BufferObjectDataInput buff = (BufferObjectDataInput) in;
+			return buff.readInt(buff.position()) == ENCODED_OBJECT;
+		}
+		return true;
+	}
+	@Override
+	protected void readPayload(ObjectDataInput in) throws IOException {
+		if(!isEncodedObject(in))
+		{
+			//written by an older version, as a JSON string
+			String json = in.readUTF();
+			if(json != null)
+			{
+				codecId = ObjectCodecs.JSON;
+				objectType = null;
+				encoded = json.getBytes(StandardCharsets.UTF_8);
+			}
+			return;
+		}
+		in.readInt();
+		codecId = in.readByte();
+		if(codecId == -1)
+			return;
+		objectType = in.readUTF();
+		encoded = new byte[in.readInt()];
+		in.readFully(encoded);
+	}
+
+	@Override
+	public int getId() {
+		return TickerDataSerializableFactory.typeId(this, ObjectData.class, TickerDataSerializableFactory.OBJECT_DATA);
+	}
 
 }
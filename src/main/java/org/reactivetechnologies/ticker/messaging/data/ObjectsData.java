@@ -15,6 +15,7 @@
  */
 package org.reactivetechnologies.ticker.messaging.data;
 
+import org.reactivetechnologies.ticker.datagrid.TickerDataSerializableFactory;
 import org.reactivetechnologies.ticker.messaging.Data;
 
 /**
@@ -30,7 +31,19 @@ public class ObjectsData<T> extends ObjectData<T[]> {
 	 */
 	private static final long serialVersionUID = -3240113490136953362L;
 
+	/**
+	 * 
+	 */
+	public ObjectsData() {
+		super();
+	}
 	public ObjectsData(T[] object, String destination) {
 		super(object, destination);
 	}
+
+	@Override
+	public int getId() {
+		return TickerDataSerializableFactory.typeId(this, ObjectsData.class, TickerDataSerializableFactory.OBJECTS_DATA);
+	}
+
 }
@@ -0,0 +1,239 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.data;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+/**
+ * A compact sorted map backed by parallel key and value arrays. Lookups are binary searches, and entries added in 
+ * ascending key order are appended in constant time. The {@linkplain #entrySet()}, {@linkplain #keySet()} and 
+ * {@linkplain #values()} are views over the arrays, no copies are made. Not thread safe.
+ * @author esutdal
+ *
+ * @param <K>
+ * @param <V>
+ */
+class SortedArrayMap<K extends Comparable<?>, V> extends AbstractMap<K, V> implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Object[] EMPTY = {};
+	private Object[] keys = EMPTY;
+	private Object[] values = EMPTY;
+	private int size;
+	private transient int modCount;
+	
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static int compare(Object k1, Object k2)
+	{
+		return ((Comparable) k1).compareTo(k2);
+	}
+	private int indexOf(Object key)
+	{
+		int lo = 0, hi = size - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int c = compare(keys[mid], key);
+			if (c < 0)
+				lo = mid + 1;
+			else if (c > 0)
+				hi = mid - 1;
+			else
+				return mid;
+		}
+		return -(lo + 1);
+	}
+	/**
+	 * Ensure capacity for the given number of entries, to avoid resizing on a bulk build.
+	 * @param capacity
+	 */
+	void ensureCapacity(int capacity)
+	{
+		if(capacity > keys.length)
+		{
+			int newLen = Math.max(capacity, keys.length + (keys.length >> 1));
+			keys = Arrays.copyOf(keys, newLen);
+			values = Arrays.copyOf(values, newLen);
+		}
+	}
+	@SuppressWarnings("unchecked")
+	@Override
+	public V get(Object key) {
+		int i = indexOf(key);
+		return i >= 0 ? (V) values[i] : null;
+	}
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOf(key) >= 0;
+	}
+	@SuppressWarnings("unchecked")
+	@Override
+	public V put(K key, V value) {
+		if(size == 0 || compare(keys[size - 1], key) < 0)
+		{
+			//ascending order
+			ensureCapacity(size + 1);
+			keys[size] = key;
+			values[size++] = value;
+			modCount++;
+			return null;
+		}
+		int i = indexOf(key);
+		if(i >= 0)
+		{
+			V old = (V) values[i];
+			values[i] = value;
+			return old;
+		}
+		i = -(i + 1);
+		ensureCapacity(size + 1);
+		System.arraycopy(keys, i, keys, i + 1, size - i);
+		System.arraycopy(values, i, values, i + 1, size - i);
+		keys[i] = key;
+		values[i] = value;
+		size++;
+		modCount++;
+		return null;
+	}
+	@SuppressWarnings("unchecked")
+	@Override
+	public V remove(Object key) {
+		int i = indexOf(key);
+		if(i < 0)
+			return null;
+		V old = (V) values[i];
+		removeAt(i);
+		return old;
+	}
+	private void removeAt(int i)
+	{
+		int n = size - i - 1;
+		if (n > 0) {
+			System.arraycopy(keys, i + 1, keys, i, n);
+			System.arraycopy(values, i + 1, values, i, n);
+		}
+		size--;
+		keys[size] = null;
+		values[size] = null;
+		modCount++;
+	}
+	@Override
+	public void clear() {
+		Arrays.fill(keys, 0, size, null);
+		Arrays.fill(values, 0, size, null);
+		size = 0;
+		modCount++;
+	}
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	private class ArrayEntry implements Entry<K, V>
+	{
+		private final int index;
+		ArrayEntry(int index) {
+			this.index = index;
+		}
+		@SuppressWarnings("unchecked")
+		@Override
+		public K getKey() {
+			return (K) keys[index];
+		}
+		@SuppressWarnings("unchecked")
+		@Override
+		public V getValue() {
+			return (V) values[index];
+		}
+		@Override
+		public V setValue(V value) {
+			V old = getValue();
+			values[index] = value;
+			return old;
+		}
+		@Override
+		public int hashCode() {
+			return (getKey() == null ? 0 : getKey().hashCode()) ^ (getValue() == null ? 0 : getValue().hashCode());
+		}
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof Entry))
+				return false;
+			Entry<?, ?> e = (Entry<?, ?>) o;
+			return eq(getKey(), e.getKey()) && eq(getValue(), e.getValue());
+		}
+		private boolean eq(Object o1, Object o2) {
+			return o1 == null ? o2 == null : o1.equals(o2);
+		}
+	}
+	private transient Set<Entry<K, V>> entrySet;
+	private Set<Entry<K, V>> newEntrySet() {
+		return new AbstractSet<Entry<K,V>>() {
+
+		@Override
+		public Iterator<Entry<K, V>> iterator() {
+			return new Iterator<Entry<K,V>>() {
+				private int next = 0;
+				private int last = -1;
+				private int expectedModCount = modCount;
+				
+				@Override
+				public boolean hasNext() {
+					return next < size;
+				}
+
+				@Override
+				public Entry<K, V> next() {
+					if(modCount != expectedModCount)
+						throw new ConcurrentModificationException();
+					if(next >= size)
+						throw new NoSuchElementException();
+					last = next++;
+					return new ArrayEntry(last);
+				}
+				@Override
+				public void remove() {
+					if(last < 0)
+						throw new IllegalStateException();
+					if(modCount != expectedModCount)
+						throw new ConcurrentModificationException();
+					removeAt(last);
+					next = last;
+					last = -1;
+					expectedModCount = modCount;
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+		};
+	}
+	@Override
+	public Set<Entry<K, V>> entrySet() {
+		if(entrySet == null)
+			entrySet = newEntrySet();
+		return entrySet;
+	}
+}
@@ -29,20 +29,25 @@ SOFTWARE.
 package org.reactivetechnologies.ticker.messaging.data;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
+import org.reactivetechnologies.ticker.datagrid.TickerDataSerializableFactory;
 import org.reactivetechnologies.ticker.messaging.Data;
 
+import com.hazelcast.nio.BufferObjectDataInput;
 import com.hazelcast.nio.ObjectDataInput;
 import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
 
 /**
- * Simplest form of {@linkplain Data} that encapsulates utf-8 strings.
+ * Simplest form of {@linkplain Data} that encapsulates utf-8 strings. The payload is serialized as length prefixed
+ * UTF-8 bytes, without any size limit, and is decoded to a string only when asked for.
  */
-public class TextData extends Data {
+public class TextData extends Data implements IdentifiedDataSerializable {
 
 	@Override
 	public String toString() {
-		return "TextData [payload=" + payload + "]";
+		return "TextData [payload=" + getPayload() + "]";
 	}
 
 	/**
@@ -91,26 +96,113 @@ public class TextData extends Data {
 		setCorrelationID(corrID);
 	}
 
+	/**
+	 * Get the payload string. If the payload is held as UTF-8 bytes, it is decoded on first access.
+	 * @return
+	 */
 	public String getPayload() {
+		if(payload == null && payloadBytes != null)
+			payload = new String(payloadBytes, StandardCharsets.UTF_8);
 		return payload;
 	}
 
 	public void setPayload(String payload) {
 		this.payload = payload;
+		this.payloadBytes = null;
+	}
+	/**
+	 * Get the payload as UTF-8 bytes. If the payload is held as a string, it is encoded on first access.
+	 * @return
+	 */
+	public byte[] getPayloadBytes() {
+		if(payloadBytes == null && payload != null)
+			payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+		return payloadBytes;
+	}
+	/**
+	 * Set the payload as UTF-8 encoded bytes. The string is not decoded until {@link #getPayload()} is invoked.
+	 * @param utf8
+	 */
+	public void setPayloadBytes(byte[] utf8) {
+		this.payloadBytes = utf8;
+		this.payload = null;
 	}
 
 	private String payload;
+	private byte[] payloadBytes;
+	/**
+	 * Marker for a length prefixed UTF-8 payload. A payload written with writeUTF starts with its length, which is >= -1.
+	 */
+	private static final int UTF8_BYTES = -2;
 	
+	/**
+	 * Write the payload, after the header. Subclasses can override to write the payload in a different form.
+	 * @param out
+	 * @throws IOException
+	 */
+	protected void writePayload(ObjectDataOutput out) throws IOException {
+		out.writeInt(UTF8_BYTES);
+		byte[] b = getPayloadBytes();
+		if(b != null)
+		{
+			out.writeInt(b.length);
+			out.write(b);
+		}
+		else
+			out.writeInt(-1);
+	}
+	private static boolean isUtf8Bytes(ObjectDataInput in) throws IOException
+	{
+		if(in instanceof BufferObjectDataInput)
+		{
+			BufferObjectDataInput buff = (BufferObjectDataInput) in;
+			return buff.readInt(buff.position()) == UTF8_BYTES;
+		}
+		return true;
+	}
+	/**
+	 * Read the payload, after the header.
+	 * @param in
+	 * @throws IOException
+	 */
+	protected void readPayload(ObjectDataInput in) throws IOException {
+		if(!isUtf8Bytes(in))
+		{
+			//written by an older version
+			setPayload(in.readUTF());
+			return;
+		}
+		in.readInt();
+		int len = in.readInt();
+		if(len != -1)
+		{
+			byte[] b = new byte[len];
+			in.readFully(b);
+			setPayloadBytes(b);
+		}
+		else
+			setPayload(null);
+	}
 	@Override
 	public void writeData(ObjectDataOutput out) throws IOException {
 		super.writeData(out);
-		out.writeUTF(payload);
+		writePayload(out);
 	}
 
 	@Override
 	public void readData(ObjectDataInput in) throws IOException {
 		super.readData(in);
-		setPayload(in.readUTF());
+		readPayload(in);
+	}
+
+	@Override
+	public int getFactoryId() {
+		return TickerDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return TickerDataSerializableFactory.typeId(this, TextData.class, TickerDataSerializableFactory.TEXT_DATA);
 	}
 
 }
@@ -0,0 +1,66 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.data.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+import org.springframework.util.ClassUtils;
+/**
+ * Binary codec using Java serialization, for {@linkplain Serializable} objects. Does not need any 
+ * additional library.
+ * @author esutdal
+ *
+ */
+public class JavaSerializationCodec implements ObjectCodec {
+
+	@Override
+	public byte id() {
+		return ObjectCodecs.JAVA;
+	}
+
+	@Override
+	public void encode(Object object, OutputStream out) throws IOException {
+		ObjectOutputStream oos = new ObjectOutputStream(out);
+		oos.writeObject(object);
+		oos.flush();
+	}
+
+	@Override
+	public <T> T decode(InputStream in, Class<T> type) throws IOException {
+		ObjectInputStream ois = new ObjectInputStream(in) {
+			@Override
+			protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+				//consumer classes may be deployed in a separate class loader
+				return ClassUtils.forName(desc.getName(), ClassUtils.getDefaultClassLoader());
+			}
+		};
+		try {
+			Object o = ois.readObject();
+			if(o != null && !type.isInstance(o))
+				throw new IOException("Decoded "+o.getClass()+" is not a "+type);
+			return type.cast(o);
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+	}
+
+}
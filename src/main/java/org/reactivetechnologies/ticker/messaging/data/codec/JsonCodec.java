@@ -0,0 +1,66 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.data.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+/**
+ * Jackson based codec. A single {@linkplain ObjectMapper} is shared, which is thread safe once configured. By default
+ * the mapper writes JSON. A binary format can be plugged in by passing a mapper with a different factory, 
+ * like <pre>new JsonCodec(ObjectCodecs.USER_CODEC_MIN_ID, new ObjectMapper(new SmileFactory()))</pre> if the 
+ * corresponding Jackson dataformat module is on the classpath.
+ * @author esutdal
+ *
+ */
+public class JsonCodec implements ObjectCodec {
+
+	private final byte id;
+	private final ObjectMapper mapper;
+	/**
+	 * Default JSON codec.
+	 */
+	public JsonCodec() {
+		this(ObjectCodecs.JSON, new ObjectMapper());
+	}
+	/**
+	 * 
+	 * @param id
+	 * @param mapper
+	 */
+	public JsonCodec(byte id, ObjectMapper mapper) {
+		this.id = id;
+		this.mapper = mapper;
+	}
+
+	@Override
+	public byte id() {
+		return id;
+	}
+
+	@Override
+	public void encode(Object object, OutputStream out) throws IOException {
+		mapper.writeValue(out, object);
+	}
+
+	@Override
+	public <T> T decode(InputStream in, Class<T> type) throws IOException {
+		return mapper.readValue(in, type);
+	}
+
+}
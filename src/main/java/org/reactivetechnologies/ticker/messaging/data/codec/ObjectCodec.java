@@ -0,0 +1,52 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.data.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.reactivetechnologies.ticker.messaging.data.ObjectData;
+/**
+ * Encoding of the object carried by an {@linkplain ObjectData}. Implementations should be thread safe, and 
+ * are registered by a unique id with {@linkplain ObjectCodecs}. The id is written along with the encoded bytes, so
+ * that any member can decode.
+ * @author esutdal
+ *
+ */
+public interface ObjectCodec {
+
+	/**
+	 * Unique id of this codec. Ids below {@value ObjectCodecs#USER_CODEC_MIN_ID} are reserved.
+	 * @return
+	 */
+	byte id();
+	/**
+	 * Encode the object to the stream.
+	 * @param object
+	 * @param out
+	 * @throws IOException
+	 */
+	void encode(Object object, OutputStream out) throws IOException;
+	/**
+	 * Decode an object of the given type from the stream.
+	 * @param in
+	 * @param type
+	 * @return
+	 * @throws IOException
+	 */
+	<T> T decode(InputStream in, Class<T> type) throws IOException;
+}
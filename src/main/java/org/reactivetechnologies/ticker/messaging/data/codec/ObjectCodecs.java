@@ -0,0 +1,82 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.data.codec;
+
+import org.reactivetechnologies.ticker.messaging.data.ObjectData;
+import org.springframework.util.Assert;
+/**
+ * Registry of {@linkplain ObjectCodec}s by id, and the default codec used by {@linkplain ObjectData}. 
+ * Codecs have to be registered identically on all members.
+ * @author esutdal
+ *
+ */
+public final class ObjectCodecs {
+
+	private ObjectCodecs() {
+	}
+	public static final byte JSON = 1;
+	public static final byte JAVA = 2;
+	/**
+	 * Min id for user registered codecs.
+	 */
+	public static final byte USER_CODEC_MIN_ID = 16;
+	
+	private static final ObjectCodec[] codecs = new ObjectCodec[128];
+	private static volatile ObjectCodec defaultCodec;
+	
+	static
+	{
+		codecs[JSON] = new JsonCodec();
+		codecs[JAVA] = new JavaSerializationCodec();
+		defaultCodec = codecs[JSON];
+	}
+	/**
+	 * Register a user codec.
+	 * @param codec
+	 */
+	public static synchronized void register(ObjectCodec codec)
+	{
+		Assert.isTrue(codec.id() >= USER_CODEC_MIN_ID, "Codec id should be >= "+USER_CODEC_MIN_ID);
+		codecs[codec.id()] = codec;
+	}
+	/**
+	 * Get a registered codec.
+	 * @param id
+	 * @return
+	 * @throws IllegalArgumentException if not registered
+	 */
+	public static ObjectCodec get(byte id)
+	{
+		ObjectCodec codec = id >= 0 ? codecs[id] : null;
+		if(codec == null)
+			throw new IllegalArgumentException("No codec registered with id "+id);
+		return codec;
+	}
+	/**
+	 * The codec used by {@linkplain ObjectData} when none is specified. JSON by default.
+	 * @return
+	 */
+	public static ObjectCodec getDefault() {
+		return defaultCodec;
+	}
+	/**
+	 * Set the default codec. It should be registered, unless it is a built-in one.
+	 * @param codec
+	 */
+	public static void setDefault(ObjectCodec codec) {
+		defaultCodec = codec;
+	}
+}
@@ -17,12 +17,14 @@ package org.reactivetechnologies.ticker.messaging.data.ext;
 
 import java.io.IOException;
 
+import org.reactivetechnologies.ticker.datagrid.TickerDataSerializableFactory;
 import org.reactivetechnologies.ticker.messaging.data.DataComparable;
 
 import com.hazelcast.nio.ObjectDataInput;
 import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
 
-public class LongKey implements DataComparable<Long> {
+public class LongKey implements DataComparable<Long>, IdentifiedDataSerializable {
 
 	@Override
 	public int hashCode() {
@@ -80,4 +82,14 @@ public class LongKey implements DataComparable<Long> {
 		return Long.compare(value, o.value());
 	}
 
+	@Override
+	public int getFactoryId() {
+		return TickerDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return TickerDataSerializableFactory.typeId(this, LongKey.class, TickerDataSerializableFactory.LONG_KEY);
+	}
+
 }
@@ -16,107 +16,288 @@
 package org.reactivetechnologies.ticker.messaging.data.ext;
 
 import java.io.IOException;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Map;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.function.Supplier;
 
+import org.reactivetechnologies.ticker.datagrid.TickerDataSerializableFactory;
 import org.reactivetechnologies.ticker.messaging.data.MapData;
+import org.springframework.util.Assert;
 
+import com.hazelcast.nio.BufferObjectDataInput;
 import com.hazelcast.nio.ObjectDataInput;
 import com.hazelcast.nio.ObjectDataOutput;
 import com.hazelcast.nio.serialization.DataSerializable;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
 /**
- * An extension of {@linkplain MapData} with Long keys.
+ * A sorted map with long keys, similar to {@linkplain MapData}. Keys are held in a primitive long array, parallel to the
+ * value array, with binary search lookups. Entries added in ascending key order are appended in constant time. The collection
+ * views are not copies.
  * @author esutdal
  *
  * @param <V>
  */
-public class LongMapData<V extends DataSerializable> implements DataSerializable, Map<java.lang.Long, V> {
+public class LongMapData<V extends DataSerializable> extends AbstractMap<Long, V> implements IdentifiedDataSerializable {
 
-	private MapData<LongKey, V> map = new MapData<>();
+	private static final long[] NO_KEYS = {};
+	private static final Object[] NO_VALUES = {};
+	private long[] keys = NO_KEYS;
+	private Object[] values = NO_VALUES;
+	private int size;
+	private int modCount;
+	
+	/**
+	 * Marker for primitive keys. An older version wrote a {@linkplain MapData} of {@linkplain LongKey}, starting with the message header.
+	 */
+	private static final int PRIMITIVE_KEYS = -2;
+	
 	@Override
 	public void writeData(ObjectDataOutput out) throws IOException {
-		map.writeData(out);
+		out.writeInt(PRIMITIVE_KEYS);
+		out.writeInt(size);
+		if(size > 0)
+		{
+			TickerDataSerializableFactory.writeTypeRef(out, values[0]);
+			for (int i = 0; i < size; i++) {
+				out.writeLong(keys[i]);
+				((DataSerializable) values[i]).writeData(out);
+			}
+		}
 	}
 
+	private static boolean isPrimitiveKeys(ObjectDataInput in) throws IOException
+	{
+		if(in instanceof BufferObjectDataInput)
+		{
+			BufferObjectDataInput buff = (BufferObjectDataInput) in;
+			return buff.readInt(buff.position()) == PRIMITIVE_KEYS;
+		}
+		return true;
+	}
+	@SuppressWarnings("unchecked")
+	private void readLegacy(ObjectDataInput in) throws IOException
+	{
+		MapData<LongKey, DataSerializable> legacy = new MapData<>();
+		legacy.readData(in);
+		ensureCapacity(legacy.size());
+		for(Entry<LongKey, DataSerializable> entry : legacy.entrySet())
+		{
+			//sorted by key, so this is an append
+			put(entry.getKey().value(), (V) entry.getValue());
+		}
+	}
 	@Override
 	public void readData(ObjectDataInput in) throws IOException {
-		map.readData(in);
-
+		clear();
+		if(!isPrimitiveKeys(in))
+		{
+			//written by an older version
+			readLegacy(in);
+			return;
+		}
+		in.readInt();
+		int n = in.readInt();
+		if(n > 0)
+		{
+			Supplier<DataSerializable> valType = TickerDataSerializableFactory.readTypeRef(in);
+			ensureCapacity(n);
+			DataSerializable v;
+			for (int i = 0; i < n; i++) {
+				keys[i] = in.readLong();
+				v = valType.get();
+				v.readData(in);
+				values[i] = v;
+			}
+			size = n;
+		}
+	}
+	/**
+	 * Ensure capacity for the given number of entries, to avoid resizing on a bulk build.
+	 * @param capacity
+	 */
+	public void ensureCapacity(int capacity)
+	{
+		if(capacity > keys.length)
+		{
+			int newLen = Math.max(capacity, keys.length + (keys.length >> 1));
+			keys = Arrays.copyOf(keys, newLen);
+			values = Arrays.copyOf(values, newLen);
+		}
+	}
+	private int indexOf(long key)
+	{
+		return Arrays.binarySearch(keys, 0, size, key);
+	}
+	/**
+	 * Get without boxing the key.
+	 * @param key
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int i = indexOf(key);
+		return i >= 0 ? (V) values[i] : null;
+	}
+	/**
+	 * Put without boxing the key.
+	 * @param key
+	 * @param value
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if(size == 0 || keys[size - 1] < key)
+		{
+			//ascending order
+			ensureCapacity(size + 1);
+			keys[size] = key;
+			values[size++] = value;
+			modCount++;
+			return null;
+		}
+		int i = indexOf(key);
+		if(i >= 0)
+		{
+			V old = (V) values[i];
+			values[i] = value;
+			return old;
+		}
+		i = -(i + 1);
+		ensureCapacity(size + 1);
+		System.arraycopy(keys, i, keys, i + 1, size - i);
+		System.arraycopy(values, i, values, i + 1, size - i);
+		keys[i] = key;
+		values[i] = value;
+		size++;
+		modCount++;
+		return null;
+	}
+	/**
+	 * Bulk add entries, which are expected to be in ascending key order. Entries in order are appended without any search.
+	 * @param keys
+	 * @param values
+	 */
+	public void putAllSorted(long[] keys, V[] values)
+	{
+		Assert.isTrue(keys.length == values.length, "keys and values length mismatch");
+		ensureCapacity(size + keys.length);
+		for (int i = 0; i < keys.length; i++) {
+			put(keys[i], values[i]);
+		}
+	}
+	private void removeAt(int i)
+	{
+		int n = size - i - 1;
+		if (n > 0) {
+			System.arraycopy(keys, i + 1, keys, i, n);
+			System.arraycopy(values, i + 1, values, i, n);
+		}
+		size--;
+		values[size] = null;
+		modCount++;
 	}
-
 	@Override
 	public void clear() {
-		map.clear();
+		Arrays.fill(values, 0, size, null);
+		size = 0;
+		modCount++;
 	}
 
 	@Override
 	public boolean containsKey(Object key) {
-		return map.containsKey(new LongKey((long) key));
+		return key instanceof Long && indexOf((Long) key) >= 0;
 	}
 
 	@Override
-	public boolean containsValue(Object arg0) {
-		return map.containsValue(arg0);
+	public V get(Object key) {
+		return key instanceof Long ? get(((Long) key).longValue()) : null;
 	}
 
 	@Override
-	public Set<java.util.Map.Entry<Long, V>> entrySet() {
-		Set<java.util.Map.Entry<Long, V>> entries = new HashSet<>();
-		for(Entry<LongKey, V> entry : map.entrySet())
-		{
-			entries.add(new MapDataEntry<Long, V>(entry.getKey().value(), entry.getValue()));
-		}
-		return entries;
+	public V put(Long key, V value) {
+		return put(key.longValue(), value);
 	}
 
+	@SuppressWarnings("unchecked")
 	@Override
-	public V get(Object key) {
-		return map.get(new StringKey((String) key));
+	public V remove(Object key) {
+		if(!(key instanceof Long))
+			return null;
+		int i = indexOf((Long) key);
+		if(i < 0)
+			return null;
+		V old = (V) values[i];
+		removeAt(i);
+		return old;
 	}
 
 	@Override
-	public boolean isEmpty() {
-		return map.isEmpty();
+	public int size() {
+		return size;
 	}
+	
+	private final Set<Entry<Long, V>> entrySet = new AbstractSet<Entry<Long,V>>() {
 
-	@Override
-	public Set<Long> keySet() {
-		Set<Long> set = new HashSet<>();
-		for(LongKey s : map.keySet())
-		{
-			set.add(s.value());
-		}
-		return set;
-	}
+		@Override
+		public Iterator<Entry<Long, V>> iterator() {
+			return new Iterator<Entry<Long,V>>() {
+				private int next = 0;
+				private int last = -1;
+				private int expectedModCount = modCount;
+				
+				@Override
+				public boolean hasNext() {
+					return next < size;
+				}
 
-	@Override
-	public V put(Long arg0, V arg1) {
-		return map.put(new LongKey(arg0), arg1);
-	}
+				@SuppressWarnings("unchecked")
+				@Override
+				public Entry<Long, V> next() {
+					if(modCount != expectedModCount)
+						throw new ConcurrentModificationException();
+					if(next >= size)
+						throw new NoSuchElementException();
+					last = next++;
+					return new MapDataEntry<Long, V>(keys[last], (V) values[last]);
+				}
+				@Override
+				public void remove() {
+					if(last < 0)
+						throw new IllegalStateException();
+					if(modCount != expectedModCount)
+						throw new ConcurrentModificationException();
+					removeAt(last);
+					next = last;
+					last = -1;
+					expectedModCount = modCount;
+				}
+			};
+		}
 
-	@Override
-	public void putAll(Map<? extends Long, ? extends V> map) {
-		for(java.util.Map.Entry<? extends Long, ? extends V> entry: map.entrySet())
-		{
-			put(entry.getKey(), entry.getValue());
+		@Override
+		public int size() {
+			return size;
 		}
-	}
+	};
 
 	@Override
-	public V remove(Object arg0) {
-		return map.remove(new StringKey((String) arg0));
+	public Set<Entry<Long, V>> entrySet() {
+		return entrySet;
 	}
 
 	@Override
-	public int size() {
-		return map.size();
+	public int getFactoryId() {
+		return TickerDataSerializableFactory.FACTORY_ID;
 	}
 
 	@Override
-	public Collection<V> values() {
-		return map.values();
+	public int getId() {
+		return TickerDataSerializableFactory.typeId(this, LongMapData.class, TickerDataSerializableFactory.LONG_MAP_DATA);
 	}
 
 }
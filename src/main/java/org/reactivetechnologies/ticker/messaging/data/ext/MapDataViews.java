@@ -0,0 +1,125 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.data.ext;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.reactivetechnologies.ticker.messaging.data.DataComparable;
+import org.reactivetechnologies.ticker.messaging.data.MapData;
+/**
+ * Views over a {@linkplain MapData} with the {@linkplain DataComparable} keys unwrapped to their values. The views
+ * are backed by the map, and no copies are made.
+ * @author esutdal
+ *
+ */
+class MapDataViews {
+
+	private MapDataViews() {
+	}
+	/**
+	 * 
+	 * @param map
+	 * @return entry set view with unwrapped keys
+	 */
+	static <K, V> Set<Entry<K, V>> entrySet(final Map<? extends DataComparable<K>, V> map)
+	{
+		return new AbstractSet<Entry<K,V>>() {
+
+			@Override
+			public Iterator<Entry<K, V>> iterator() {
+				final Iterator<? extends Entry<? extends DataComparable<K>, V>> iter = map.entrySet().iterator();
+				return new Iterator<Entry<K,V>>() {
+
+					@Override
+					public boolean hasNext() {
+						return iter.hasNext();
+					}
+
+					@Override
+					public Entry<K, V> next() {
+						final Entry<? extends DataComparable<K>, V> e = iter.next();
+						return new Entry<K, V>() {
+
+							@Override
+							public K getKey() {
+								return e.getKey().value();
+							}
+
+							@Override
+							public V getValue() {
+								return e.getValue();
+							}
+
+							@Override
+							public V setValue(V value) {
+								return e.setValue(value);
+							}
+						};
+					}
+					@Override
+					public void remove() {
+						iter.remove();
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return map.size();
+			}
+		};
+	}
+	/**
+	 * 
+	 * @param map
+	 * @return key set view with unwrapped keys
+	 */
+	static <K> Set<K> keySet(final Map<? extends DataComparable<K>, ?> map)
+	{
+		return new AbstractSet<K>() {
+
+			@Override
+			public Iterator<K> iterator() {
+				final Iterator<? extends DataComparable<K>> iter = map.keySet().iterator();
+				return new Iterator<K>() {
+
+					@Override
+					public boolean hasNext() {
+						return iter.hasNext();
+					}
+
+					@Override
+					public K next() {
+						return iter.next().value();
+					}
+					@Override
+					public void remove() {
+						iter.remove();
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return map.size();
+			}
+		};
+	}
+}
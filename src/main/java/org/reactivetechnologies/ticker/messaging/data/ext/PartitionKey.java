@@ -0,0 +1,137 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package org.reactivetechnologies.ticker.messaging.data.ext;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+import org.reactivetechnologies.ticker.datagrid.TickerDataSerializableFactory;
+import org.reactivetechnologies.ticker.messaging.data.DataComparable;
+
+import com.hazelcast.core.PartitionAware;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+/**
+ * A queue entry key which is pinned to a partition by its routing key, instead of the generated id.
+ * Entries with the same routing key are stored in the same partition, and hence are consumed by the partition owner.
+ * Consumption order within a partition is not guaranteed, unless the container uses partition affine dispatch (container.dispatch.mode).
+ * @author esutdal
+ *
+ */
+public class PartitionKey implements DataComparable<Long>, IdentifiedDataSerializable, PartitionAware<String>, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private long value;
+	private String routing;
+	
+	public PartitionKey() {
+	}
+	/**
+	 * 
+	 * @param value the generated id
+	 * @param routing the partition routing key
+	 */
+	public PartitionKey(long value, String routing) {
+		super();
+		this.value = value;
+		this.routing = routing;
+	}
+
+	@Override
+	public String getPartitionKey() {
+		return routing;
+	}
+
+	@Override
+	public void writeData(ObjectDataOutput out) throws IOException {
+		out.writeLong(value);
+		out.writeUTF(routing);
+	}
+
+	@Override
+	public void readData(ObjectDataInput in) throws IOException {
+		value = in.readLong();
+		routing = in.readUTF();
+	}
+
+	@Override
+	public Long value() {
+		return value;
+	}
+
+	public void setValue(long value) {
+		this.value = value;
+	}
+
+	public String getRouting() {
+		return routing;
+	}
+
+	public void setRouting(String routing) {
+		this.routing = routing;
+	}
+
+	@Override
+	public int compareTo(DataComparable<Long> o) {
+		return Long.compare(value, o.value());
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((routing == null) ? 0 : routing.hashCode());
+		result = prime * result + (int) (value ^ (value >>> 32));
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		PartitionKey other = (PartitionKey) obj;
+		if (routing == null) {
+			if (other.routing != null)
+				return false;
+		} else if (!routing.equals(other.routing))
+			return false;
+		if (value != other.value)
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "PartitionKey [value=" + value + ", routing=" + routing + "]";
+	}
+
+	@Override
+	public int getFactoryId() {
+		return TickerDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return TickerDataSerializableFactory.typeId(this, PartitionKey.class, TickerDataSerializableFactory.PARTITION_KEY);
+	}
+
+}
@@ -17,12 +17,14 @@ package org.reactivetechnologies.ticker.messaging.data.ext;
 
 import java.io.IOException;
 
+import org.reactivetechnologies.ticker.datagrid.TickerDataSerializableFactory;
 import org.reactivetechnologies.ticker.messaging.data.DataComparable;
 
 import com.hazelcast.nio.ObjectDataInput;
 import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
 
-public class StringKey implements DataComparable<String> {
+public class StringKey implements DataComparable<String>, IdentifiedDataSerializable {
 
 	@Override
 	public int hashCode() {
@@ -86,4 +88,14 @@ public class StringKey implements DataComparable<String> {
 		return this.value.compareTo(o.value());
 	}
 
+	@Override
+	public int getFactoryId() {
+		return TickerDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return TickerDataSerializableFactory.typeId(this, StringKey.class, TickerDataSerializableFactory.STRING_KEY);
+	}
+
 }
@@ -17,22 +17,23 @@ package org.reactivetechnologies.ticker.messaging.data.ext;
 
 import java.io.IOException;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import org.reactivetechnologies.ticker.datagrid.TickerDataSerializableFactory;
 import org.reactivetechnologies.ticker.messaging.data.MapData;
 
 import com.hazelcast.nio.ObjectDataInput;
 import com.hazelcast.nio.ObjectDataOutput;
 import com.hazelcast.nio.serialization.DataSerializable;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
 /**
  * An extension of {@linkplain MapData} with String keys.
  * @author esutdal
  *
  * @param <V>
  */
-public class StringMapData<V extends DataSerializable> implements DataSerializable, Map<java.lang.String, V> {
+public class StringMapData<V extends DataSerializable> implements IdentifiedDataSerializable, Map<java.lang.String, V> {
 
 	private MapData<StringKey, V> map = new MapData<>();
 	@Override
@@ -63,12 +64,7 @@ public class StringMapData<V extends DataSerializable> implements DataSerializab
 
 	@Override
 	public Set<java.util.Map.Entry<String, V>> entrySet() {
-		Set<java.util.Map.Entry<String, V>> entries = new HashSet<>();
-		for(Entry<StringKey, V> entry : map.entrySet())
-		{
-			entries.add(new MapDataEntry<String, V>(entry.getKey().value(), entry.getValue()));
-		}
-		return entries;
+		return MapDataViews.entrySet(map);
 	}
 
 	@Override
@@ -83,12 +79,7 @@ public class StringMapData<V extends DataSerializable> implements DataSerializab
 
 	@Override
 	public Set<String> keySet() {
-		Set<String> set = new HashSet<>();
-		for(StringKey s : map.keySet())
-		{
-			set.add(s.value());
-		}
-		return set;
+		return MapDataViews.keySet(map);
 	}
 
 	@Override
@@ -119,4 +110,14 @@ public class StringMapData<V extends DataSerializable> implements DataSerializab
 		return map.values();
 	}
 
+	@Override
+	public int getFactoryId() {
+		return TickerDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return TickerDataSerializableFactory.typeId(this, StringMapData.class, TickerDataSerializableFactory.STRING_MAP_DATA);
+	}
+
 }
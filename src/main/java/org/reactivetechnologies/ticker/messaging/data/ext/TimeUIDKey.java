@@ -19,82 +19,55 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.UUID;
 
+import org.reactivetechnologies.ticker.datagrid.TickerDataSerializableFactory;
 import org.reactivetechnologies.ticker.messaging.data.DataComparable;
 import org.reactivetechnologies.ticker.utils.TimeUIDSupport;
 
 import com.hazelcast.nio.ObjectDataInput;
 import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.HazelcastSerializationException;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
 
-public class TimeUIDKey implements DataComparable<UUID> {
+/**
+ * A time UUID key. Compares in time order directly on the most/least significant bits, and is serialized
+ * as the two longs.
+ * @author esutdal
+ *
+ */
+public class TimeUIDKey implements DataComparable<UUID>, IdentifiedDataSerializable {
 
+	/**
+	 * Marker for the two longs. An older version wrote a length prefixed byte array, whose first byte is 0 (or -1 for no value).
+	 */
+	private static final byte TWO_LONGS = 1;
+	
 	@Override
 	public void writeData(ObjectDataOutput out) throws IOException {
-		byte[] b = TimeUIDSupport.decompose(value);
-		if(b != null)
-		{
-			out.writeInt(b.length);
-			out.write(b);
-		}
-		else
-			out.writeInt(-1);
+		if(value == null)
+			throw new HazelcastSerializationException("TimeUIDKey has no value");
+		out.writeByte(TWO_LONGS);
+		out.writeLong(value.getMostSignificantBits());
+		out.writeLong(value.getLeastSignificantBits());
 	}
 
-	//http://grepcode.com/file_/repo1.maven.org/maven2/org.apache.cassandra/cassandra-all/2.0.0/org/apache/cassandra/db/marshal/TimeUUIDType.java/?v=source
-	private int compareTo(ByteBuffer o1, ByteBuffer o2)
-    {
-        if (o1.remaining() == 0)
-        {
-            return o2.remaining() == 0 ? 0 : -1;
-        }
-        if (o2.remaining() == 0)
-        {
-            return 1;
-        }
-        int res = compareTimestampBytes(o1, o2);
-        if (res != 0)
-            return res;
-        return o1.compareTo(o2);
-    }
-
-    private static int compareTimestampBytes(ByteBuffer o1, ByteBuffer o2)
-    {
-        int o1Pos = o1.position();
-        int o2Pos = o2.position();
-
-        int d = (o1.get(o1Pos + 6) & 0xF) - (o2.get(o2Pos + 6) & 0xF);
-        if (d != 0) return d;
-
-        d = (o1.get(o1Pos + 7) & 0xFF) - (o2.get(o2Pos + 7) & 0xFF);
-        if (d != 0) return d;
-
-        d = (o1.get(o1Pos + 4) & 0xFF) - (o2.get(o2Pos + 4) & 0xFF);
-        if (d != 0) return d;
-
-        d = (o1.get(o1Pos + 5) & 0xFF) - (o2.get(o2Pos + 5) & 0xFF);
-        if (d != 0) return d;
-
-        d = (o1.get(o1Pos) & 0xFF) - (o2.get(o2Pos) & 0xFF);
-        if (d != 0) return d;
-
-        d = (o1.get(o1Pos + 1) & 0xFF) - (o2.get(o2Pos + 1) & 0xFF);
-        if (d != 0) return d;
-
-        d = (o1.get(o1Pos + 2) & 0xFF) - (o2.get(o2Pos + 2) & 0xFF);
-        if (d != 0) return d;
-
-        return (o1.get(o1Pos + 3) & 0xFF) - (o2.get(o2Pos + 3) & 0xFF);
-    }
-    
 	@Override
 	public void readData(ObjectDataInput in) throws IOException {
-		int len = in.readInt();
-		if(len != -1)
+		byte first = in.readByte();
+		if(first != TWO_LONGS)
 		{
-			byte[] b = new byte[len];
-			in.readFully(b);
-			value = TimeUIDSupport.getUUID(ByteBuffer.wrap(b));
+			//written by an older version. The marker was the first byte of the length
+			int len = (first << 24) | (in.readUnsignedByte() << 16) | (in.readUnsignedByte() << 8) | in.readUnsignedByte();
+			value = null;
+			if(len != -1)
+			{
+				byte[] b = new byte[len];
+				in.readFully(b);
+				value = TimeUIDSupport.getUUID(ByteBuffer.wrap(b));
+			}
+			return;
 		}
-		
+		long most = in.readLong();
+		value = new UUID(most, in.readLong());
 	}
 
 	public TimeUIDKey() {
@@ -143,7 +116,17 @@ public class TimeUIDKey implements DataComparable<UUID> {
 
 	@Override
 	public int compareTo(DataComparable<UUID> other) {
-		return compareTo(ByteBuffer.wrap(TimeUIDSupport.decompose(value)), ByteBuffer.wrap(TimeUIDSupport.decompose(other.value())));
+		return TimeUIDSupport.compare(value, other.value());
+	}
+
+	@Override
+	public int getFactoryId() {
+		return TickerDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return TickerDataSerializableFactory.typeId(this, TimeUIDKey.class, TickerDataSerializableFactory.TIMEUID_KEY);
 	}
 
 }
@@ -17,23 +17,24 @@ package org.reactivetechnologies.ticker.messaging.data.ext;
 
 import java.io.IOException;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
+import org.reactivetechnologies.ticker.datagrid.TickerDataSerializableFactory;
 import org.reactivetechnologies.ticker.messaging.data.MapData;
 
 import com.hazelcast.nio.ObjectDataInput;
 import com.hazelcast.nio.ObjectDataOutput;
 import com.hazelcast.nio.serialization.DataSerializable;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
 /**
  * An extension of {@linkplain MapData} with Type 1 UUID (time based) keys.
  * @author esutdal
  *
  * @param <V>
  */
-public class TimeUIDMapData<V extends DataSerializable> implements DataSerializable, Map<UUID, V> {
+public class TimeUIDMapData<V extends DataSerializable> implements IdentifiedDataSerializable, Map<UUID, V> {
 
 	private MapData<TimeUIDKey, V> map = new MapData<>();
 	@Override
@@ -64,12 +65,7 @@ public class TimeUIDMapData<V extends DataSerializable> implements DataSerializa
 
 	@Override
 	public Set<java.util.Map.Entry<UUID, V>> entrySet() {
-		Set<java.util.Map.Entry<UUID, V>> entries = new HashSet<>();
-		for(Entry<TimeUIDKey, V> entry : map.entrySet())
-		{
-			entries.add(new MapDataEntry<UUID, V>(entry.getKey().value(), entry.getValue()));
-		}
-		return entries;
+		return MapDataViews.entrySet(map);
 	}
 
 	@Override
@@ -84,12 +80,7 @@ public class TimeUIDMapData<V extends DataSerializable> implements DataSerializa
 
 	@Override
 	public Set<UUID> keySet() {
-		Set<UUID> set = new HashSet<>();
-		for(TimeUIDKey s : map.keySet())
-		{
-			set.add(s.value());
-		}
-		return set;
+		return MapDataViews.keySet(map);
 	}
 
 	@Override
@@ -120,4 +111,14 @@ public class TimeUIDMapData<V extends DataSerializable> implements DataSerializa
 		return map.values();
 	}
 
+	@Override
+	public int getFactoryId() {
+		return TickerDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return TickerDataSerializableFactory.typeId(this, TimeUIDMapData.class, TickerDataSerializableFactory.TIMEUID_MAP_DATA);
+	}
+
 }
@@ -17,9 +17,9 @@ package org.reactivetechnologies.ticker.mqtt;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 
+import org.reactivetechnologies.ticker.datagrid.TickerDataSerializableFactory;
 import org.reactivetechnologies.ticker.messaging.data.ByteData;
 
 import com.hazelcast.nio.ObjectDataInput;
@@ -30,34 +30,31 @@ import io.moquette.parser.proto.messages.AbstractMessage.QOSType;
 
 public class MqttData extends ByteData {
 
+	//absolute reads on the payload view, which is always big endian
 	public long toLong()
 	{
-		return ByteBuffer.wrap(getPayload()).order(ByteOrder.BIG_ENDIAN).asLongBuffer().get();
+		return payload().getLong(0);
 	}
 	public int toInt()
 	{
-		return ByteBuffer.wrap(getPayload()).order(ByteOrder.BIG_ENDIAN).asIntBuffer().get();
+		return payload().getInt(0);
 	}
 	public double toDouble()
 	{
-		return ByteBuffer.wrap(getPayload()).order(ByteOrder.BIG_ENDIAN).asDoubleBuffer().get();
+		return payload().getDouble(0);
 	}
 	public String toUtf8()
 	{
-		return new String(getPayload(), StandardCharsets.UTF_8);
+		ByteBuffer b = payload();
+		if(b.hasArray())
+			return new String(b.array(), b.arrayOffset(), b.remaining(), StandardCharsets.UTF_8);
+		return StandardCharsets.UTF_8.decode(b.duplicate()).toString();
 	}
 	/**
 	 * 
 	 */
 	private static final long serialVersionUID = 4585074864551171836L;
 
-	private static byte[] toArray(ByteBuffer buff)
-	{
-		//not flipping
-		byte[] b = new byte[buff.limit()];
-		buff.get(b);
-		return b;
-	}
 	private String topicName, clientId, userName;
 	private boolean dupFlag, retainFlag;
 	private QOSType qos;
@@ -97,7 +94,8 @@ public class MqttData extends ByteData {
 		setDestination(getTopicName());
 		setClientId(mqttData.getClientID());
 		setUserName(mqttData.getUsername());
-		setPayload(toArray(mqttData.getPayload()));
+		//not flipping. a view over the message buffer, no copying
+		setPayload(mqttData.getPayload());
 		setDupFlag(mqttData.isDupFlag());
 		setRetainFlag(mqttData.isRetainFlag());
 		setQos(mqttData.getQos());
@@ -151,4 +149,9 @@ public class MqttData extends ByteData {
 		this.userName = userName;
 	}
 
+	@Override
+	public int getId() {
+		return TickerDataSerializableFactory.typeId(this, MqttData.class, TickerDataSerializableFactory.MQTT_DATA);
+	}
+
 }
@@ -35,9 +35,11 @@ class PublishDataDistributor extends TransportInterceptor {
 		MqttData data = new MqttData(msg);
 		if(msg.getQos() == QOSType.MOST_ONE)
 			tickerPub.ingest(data);//fire and forget
-		else
-			tickerPub.offer(data);
+		else if(!tickerPub.offer(data))
+			throw new IllegalStateException("MQTT request not published "+data);//not to be acknowledged
 		
-		LOG.debug("Fired MQTT request "+data+" Payload len: "+data.getPayload().length);
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Fired MQTT request "+data+" Payload len: "+data.getPayloadLength());
+		}
 	}
 }
@@ -29,6 +29,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.util.Assert;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
@@ -41,14 +42,28 @@ public abstract class AbstractRestHandler implements RestHandler {
 
 	protected static class RequestBody
 	{
-		public RequestBody(String queue, String body) {
+		public RequestBody(String queue, byte[] bytes) {
 			super();
 			this.queue = queue;
-			this.body = body;
+			this.bytes = bytes;
 		}
 		public final String queue;
-		public final String body;
+		/**
+		 * Raw UTF-8 body.
+		 */
+		public final byte[] bytes;
+		/**
+		 * Decode the body.
+		 * @return
+		 */
+		public String body() {
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
 	}
+	/**
+	 * Shared mapper. Thread safe.
+	 */
+	protected static final ObjectMapper mapper = new ObjectMapper();
 	public AbstractRestHandler() {
 		super();
 	}
@@ -148,9 +163,8 @@ public abstract class AbstractRestHandler implements RestHandler {
 		ByteBuffer bb = req.getBodyAsByteBuffer();
 		byte[] b = new byte[bb.limit()];
 		bb.get(b);
-		String body = new String(b, StandardCharsets.UTF_8);
 		
-		return new RequestBody(queue, body);
+		return new RequestBody(queue, b);
 	}
 
 }
\ No newline at end of file
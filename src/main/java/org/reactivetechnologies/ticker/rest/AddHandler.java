@@ -16,8 +16,8 @@
 package org.reactivetechnologies.ticker.rest;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
-import org.reactivetechnologies.ticker.messaging.Data;
 import org.reactivetechnologies.ticker.messaging.MessageProcessingException;
 import org.reactivetechnologies.ticker.messaging.data.TextData;
 import org.restexpress.Request;
@@ -26,7 +26,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 import io.netty.handler.codec.http.HttpResponseStatus;
 
@@ -47,11 +46,28 @@ public class AddHandler extends AbstractRestHandler {
 	 */
 	public int addJsonToQueue(String queue, String json, boolean block)
 			throws JsonProcessingException, IOException, MessageProcessingException {
-		ObjectMapper om = new ObjectMapper();
-		om.reader().readTree(json);
-		log.debug("Adding to queue - [" + queue + "] " + json);
+		return addJsonToQueue(queue, json.getBytes(StandardCharsets.UTF_8), block);
+	}
+	/**
+	 * Add UTF-8 encoded JSON to a processing queue. The bytes are validated and stored as is, without decoding to a string.
+	 * @param queue destination
+	 * @param json UTF-8 encoded object to submit
+	 * @param block true, if submitted from this thread
+	 * @return
+	 * @throws JsonProcessingException
+	 * @throws IOException
+	 * @throws MessageProcessingException
+	 */
+	public int addJsonToQueue(String queue, byte[] json, boolean block)
+			throws JsonProcessingException, IOException, MessageProcessingException {
+		mapper.readTree(json);
+		if (log.isDebugEnabled()) {
+			log.debug("Adding to queue - [" + queue + "] " + new String(json, StandardCharsets.UTF_8));
+		}
 		
-		Data d = new TextData(json, queue);
+		TextData d = new TextData();
+		d.setPayloadBytes(json);
+		d.setDestination(queue);
 		d.setAddAsync(!block);
 		publish(d);
 				
@@ -61,7 +77,7 @@ public class AddHandler extends AbstractRestHandler {
 	@Override
 	protected void doPost(Request request, Response response) throws Exception {
 		RequestBody parsed = parse(request, response);
-		addJsonToQueue(parsed.queue, parsed.body, true);
+		addJsonToQueue(parsed.queue, parsed.bytes, true);
 		response.setResponseStatus(HttpResponseStatus.CREATED);
 	}
 
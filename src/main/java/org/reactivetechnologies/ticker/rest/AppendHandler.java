@@ -55,11 +55,44 @@ public class AppendHandler extends AbstractRestHandler{
 		
 		return 1;
 	}
+	private static boolean hasText(byte[] utf8)
+	{
+		for(byte b : utf8)
+		{
+			//any non ascii byte is part of a non whitespace character
+			if(b < 0 || !Character.isWhitespace(b))
+				return true;
+		}
+		return false;
+	}
+	/**
+	 * Add UTF-8 encoded plain text to a processing queue. The bytes are stored as is, without decoding to a string.
+	 * @param queue destination
+	 * @param text UTF-8 encoded plain text to submit
+	 * @param block true, if submitted from this thread
+	 * @return
+	 * @throws JsonProcessingException
+	 * @throws IOException
+	 * @throws MessageProcessingException
+	 */
+	public int addTextToQueue(String queue, byte[] text, boolean block)
+			throws JsonProcessingException, IOException, MessageProcessingException {
+		Assert.isTrue(hasText(text));
+		log.debug("Adding to queue - [" + queue + "] " + text.length + " bytes");
+		
+		TextData d = new TextData();
+		d.setPayloadBytes(text);
+		d.setDestination(queue);
+		d.setAddAsync(!block);
+		publish(d);
+		
+		return 1;
+	}
 
 	@Override
 	protected void doPost(Request request, Response response) throws Exception {
 		RequestBody parsed = parse(request, response);
-		addTextToQueue(parsed.queue, parsed.body, true);
+		addTextToQueue(parsed.queue, parsed.bytes, true);
 		response.setResponseStatus(HttpResponseStatus.CREATED);
 	}
 
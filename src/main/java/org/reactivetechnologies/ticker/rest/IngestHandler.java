@@ -18,7 +18,6 @@ package org.reactivetechnologies.ticker.rest;
 import java.io.IOException;
 import java.util.Iterator;
 
-import org.reactivetechnologies.ticker.messaging.Data;
 import org.reactivetechnologies.ticker.messaging.MessageProcessingException;
 import org.reactivetechnologies.ticker.messaging.data.TextData;
 import org.restexpress.Request;
@@ -29,7 +28,6 @@ import org.springframework.util.Assert;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 
 import io.netty.handler.codec.http.HttpResponseStatus;
@@ -52,11 +50,25 @@ public class IngestHandler extends AbstractRestHandler{
 	 */
 	public void addJsonArrayToQueue(String queue, String jsonArray)
 			throws JsonProcessingException, IOException, MessageProcessingException {
-		ObjectMapper om = new ObjectMapper();
-		JsonNode root = om.reader().readTree(jsonArray);
+		addJsonArrayToQueue(queue, mapper.readTree(jsonArray));
+	}
+	/**
+	 * Add a UTF-8 encoded array of JSON objects to the processing queue via an asynchronous thread.
+	 * @param queue
+	 * @param jsonArray
+	 * @throws JsonProcessingException
+	 * @throws IOException
+	 * @throws MessageProcessingException
+	 */
+	public void addJsonArrayToQueue(String queue, byte[] jsonArray)
+			throws JsonProcessingException, IOException, MessageProcessingException {
+		addJsonArrayToQueue(queue, mapper.readTree(jsonArray));
+	}
+	private void addJsonArrayToQueue(String queue, JsonNode root)
+			throws JsonProcessingException, IOException, MessageProcessingException {
 		Assert.isTrue(root.isArray(), "Not a JSON array");
 		JsonNode each;
-		ObjectWriter ow = om.writer();
+		ObjectWriter ow = mapper.writer();
 
 		log.debug("Adding to queue - [" + queue + "] ");
 
@@ -65,7 +77,9 @@ public class IngestHandler extends AbstractRestHandler{
 			for (Iterator<JsonNode> iter = root.elements(); iter.hasNext();) {
 				each = iter.next();
 				
-				Data text = new TextData(ow.writeValueAsString(each), queue);
+				TextData text = new TextData();
+				text.setPayloadBytes(ow.writeValueAsBytes(each));
+				text.setDestination(queue);
 				text.setAddAsync(true);
 				publish(text);
 			}
@@ -79,7 +93,7 @@ public class IngestHandler extends AbstractRestHandler{
 	@Override
 	protected void doPost(Request request, Response response) throws Exception {
 		RequestBody parsed = parse(request, response);
-		addJsonArrayToQueue(parsed.queue, parsed.body);
+		addJsonArrayToQueue(parsed.queue, parsed.bytes);
 		response.setResponseStatus(HttpResponseStatus.ACCEPTED);
 	}
 
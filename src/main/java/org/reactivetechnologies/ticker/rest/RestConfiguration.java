@@ -18,6 +18,7 @@ package org.reactivetechnologies.ticker.rest;
 import java.io.IOException;
 import java.util.concurrent.TimeoutException;
 
+import org.reactivetechnologies.ticker.messaging.base.IngestRejectedException;
 import org.restexpress.exception.DefaultExceptionMapper;
 import org.restexpress.exception.ServiceException;
 import org.slf4j.Logger;
@@ -48,6 +49,7 @@ public class RestConfiguration {
 		public static final String BADREQ_INV_TEXT = "Not a valid text";
 		public static final String BADREQ_INV_JSONARR = "Expecting a json array";
 		public static final String REQ_TIMEOUT = "Quorum response not completed";
+		public static final String INGEST_REJECTED = "Ingestion is at capacity, retry later";
 		
 		private static final Logger log = LoggerFactory.getLogger(ServiceExceptionMapper.class);
 		
@@ -69,6 +71,10 @@ public class RestConfiguration {
 			{
 				ex = new ServiceException(HttpResponseStatus.REQUEST_TIMEOUT, REQ_TIMEOUT, t);
 			}
+			else if(t instanceof IngestRejectedException || t.getCause() instanceof IngestRejectedException)
+			{
+				ex = new ServiceException(HttpResponseStatus.SERVICE_UNAVAILABLE, INGEST_REJECTED, t);
+			}
 			
 			return ex;
 		}
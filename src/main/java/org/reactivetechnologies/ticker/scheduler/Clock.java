@@ -22,13 +22,14 @@ import java.util.GregorianCalendar;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
+import org.reactivetechnologies.ticker.datagrid.TickerDataSerializableFactory;
 import org.springframework.util.Assert;
 
 import com.hazelcast.nio.ObjectDataInput;
 import com.hazelcast.nio.ObjectDataOutput;
-import com.hazelcast.nio.serialization.DataSerializable;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
 
-public class Clock implements DataSerializable {
+public class Clock implements IdentifiedDataSerializable {
 	public Clock() {
 		
 	}
@@ -124,4 +125,14 @@ public class Clock implements DataSerializable {
 		return unit.toMillis(timestamp);
 	}
 
+	@Override
+	public int getFactoryId() {
+		return TickerDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return TickerDataSerializableFactory.typeId(this, Clock.class, TickerDataSerializableFactory.CLOCK);
+	}
+
 }
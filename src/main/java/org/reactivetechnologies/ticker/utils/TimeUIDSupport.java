@@ -28,6 +28,8 @@ import java.util.Enumeration;
 import java.util.List;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 //Copied from Apache Cassandra source.
 
 /**
@@ -59,6 +61,52 @@ public final class TimeUIDSupport
 
     private long lastNanos;
 
+    /*
+     * Striped generation. Each thread is assigned a slice, and each slice has its own clock sequence
+     * and last timestamp. UUIDs from different slices differ in the lsb, so slices never need to agree on
+     * the timestamp. Slice clock sequences are offset by index + 1 from the shared one, so they never collide
+     * with getTimeUUID() either. The last timestamp of a slice is kept in a padded slot (one per cache line),
+     * so threads do not contend unless more than SLICES threads share a slot.
+     */
+    private static final int SLICES = 1024;
+    private static final int SLOT_PAD = 8;
+    private static final AtomicLongArray sliceNanos = new AtomicLongArray(SLICES * SLOT_PAD);
+    private static final AtomicInteger sliceSeq = new AtomicInteger();
+    private static final ThreadLocal<Slice> slice = new ThreadLocal<Slice>()
+    {
+        @Override
+        protected Slice initialValue()
+        {
+            return new Slice(sliceSeq.getAndIncrement() & (SLICES - 1));
+        }
+    };
+
+    private static final class Slice
+    {
+        private final int slot;
+        private final long clockSeqAndNode;
+
+        private Slice(int index)
+        {
+            slot = index * SLOT_PAD;
+            long clockSeq = ((TimeUIDSupport.clockSeqAndNode >>> 48) + index + 1) & 0x3FFFL;
+            clockSeqAndNode = (TimeUIDSupport.clockSeqAndNode & 0xC000FFFFFFFFFFFFL) | clockSeq << 48;
+        }
+
+        /** reserves count consecutive timestamps, returning the first. */
+        private long reserve(int count)
+        {
+            long now = (System.currentTimeMillis() - START_EPOCH) * 10000;
+            for (;;)
+            {
+                long last = sliceNanos.get(slot);
+                long next = now > last ? now : last + 1;
+                if (sliceNanos.compareAndSet(slot, last, next + count - 1))
+                    return next;
+            }
+        }
+    }
+
     private TimeUIDSupport()
     {
         // make sure someone didn't whack the clockSeqAndNode by changing the order of instantiation.
@@ -74,6 +122,38 @@ public final class TimeUIDSupport
         return new UUID(instance.createTimeSafe(), clockSeqAndNode);
     }
 
+    /**
+     * Creates a type 1 UUID (time-based UUID) without a shared lock. UUIDs are unique across threads and
+     * ordered within a thread. Across threads they are ordered by timestamp, while UUIDs with the same
+     * timestamp are distinguished by the clock sequence of the calling thread.
+     *
+     * @return a UUID instance
+     */
+    public static UUID nextTimeUUID()
+    {
+        Slice s = slice.get();
+        return new UUID(createTime(s.reserve(1)), s.clockSeqAndNode);
+    }
+
+    /**
+     * Creates count type 1 UUIDs (time-based UUIDs) in one call, as {@link #nextTimeUUID()}. The UUIDs have
+     * consecutive timestamps, in ascending order.
+     *
+     * @param count
+     * @return UUID instances
+     */
+    public static UUID[] nextTimeUUIDs(int count)
+    {
+        if (count <= 0)
+            throw new IllegalArgumentException("count should be positive");
+        Slice s = slice.get();
+        long nanosSince = s.reserve(count);
+        UUID[] uuids = new UUID[count];
+        for (int i = 0; i < count; i++)
+            uuids[i] = new UUID(createTime(nanosSince + i), s.clockSeqAndNode);
+        return uuids;
+    }
+
     /**
      * Creates a type 1 UUID (time-based UUID) with the timestamp of @param when, in milliseconds.
      *
@@ -122,6 +202,30 @@ public final class TimeUIDSupport
         return b;
     }
 
+    /**
+     * Compares two type 1 UUIDs in time order, without decomposing them into bytes. The 60 bit
+     * timestamps are compared first, and ties are broken on the raw bytes (signed, as {@linkplain ByteBuffer#compareTo(ByteBuffer)}).
+     */
+    public static int compare(UUID u1, UUID u2)
+    {
+        long most1 = u1.getMostSignificantBits(), most2 = u2.getMostSignificantBits();
+        int d = Long.compare(timestampBits(most1), timestampBits(most2));
+        if (d != 0)
+            return d;
+        d = Long.compareUnsigned(most1 ^ BYTE_SIGN_BITS, most2 ^ BYTE_SIGN_BITS);
+        if (d != 0)
+            return d;
+        return Long.compareUnsigned(u1.getLeastSignificantBits() ^ BYTE_SIGN_BITS, u2.getLeastSignificantBits() ^ BYTE_SIGN_BITS);
+    }
+
+    private static final long BYTE_SIGN_BITS = 0x8080808080808080L;
+
+    /** time_hi (without the version), time_mid, time_low of the most significant bits. */
+    private static long timestampBits(long most)
+    {
+        return (most & 0x0FFFL) << 48 | ((most >>> 16) & 0xFFFFL) << 32 | most >>> 32;
+    }
+
     /**
      * Returns a 16 byte representation of a type 1 UUID (a time-based UUID),
      * based on the current system time.
@@ -0,0 +1,204 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package ticker.datagrid;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reactivetechnologies.ticker.datagrid.QueueMapStore;
+import org.reactivetechnologies.ticker.messaging.data.TextData;
+import org.reactivetechnologies.ticker.messaging.data.ext.PartitionKey;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+/**
+ * {@linkplain QueueMapStore} writes, removals and compaction of a partition file, and restore from the files by a new store.
+ * The keys are routed to a single partition, so that all records are in one file.
+ */
+public class QueueMapStoreTest {
+
+	static final String MAP = "QUEUE-STORE";
+	static final int COMPACT_MIN_BYTES = 1024;
+	
+	static HazelcastInstance hz;
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	private Properties props;
+	
+	@BeforeClass
+	public static void startMember()
+	{
+		Config config = new Config();
+		config.setProperty("hazelcast.phone.home.enabled", "false");
+		JoinConfig join = config.getNetworkConfig().getJoin();
+		join.getMulticastConfig().setEnabled(false);
+		join.getTcpIpConfig().setEnabled(false);
+		hz = Hazelcast.newHazelcastInstance(config);
+	}
+	@AfterClass
+	public static void stopMember()
+	{
+		hz.shutdown();
+	}
+	@Before
+	public void setStoreDir() throws IOException
+	{
+		props = new Properties();
+		props.setProperty(QueueMapStore.PROP_DIR, folder.newFolder().getPath());
+		props.setProperty(QueueMapStore.PROP_COMPACT_MIN_BYTES, String.valueOf(COMPACT_MIN_BYTES));
+	}
+	private QueueMapStore newStore()
+	{
+		QueueMapStore store = new QueueMapStore();
+		store.init(hz, props, MAP);
+		return store;
+	}
+	private File partitionFile()
+	{
+		int id = hz.getPartitionService().getPartition(key(0)).getPartitionId();
+		return new File(new File(props.getProperty(QueueMapStore.PROP_DIR), MAP), id + ".dat");
+	}
+	static PartitionKey key(long i)
+	{
+		return new PartitionKey(i, "route");
+	}
+	static TextData value(long i)
+	{
+		return new TextData("message payload of entry " + i + " padded to a length over a hundred bytes ......................", MAP);
+	}
+	static Map<Object, Object> entries(int from, int to)
+	{
+		Map<Object, Object> map = new HashMap<>();
+		for (int i = from; i < to; i++) {
+			map.put(key(i), value(i));
+		}
+		return map;
+	}
+	static List<Object> keys(int from, int to)
+	{
+		List<Object> keys = new ArrayList<>();
+		for (int i = from; i < to; i++) {
+			keys.add(key(i));
+		}
+		return keys;
+	}
+	static Set<Object> keySet(Iterable<Object> keys)
+	{
+		Set<Object> set = new HashSet<>();
+		for(Object k : keys)
+			set.add(k);
+		return set;
+	}
+	private void assertRestored(int from, int to)
+	{
+		QueueMapStore store = newStore();
+		try 
+		{
+			Assert.assertEquals(new HashSet<>(keys(from, to)), keySet(store.loadAllKeys()));
+			Map<Object, Object> loaded = store.loadAll(keys(from, to));
+			Assert.assertEquals(to - from, loaded.size());
+			for (int i = from; i < to; i++) {
+				Assert.assertEquals(value(i).getPayload(), ((TextData) loaded.get(key(i))).getPayload());
+			}
+		} 
+		finally {
+			store.destroy();
+		}
+	}
+	
+	@Test
+	public void storeAndRestore()
+	{
+		QueueMapStore store = newStore();
+		store.storeAll(entries(0, 10));
+		store.deleteAll(keys(7, 10));
+		//never stored, coalesced by write-behind
+		store.delete(key(100));
+		Assert.assertNull(store.load(key(8)));
+		Assert.assertEquals(value(3).getPayload(), ((TextData) store.load(key(3))).getPayload());
+		store.destroy();
+		
+		assertRestored(0, 7);
+	}
+	@Test
+	public void truncateWhenAllRemoved()
+	{
+		QueueMapStore store = newStore();
+		store.storeAll(entries(0, 5));
+		Assert.assertTrue(partitionFile().length() > 0);
+		store.deleteAll(keys(0, 5));
+		Assert.assertEquals(0, partitionFile().length());
+		store.destroy();
+		
+		assertRestored(0, 0);
+	}
+	@Test
+	public void compactDeadRecords()
+	{
+		QueueMapStore store = newStore();
+		store.storeAll(entries(0, 40));
+		long full = partitionFile().length();
+		Assert.assertTrue(full > COMPACT_MIN_BYTES);
+		
+		store.deleteAll(keys(0, 30));
+		long compacted = partitionFile().length();
+		Assert.assertTrue("not compacted: "+compacted+" of "+full, compacted < full / 2);
+		//reads by offset in the compacted file
+		for (int i = 30; i < 40; i++) {
+			Assert.assertEquals(value(i).getPayload(), ((TextData) store.load(key(i))).getPayload());
+		}
+		//appends to the compacted file
+		store.storeAll(entries(40, 45));
+		store.destroy();
+		
+		assertRestored(30, 45);
+	}
+	@Test
+	public void truncateTornRecord() throws IOException
+	{
+		QueueMapStore store = newStore();
+		store.storeAll(entries(0, 5));
+		store.destroy();
+		
+		long length = partitionFile().length();
+		try(RandomAccessFile raf = new RandomAccessFile(partitionFile(), "rw"))
+		{
+			//a put record header with a part of the key, from a crash while writing
+			raf.seek(length);
+			raf.write(new byte[]{1, 0, 0, 0, 64, 0, 1});
+		}
+		assertRestored(0, 5);
+		Assert.assertEquals(length, partitionFile().length());
+	}
+}
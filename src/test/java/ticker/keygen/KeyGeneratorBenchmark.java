@@ -0,0 +1,104 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package ticker.keygen;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.reactivetechnologies.ticker.messaging.base.keygen.BlockAllocatingStrategy;
+import org.reactivetechnologies.ticker.messaging.base.keygen.IdGeneratorStrategy;
+import org.reactivetechnologies.ticker.messaging.base.keygen.KeyGenerationStrategy;
+import org.reactivetechnologies.ticker.messaging.base.keygen.SnowflakeStrategy;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+/**
+ * Throughput comparison of key generation strategies against the per-call IdGenerator lookup,
+ * on a standalone Hazelcast member. Run as a plain java main.
+ */
+public class KeyGeneratorBenchmark {
+
+	static final String QUEUE = "BENCH-QUEUE";
+	static final int KEYS_PER_THREAD = 500000;
+	static final int WARMUP = 2;
+	static final int ITERATIONS = 5;
+
+	static long run(KeyGenerationStrategy strategy, int threads) throws InterruptedException
+	{
+		ExecutorService ex = Executors.newFixedThreadPool(threads);
+		long start = System.nanoTime();
+		for (int t = 0; t < threads; t++) {
+			ex.submit(new Runnable() {
+				
+				@Override
+				public void run() {
+					for (int i = 0; i < KEYS_PER_THREAD; i++) {
+						strategy.next(QUEUE);
+					}
+				}
+			});
+		}
+		ex.shutdown();
+		ex.awaitTermination(10, TimeUnit.MINUTES);
+		return System.nanoTime() - start;
+	}
+	static void measure(String name, KeyGenerationStrategy strategy, int threads) throws InterruptedException
+	{
+		for (int i = 0; i < WARMUP; i++) {
+			run(strategy, threads);
+		}
+		long total = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			total += run(strategy, threads);
+		}
+		long keys = (long) KEYS_PER_THREAD * threads * ITERATIONS;
+		System.out.println(String.format("%-12s threads=%-3d %,12d keys/sec  %8.1f ns/key", name, threads,
+				(long) (keys / (total / 1e9)), (double) total / keys));
+	}
+	public static void main(String[] args) throws InterruptedException {
+		Config cfg = new Config();
+		cfg.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+		HazelcastInstance hz = Hazelcast.newHazelcastInstance(cfg);
+		try 
+		{
+			KeyGenerationStrategy current = new KeyGenerationStrategy() {
+				
+				@Override
+				public long[] next(String queue, int count) {
+					throw new UnsupportedOperationException();
+				}
+				
+				@Override
+				public long next(String queue) {
+					return hz.getIdGenerator(queue).newId();
+				}
+			};
+			for(int threads : new int[]{1, 8})
+			{
+				measure("current", current, threads);
+				measure("idgen", new IdGeneratorStrategy(hz), threads);
+				measure("block", new BlockAllocatingStrategy(hz, 10000), threads);
+				measure("snowflake", new SnowflakeStrategy(hz), threads);
+			}
+		} 
+		finally {
+			hz.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package ticker.keygen;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.reactivetechnologies.ticker.utils.TimeUIDSupport;
+/**
+ * Throughput of time UUID generation, the synchronized {@linkplain TimeUIDSupport#getTimeUUID()} against
+ * the striped {@linkplain TimeUIDSupport#nextTimeUUID()} and batch {@linkplain TimeUIDSupport#nextTimeUUIDs(int)},
+ * at 1, 8 and 32 threads. A final run verifies uniqueness across threads, with both generators interleaved. Run as a plain java main.
+ */
+public class TimeUIDBenchmark {
+
+	static final int UUIDS_PER_THREAD = 1000000;
+	static final int BATCH = 100;
+	static final int WARMUP = 2;
+	static final int ITERATIONS = 5;
+
+	static interface Generator
+	{
+		void generate(int count);
+	}
+	static final Generator SYNCHRONIZED = new Generator() {
+		
+		@Override
+		public void generate(int count) {
+			for (int i = 0; i < count; i++) {
+				TimeUIDSupport.getTimeUUID();
+			}
+		}
+	};
+	static final Generator STRIPED = new Generator() {
+		
+		@Override
+		public void generate(int count) {
+			for (int i = 0; i < count; i++) {
+				TimeUIDSupport.nextTimeUUID();
+			}
+		}
+	};
+	static final Generator STRIPED_BATCH = new Generator() {
+		
+		@Override
+		public void generate(int count) {
+			for (int i = 0; i < count; i += BATCH) {
+				TimeUIDSupport.nextTimeUUIDs(BATCH);
+			}
+		}
+	};
+	
+	static long run(Generator gen, int threads) throws InterruptedException
+	{
+		ExecutorService ex = Executors.newFixedThreadPool(threads);
+		long start = System.nanoTime();
+		for (int t = 0; t < threads; t++) {
+			ex.submit(new Runnable() {
+				
+				@Override
+				public void run() {
+					gen.generate(UUIDS_PER_THREAD);
+				}
+			});
+		}
+		ex.shutdown();
+		ex.awaitTermination(10, TimeUnit.MINUTES);
+		return System.nanoTime() - start;
+	}
+	static void measure(String name, Generator gen, int threads) throws InterruptedException
+	{
+		for (int i = 0; i < WARMUP; i++) {
+			run(gen, threads);
+		}
+		long total = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			total += run(gen, threads);
+		}
+		long uuids = (long) UUIDS_PER_THREAD * threads * ITERATIONS;
+		System.out.println(String.format("%-14s threads=%-3d %,12d uuids/sec  %8.1f ns/uuid", name, threads,
+				(long) (uuids / (total / 1e9)), (double) total / uuids));
+	}
+	static void verifyUnique(int threads) throws InterruptedException
+	{
+		Set<UUID> seen = ConcurrentHashMap.newKeySet();
+		ExecutorService ex = Executors.newFixedThreadPool(threads);
+		for (int t = 0; t < threads; t++) {
+			ex.submit(new Runnable() {
+				
+				@Override
+				public void run() {
+					UUID last = null;
+					for (int i = 0; i < 100000; i++) {
+						UUID u = TimeUIDSupport.nextTimeUUID();
+						if(last != null && TimeUIDSupport.compare(last, u) >= 0)
+							System.err.println("out of order: " + last + " " + u);
+						if(!seen.add(u))
+							System.err.println("duplicate: " + u);
+						last = u;
+						//interleave the synchronized generator, which has its own timestamp
+						u = TimeUIDSupport.getTimeUUID();
+						if(!seen.add(u))
+							System.err.println("duplicate (synchronized): " + u);
+					}
+				}
+			});
+		}
+		ex.shutdown();
+		ex.awaitTermination(10, TimeUnit.MINUTES);
+		System.out.println(String.format("verified %,d uuids from %d threads", seen.size(), threads));
+	}
+	public static void main(String[] args) throws InterruptedException {
+		for(int threads : new int[]{1, 8, 32})
+		{
+			measure("synchronized", SYNCHRONIZED, threads);
+			measure("striped", STRIPED, threads);
+			measure("striped/batch", STRIPED_BATCH, threads);
+		}
+		verifyUnique(32);
+	}
+
+}
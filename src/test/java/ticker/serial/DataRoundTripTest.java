@@ -0,0 +1,313 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package ticker.serial;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.reactivetechnologies.ticker.datagrid.TickerDataSerializableFactory;
+import org.reactivetechnologies.ticker.messaging.data.MapData;
+import org.reactivetechnologies.ticker.messaging.data.ObjectData;
+import org.reactivetechnologies.ticker.messaging.data.TextData;
+import org.reactivetechnologies.ticker.messaging.data.ext.LongKey;
+import org.reactivetechnologies.ticker.messaging.data.ext.LongMapData;
+import org.reactivetechnologies.ticker.messaging.data.ext.StringKey;
+import org.reactivetechnologies.ticker.messaging.data.ext.TimeUIDKey;
+import org.reactivetechnologies.ticker.utils.TimeUIDSupport;
+
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import com.hazelcast.internal.serialization.impl.ObjectDataInputStream;
+import com.hazelcast.internal.serialization.impl.ObjectDataOutputStream;
+import com.hazelcast.nio.serialization.DataSerializable;
+/**
+ * Round trips of the platform data types in the current wire format. Also through plain streams, which are not
+ * {@linkplain com.hazelcast.nio.BufferObjectDataInput}, so the format markers cannot be peeked and the current format is assumed.
+ */
+public class DataRoundTripTest {
+
+	static InternalSerializationService ser;
+	
+	@BeforeClass
+	public static void init()
+	{
+		ser = new DefaultSerializationServiceBuilder()
+				.addDataSerializableFactory(TickerDataSerializableFactory.FACTORY_ID, new TickerDataSerializableFactory())
+				.build();
+	}
+	@AfterClass
+	public static void destroy()
+	{
+		ser.dispose();
+	}
+	@SuppressWarnings("unchecked")
+	static <T> T roundTrip(T o)
+	{
+		return (T) ser.toObject(ser.toData(o));
+	}
+	/**
+	 * Write and read with plain streams.
+	 */
+	static <T extends DataSerializable> T streamRoundTrip(T o, T into) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectDataOutputStream out = new ObjectDataOutputStream(bytes, ser);
+		o.writeData(out);
+		out.flush();
+		into.readData(new ObjectDataInputStream(new ByteArrayInputStream(bytes.toByteArray()), ser));
+		return into;
+	}
+	static void assertHeader(TextData expected, TextData actual)
+	{
+		Assert.assertEquals(expected.getCorrelationID(), actual.getCorrelationID());
+		Assert.assertEquals(expected.getDestination(), actual.getDestination());
+		Assert.assertEquals(expected.getReplyTo(), actual.getReplyTo());
+		Assert.assertEquals(expected.getTimestamp(), actual.getTimestamp());
+		Assert.assertEquals(expected.getExpiryMillis(), actual.getExpiryMillis());
+		Assert.assertEquals(expected.isRedelivered(), actual.isRedelivered());
+		Assert.assertEquals(expected.getRedeliveryCount(), actual.getRedeliveryCount());
+		Assert.assertEquals(expected.getProcessState(), actual.getProcessState());
+		Assert.assertEquals(expected.getClaimedBy(), actual.getClaimedBy());
+	}
+	static TextData fullHeader()
+	{
+		TextData t = new TextData("{\"symbol\":\"ACME\"}", "QUEUE-1", UUID.randomUUID().toString());
+		t.setReplyTo("REPLY-1");
+		t.setExpiryMillis(60000);
+		t.setRedelivered(true);
+		t.setRedeliveryCount((short) 3);
+		t.setProcessState((byte) 1);
+		t.setClaimedBy(UUID.randomUUID() + "#1");
+		return t;
+	}
+	
+	@Test
+	public void headerAllFields()
+	{
+		TextData t = fullHeader();
+		TextData copy = roundTrip(t);
+		assertHeader(t, copy);
+		Assert.assertEquals(t.getPayload(), copy.getPayload());
+	}
+	@Test
+	public void headerDefaults()
+	{
+		TextData t = new TextData("x");
+		t.setCorrelationID("");
+		t.setTimestamp(0);
+		TextData copy = roundTrip(t);
+		assertHeader(t, copy);
+		Assert.assertEquals("", copy.getDestination());
+		Assert.assertEquals("", copy.getClaimedBy());
+	}
+	@Test
+	public void headerCorrelationNotUUID()
+	{
+		//not restored exactly from a UUID, so written as a string
+		for(String corr : new String[]{"corr-2", "5F0E4C3A-2B1D-4E6F-8A9B-0C1D2E3F4A5B", UUID.randomUUID() + "-x"})
+		{
+			TextData t = new TextData("x", "QUEUE-1", corr);
+			Assert.assertEquals(corr, roundTrip(t).getCorrelationID());
+		}
+	}
+	@Test
+	public void headerDestinationImplied()
+	{
+		TextData t = new TextData("x", "QUEUE-1");
+		int full = ser.toData(t).toByteArray().length;
+		t.setDestinationImplied(true);
+		Assert.assertTrue(ser.toData(t).toByteArray().length < full);
+		
+		TextData copy = roundTrip(t);
+		Assert.assertTrue(copy.isDestinationImplied());
+		Assert.assertEquals("", copy.getDestination());
+		copy.resolveDestination("QUEUE-1");
+		Assert.assertEquals("QUEUE-1", copy.getDestination());
+	}
+	@Test
+	public void textPayload()
+	{
+		Assert.assertNull(roundTrip(new TextData()).getPayload());
+		Assert.assertEquals("", roundTrip(new TextData("")).getPayload());
+		
+		TextData t = new TextData();
+		t.setPayloadBytes("price € 101.25".getBytes(StandardCharsets.UTF_8));
+		TextData copy = roundTrip(t);
+		Assert.assertEquals("price € 101.25", copy.getPayload());
+		Assert.assertArrayEquals(t.getPayloadBytes(), copy.getPayloadBytes());
+	}
+	
+	public static class Quote
+	{
+		private String symbol;
+		private double price;
+		public Quote() {
+		}
+		Quote(String symbol, double price) {
+			this.symbol = symbol;
+			this.price = price;
+		}
+		public String getSymbol() {
+			return symbol;
+		}
+		public void setSymbol(String symbol) {
+			this.symbol = symbol;
+		}
+		public double getPrice() {
+			return price;
+		}
+		public void setPrice(double price) {
+			this.price = price;
+		}
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Quote && ((Quote) obj).symbol.equals(symbol) && ((Quote) obj).price == price;
+		}
+		@Override
+		public int hashCode() {
+			return symbol.hashCode();
+		}
+	}
+	@Test
+	public void objectData()
+	{
+		ObjectData<Quote> o = new ObjectData<>(new Quote("ACME", 101.25), "QUEUE-2");
+		ObjectData<Quote> copy = roundTrip(o);
+		Assert.assertEquals(o.getDestination(), copy.getDestination());
+		Assert.assertEquals(new Quote("ACME", 101.25), copy.getObject());
+		//written again without being decoded
+		Assert.assertEquals(new Quote("ACME", 101.25), roundTrip(roundTrip(o)).getObject());
+		
+		Assert.assertNull(roundTrip(new ObjectData<Quote>()).getObject());
+	}
+	@Test
+	public void mapData()
+	{
+		MapData<LongKey, StringKey> m = new MapData<>();
+		for(long k : new long[]{50, 10, 40, 20, 30})
+			m.put(new LongKey(k), new StringKey("v" + k));
+		m.put(new LongKey(40), new StringKey("v40'"));
+		m.remove(new LongKey(20));
+		
+		MapData<LongKey, StringKey> copy = roundTrip(m);
+		Assert.assertEquals(Arrays.asList(10L, 30L, 40L, 50L), keysOf(copy));
+		Assert.assertEquals("v40'", copy.get(new LongKey(40)).value());
+		Assert.assertNull(copy.get(new LongKey(20)));
+		Assert.assertTrue(roundTrip(new MapData<LongKey, StringKey>()).isEmpty());
+	}
+	@Test
+	public void mapDataSortedArrayMap()
+	{
+		MapData<LongKey, StringKey> m = new MapData<>();
+		m.putAllSorted(new LongKey[]{new LongKey(1), new LongKey(2), new LongKey(5)}, new StringKey[]{new StringKey("a"), new StringKey("b"), new StringKey("e")});
+		//out of order after the bulk append
+		m.putAllSorted(new LongKey[]{new LongKey(4), new LongKey(3)}, new StringKey[]{new StringKey("d"), new StringKey("c")});
+		Assert.assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L), keysOf(m));
+		
+		Iterator<LongKey> it = m.keySet().iterator();
+		while(it.hasNext())
+		{
+			if(it.next().value() % 2 == 0)
+				it.remove();
+		}
+		Assert.assertEquals(Arrays.asList(1L, 3L, 5L), keysOf(m));
+		Assert.assertTrue(m.containsKey(new LongKey(3)));
+		Assert.assertFalse(m.containsKey(new LongKey(4)));
+		Assert.assertEquals(Arrays.asList(1L, 3L, 5L), keysOf(roundTrip(m)));
+	}
+	private static List<Long> keysOf(Map<LongKey, ?> m)
+	{
+		List<Long> keys = new ArrayList<>();
+		for(LongKey k : m.keySet())
+			keys.add(k.value());
+		return keys;
+	}
+	@Test
+	public void longMapData()
+	{
+		LongMapData<StringKey> m = new LongMapData<>();
+		for(long k : new long[]{7, -3, 100, 0})
+			m.put(k, new StringKey("v" + k));
+		m.remove(100L);
+		
+		LongMapData<StringKey> copy = roundTrip(m);
+		Assert.assertEquals(Arrays.asList(-3L, 0L, 7L), new ArrayList<>(copy.keySet()));
+		Assert.assertEquals("v7", copy.get(7L).value());
+		Assert.assertNull(copy.get(100L));
+		Assert.assertTrue(roundTrip(new LongMapData<StringKey>()).isEmpty());
+	}
+	@Test
+	public void timeUIDKey()
+	{
+		TimeUIDKey k = new TimeUIDKey(TimeUIDSupport.getTimeUUID());
+		Assert.assertEquals(k, roundTrip(k));
+	}
+	@Test
+	public void timeUIDKeyOrder()
+	{
+		//across a time_low wrap (2^32 x 100ns, about 429 seconds), where the raw UUID order differs from the time order
+		long base = 1490000000000L;
+		List<TimeUIDKey> expected = new ArrayList<>();
+		for(long when : new long[]{base, base + 1, base + 430000, base + 860000, base + 86400000L * 365})
+			expected.add(new TimeUIDKey(TimeUIDSupport.getTimeUUID(when)));
+		
+		List<TimeUIDKey> keys = new ArrayList<>(expected);
+		Collections.shuffle(keys);
+		Collections.sort(keys);
+		Assert.assertEquals(expected, keys);
+		
+		Map<TimeUIDKey, StringKey> m = new MapData<>();
+		for(TimeUIDKey k : keys)
+			m.put(k, new StringKey(k.value().toString()));
+		Assert.assertEquals(expected, new ArrayList<>(roundTrip(m).keySet()));
+	}
+	@Test
+	public void plainStreams() throws IOException
+	{
+		TextData t = fullHeader();
+		TextData copy = streamRoundTrip(t, new TextData());
+		assertHeader(t, copy);
+		Assert.assertEquals(t.getPayload(), copy.getPayload());
+		
+		ObjectData<Quote> o = new ObjectData<>(new Quote("ACME", 101.25), "QUEUE-2");
+		Assert.assertEquals(new Quote("ACME", 101.25), streamRoundTrip(o, new ObjectData<Quote>()).getObject());
+		
+		MapData<LongKey, StringKey> m = new MapData<>();
+		m.put(new LongKey(2), new StringKey("b"));
+		m.put(new LongKey(1), new StringKey("a"));
+		Assert.assertEquals(Arrays.asList(1L, 2L), keysOf(streamRoundTrip(m, new MapData<LongKey, StringKey>())));
+		
+		LongMapData<StringKey> lm = new LongMapData<>();
+		lm.put(9L, new StringKey("i"));
+		Assert.assertEquals("i", streamRoundTrip(lm, new LongMapData<StringKey>()).get(9L).value());
+		
+		TimeUIDKey k = new TimeUIDKey(TimeUIDSupport.getTimeUUID());
+		Assert.assertEquals(k, streamRoundTrip(k, new TimeUIDKey()));
+	}
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package ticker.serial;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.reactivetechnologies.ticker.datagrid.TickerDataSerializableFactory;
+import org.reactivetechnologies.ticker.messaging.data.MapData;
+import org.reactivetechnologies.ticker.messaging.data.ObjectData;
+import org.reactivetechnologies.ticker.messaging.data.TextData;
+import org.reactivetechnologies.ticker.messaging.data.ext.LongKey;
+import org.reactivetechnologies.ticker.messaging.data.ext.LongMapData;
+import org.reactivetechnologies.ticker.messaging.data.ext.StringKey;
+import org.reactivetechnologies.ticker.messaging.data.ext.TimeUIDKey;
+
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import com.hazelcast.internal.serialization.impl.HeapData;
+/**
+ * Entries written by the first release are read by the current types. The bytes were captured from the first release, with a
+ * default serialization service: plain {@linkplain com.hazelcast.nio.serialization.DataSerializable} with class names, the 
+ * {@linkplain org.reactivetechnologies.ticker.messaging.Data} header as UTF/long fields, payloads with writeUTF, and map entry
+ * types as class names.
+ */
+public class LegacyFormatReadTest {
+
+	/**
+	 * TextData("{\"symbol\":\"ACME\",\"price\":101.25}", "QUEUE-1", "5f0e4c3a-2b1d-4e6f-8a9b-0c1d2e3f4a5b"), replyTo "REPLY-1",
+	 * timestamp 1490000000000, expiry 60000, redelivered, redelivery count 2, process state 1.
+	 */
+	static final String TEXT_DATA = "00000000fffffffe00000000376f72672e7265616374697665746563686e6f6c6f676965732e7469636b65722e6d6573736167696e672e646174612e54657874446174610000002435663065346333612d326231642d346536662d386139622d3063316432653366346135620000000751554555452d31000000075245504c592d31000000000000ea600000015aeaebb40001000201000000207b2273796d626f6c223a2241434d45222c227072696365223a3130312e32357d";
+	/**
+	 * ObjectData({"symbol":"ACME","qty":10}, "QUEUE-2", "corr-2"), timestamp 1490000000001.
+	 */
+	static final String OBJECT_DATA = "00000000fffffffe00000000396f72672e7265616374697665746563686e6f6c6f676965732e7469636b65722e6d6573736167696e672e646174612e4f626a6563744461746100000006636f72722d320000000751554555452d320000000000000000000000000000015aeaebb401000000000000001a7b2273796d626f6c223a2241434d45222c22717479223a31307d";
+	/**
+	 * MapData of LongKey to StringKey {10=a, 20=b, 30=c}, destination "QUEUE-3", correlation id "d2be7c36-25ae-45d0-add6-1732d879fab5",
+	 * timestamp 1490000000002.
+	 */
+	static final String MAP_DATA = "00000000fffffffe00000000366f72672e7265616374697665746563686e6f6c6f676965732e7469636b65722e6d6573736167696e672e646174612e4d6170446174610000002464326265376333362d323561652d343564302d616464362d3137333264383739666162350000000751554555452d330000000000000000000000000000015aeaebb40200000000000000030000003a6f72672e7265616374697665746563686e6f6c6f676965732e7469636b65722e6d6573736167696e672e646174612e6578742e4c6f6e674b65790000003c6f72672e7265616374697665746563686e6f6c6f676965732e7469636b65722e6d6573736167696e672e646174612e6578742e537472696e674b6579000000000000000a000000016100000000000000140000000162000000000000001e0000000163";
+	/**
+	 * LongMapData of StringKey {3=three, 7=seven}.
+	 */
+	static final String LONG_MAP_DATA = "00000000fffffffe000000003e6f72672e7265616374697665746563686e6f6c6f676965732e7469636b65722e6d6573736167696e672e646174612e6578742e4c6f6e674d6170446174610000002431333632306438332d666538612d346163632d393732612d31336430643139386533626600000000000000000000000000000000000001a1501e645400000000000000020000003a6f72672e7265616374697665746563686e6f6c6f676965732e7469636b65722e6d6573736167696e672e646174612e6578742e4c6f6e674b65790000003c6f72672e7265616374697665746563686e6f6c6f676965732e7469636b65722e6d6573736167696e672e646174612e6578742e537472696e674b65790000000000000003000000057468726565000000000000000700000005736576656e";
+	/**
+	 * TimeUIDKey(e0c43f60-0bf1-11e7-93ae-92361f002671).
+	 */
+	static final String TIMEUID_KEY = "00000000fffffffe000000003d6f72672e7265616374697665746563686e6f6c6f676965732e7469636b65722e6d6573736167696e672e646174612e6578742e54696d655549444b657900000010e0c43f600bf111e793ae92361f002671";
+	
+	static InternalSerializationService ser;
+	
+	@BeforeClass
+	public static void init()
+	{
+		ser = new DefaultSerializationServiceBuilder()
+				.addDataSerializableFactory(TickerDataSerializableFactory.FACTORY_ID, new TickerDataSerializableFactory())
+				.build();
+	}
+	@AfterClass
+	public static void destroy()
+	{
+		ser.dispose();
+	}
+	static byte[] hex(String s)
+	{
+		byte[] b = new byte[s.length() / 2];
+		for (int i = 0; i < b.length; i++) {
+			b[i] = (byte) Integer.parseInt(s.substring(2 * i, 2 * i + 2), 16);
+		}
+		return b;
+	}
+	static <T> T read(String hex)
+	{
+		return ser.toObject(new HeapData(hex(hex)));
+	}
+	
+	@Test
+	public void readTextData()
+	{
+		TextData t = read(TEXT_DATA);
+		Assert.assertEquals(TextData.class, t.getClass());
+		Assert.assertEquals("{\"symbol\":\"ACME\",\"price\":101.25}", t.getPayload());
+		Assert.assertEquals("QUEUE-1", t.getDestination());
+		Assert.assertEquals("5f0e4c3a-2b1d-4e6f-8a9b-0c1d2e3f4a5b", t.getCorrelationID());
+		Assert.assertEquals("REPLY-1", t.getReplyTo());
+		Assert.assertEquals(1490000000000L, t.getTimestamp());
+		Assert.assertEquals(60000L, t.getExpiryMillis());
+		Assert.assertTrue(t.isRedelivered());
+		Assert.assertEquals(2, t.getRedeliveryCount());
+		Assert.assertEquals(1, t.getProcessState());
+		Assert.assertEquals("", t.getClaimedBy());
+	}
+	@Test
+	public void rewriteTextData()
+	{
+		TextData legacy = read(TEXT_DATA);
+		byte[] rewritten = ser.toData(legacy).toByteArray();
+		Assert.assertTrue("compact form is not smaller", rewritten.length < hex(TEXT_DATA).length);
+		
+		TextData t = ser.toObject(new HeapData(rewritten));
+		Assert.assertEquals(legacy.getPayload(), t.getPayload());
+		Assert.assertEquals(legacy.getDestination(), t.getDestination());
+		Assert.assertEquals(legacy.getCorrelationID(), t.getCorrelationID());
+		Assert.assertEquals(legacy.getReplyTo(), t.getReplyTo());
+		Assert.assertEquals(legacy.getTimestamp(), t.getTimestamp());
+		Assert.assertEquals(legacy.getExpiryMillis(), t.getExpiryMillis());
+		Assert.assertEquals(legacy.isRedelivered(), t.isRedelivered());
+		Assert.assertEquals(legacy.getRedeliveryCount(), t.getRedeliveryCount());
+		Assert.assertEquals(legacy.getProcessState(), t.getProcessState());
+	}
+	@SuppressWarnings("unchecked")
+	@Test
+	public void readObjectData()
+	{
+		ObjectData<Map<String, Object>> o = read(OBJECT_DATA);
+		Assert.assertEquals("corr-2", o.getCorrelationID());
+		Assert.assertEquals("QUEUE-2", o.getDestination());
+		Assert.assertEquals(1490000000001L, o.getTimestamp());
+		Assert.assertEquals("{\"symbol\":\"ACME\",\"qty\":10}", o.getPayload());
+		Map<String, Object> m = o.getObject();
+		Assert.assertEquals("ACME", m.get("symbol"));
+		Assert.assertEquals(10, m.get("qty"));
+		
+		//rewritten in the codec form, and read back
+		ObjectData<Map<String, Object>> copy = (ObjectData<Map<String, Object>>) ser.toObject(ser.toData(o));
+		Assert.assertEquals(m, copy.getObject());
+	}
+	@Test
+	public void readMapData()
+	{
+		MapData<LongKey, StringKey> m = read(MAP_DATA);
+		Assert.assertEquals("QUEUE-3", m.getDestination());
+		Assert.assertEquals("d2be7c36-25ae-45d0-add6-1732d879fab5", m.getCorrelationID());
+		Assert.assertEquals(1490000000002L, m.getTimestamp());
+		Assert.assertEquals(3, m.size());
+		Iterator<Map.Entry<LongKey, StringKey>> it = m.entrySet().iterator();
+		for(String[] e : new String[][]{{"10", "a"}, {"20", "b"}, {"30", "c"}})
+		{
+			Map.Entry<LongKey, StringKey> next = it.next();
+			Assert.assertEquals(Long.valueOf(e[0]), next.getKey().value());
+			Assert.assertEquals(e[1], next.getValue().value());
+		}
+		Assert.assertFalse(it.hasNext());
+		Assert.assertEquals("b", m.get(new LongKey(20)).value());
+	}
+	@Test
+	public void readLongMapData()
+	{
+		LongMapData<StringKey> m = read(LONG_MAP_DATA);
+		Assert.assertEquals(2, m.size());
+		Assert.assertEquals(Arrays.asList(3L, 7L), Arrays.asList(m.keySet().toArray()));
+		Assert.assertEquals("three", m.get(3L).value());
+		Assert.assertEquals("seven", m.get(7L).value());
+	}
+	@Test
+	public void readTimeUIDKey()
+	{
+		TimeUIDKey k = read(TIMEUID_KEY);
+		Assert.assertEquals(UUID.fromString("e0c43f60-0bf1-11e7-93ae-92361f002671"), k.value());
+		Assert.assertTrue(ser.toData(k).toByteArray().length < hex(TIMEUID_KEY).length);
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package ticker.serial;
+
+import java.io.IOException;
+
+import org.reactivetechnologies.ticker.datagrid.TickerDataSerializableFactory;
+import org.reactivetechnologies.ticker.messaging.data.MapData;
+import org.reactivetechnologies.ticker.messaging.data.TextData;
+import org.reactivetechnologies.ticker.messaging.data.ext.LongKey;
+import org.reactivetechnologies.ticker.messaging.data.ext.StringKey;
+
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.Data;
+import com.hazelcast.nio.serialization.DataSerializable;
+/**
+ * Serialized size and round trip time of platform data types, with the {@linkplain TickerDataSerializableFactory} 
+ * (type ids) against plain {@linkplain DataSerializable} (class names, reflective instantiation). Run as a plain java main.
+ */
+public class SerializationBenchmark {
+
+	static final int WARMUP = 200000;
+	static final int ITERATIONS = 1000000;
+	
+	/**
+	 * Written the way a {@linkplain DataSerializable} is, with class name header.
+	 */
+	public static class PlainTextData implements DataSerializable
+	{
+		TextData data;
+		public PlainTextData() {
+		}
+		PlainTextData(TextData data) {
+			this.data = data;
+		}
+		@Override
+		public void writeData(ObjectDataOutput out) throws IOException {
+			data.writeData(out);
+		}
+		@Override
+		public void readData(ObjectDataInput in) throws IOException {
+			data = new TextData();
+			data.readData(in);
+		}
+	}
+	
+	static long roundTrip(InternalSerializationService ser, Object o, int n)
+	{
+		long start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			Data d = ser.toData(o);
+			ser.toObject(d);
+		}
+		return System.nanoTime() - start;
+	}
+	static void measure(String name, InternalSerializationService ser, Object o)
+	{
+		roundTrip(ser, o, WARMUP);
+		long nanos = roundTrip(ser, o, ITERATIONS);
+		System.out.println(String.format("%-16s %6d bytes  %8.1f ns/round trip", name, ser.toData(o).totalSize(), (double) nanos / ITERATIONS));
+	}
+	public static void main(String[] args) {
+		InternalSerializationService ser = new DefaultSerializationServiceBuilder()
+				.addDataSerializableFactory(TickerDataSerializableFactory.FACTORY_ID, new TickerDataSerializableFactory())
+				.build();
+		
+		TextData text = new TextData("{\"symbol\":\"ACME\",\"price\":101.25}", "BENCH-QUEUE");
+		measure("TextData/ids", ser, text);
+		measure("TextData/plain", ser, new PlainTextData(text));
+		
+		MapData<LongKey, StringKey> map = new MapData<>();
+		for (long i = 0; i < 16; i++) {
+			map.put(new LongKey(i), new StringKey("v" + i));
+		}
+		map.setDestination("BENCH-QUEUE");
+		measure("MapData/ids", ser, map);
+		
+		ser.dispose();
+	}
+
+}
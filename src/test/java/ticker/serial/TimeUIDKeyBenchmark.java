@@ -0,0 +1,118 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package ticker.serial;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import org.reactivetechnologies.ticker.datagrid.TickerDataSerializableFactory;
+import org.reactivetechnologies.ticker.messaging.data.MapData;
+import org.reactivetechnologies.ticker.messaging.data.ext.StringKey;
+import org.reactivetechnologies.ticker.messaging.data.ext.TimeUIDKey;
+import org.reactivetechnologies.ticker.utils.TimeUIDSupport;
+
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+/**
+ * Sorting time UUID keys with the bitwise {@linkplain TimeUIDKey} comparison against the decompose-and-wrap byte comparison,
+ * and {@linkplain MapData} round trips with time UUID keys. Run as a plain java main.
+ */
+public class TimeUIDKeyBenchmark {
+
+	static final int KEYS = 100000;
+	static final int ROUNDS = 20;
+	static final int MAP_ITERATIONS = 200000;
+	
+	/**
+	 * The previous comparison: timestamp bytes, then the raw bytes.
+	 */
+	static final Comparator<TimeUIDKey> BYTES = new Comparator<TimeUIDKey>() {
+
+		@Override
+		public int compare(TimeUIDKey k1, TimeUIDKey k2) {
+			ByteBuffer o1 = ByteBuffer.wrap(TimeUIDSupport.decompose(k1.value()));
+			ByteBuffer o2 = ByteBuffer.wrap(TimeUIDSupport.decompose(k2.value()));
+			int[] order = {6, 7, 4, 5, 0, 1, 2, 3};
+			for (int i : order) {
+				int d = i == 6 ? (o1.get(i) & 0xF) - (o2.get(i) & 0xF) : (o1.get(i) & 0xFF) - (o2.get(i) & 0xFF);
+				if(d != 0)
+					return d;
+			}
+			return o1.compareTo(o2);
+		}
+	};
+	static final Comparator<TimeUIDKey> BITS = new Comparator<TimeUIDKey>() {
+
+		@Override
+		public int compare(TimeUIDKey k1, TimeUIDKey k2) {
+			return k1.compareTo(k2);
+		}
+	};
+	
+	static long sort(List<TimeUIDKey> keys, Comparator<TimeUIDKey> cmp, int rounds)
+	{
+		long nanos = 0;
+		for (int i = 0; i < rounds; i++) {
+			List<TimeUIDKey> copy = new ArrayList<>(keys);
+			long start = System.nanoTime();
+			Collections.sort(copy, cmp);
+			nanos += System.nanoTime() - start;
+		}
+		return nanos;
+	}
+	static void measureSort(String name, List<TimeUIDKey> keys, Comparator<TimeUIDKey> cmp)
+	{
+		sort(keys, cmp, ROUNDS);
+		long nanos = sort(keys, cmp, ROUNDS);
+		System.out.println(String.format("%-16s %8.2f ms/sort of %d keys", name, nanos / 1e6 / ROUNDS, keys.size()));
+	}
+	static long roundTrip(InternalSerializationService ser, Object o, int n)
+	{
+		long start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			ser.toObject(ser.toData(o));
+		}
+		return System.nanoTime() - start;
+	}
+	public static void main(String[] args) {
+		List<TimeUIDKey> keys = new ArrayList<>(KEYS);
+		for (int i = 0; i < KEYS; i++) {
+			keys.add(new TimeUIDKey(TimeUIDSupport.getTimeUUID()));
+		}
+		Collections.shuffle(keys);
+		measureSort("sort/bytes", keys, BYTES);
+		measureSort("sort/bits", keys, BITS);
+		
+		InternalSerializationService ser = new DefaultSerializationServiceBuilder()
+				.addDataSerializableFactory(TickerDataSerializableFactory.FACTORY_ID, new TickerDataSerializableFactory())
+				.build();
+		MapData<TimeUIDKey, StringKey> map = new MapData<>();
+		for (int i = 0; i < 16; i++) {
+			map.put(new TimeUIDKey(TimeUIDSupport.getTimeUUID()), new StringKey("v" + i));
+		}
+		map.setDestination("BENCH-QUEUE");
+		roundTrip(ser, map, MAP_ITERATIONS);
+		long nanos = roundTrip(ser, map, MAP_ITERATIONS);
+		System.out.println(String.format("%-16s %6d bytes  %8.1f ns/round trip", "MapData/timeuid", ser.toData(map).totalSize(), (double) nanos / MAP_ITERATIONS));
+		
+		ser.dispose();
+	}
+
+}
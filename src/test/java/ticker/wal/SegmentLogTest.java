@@ -0,0 +1,148 @@
+/**
+ * Copyright 2017 esutdal
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package ticker.wal;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reactivetechnologies.ticker.messaging.base.wal.SegmentLog;
+import org.reactivetechnologies.ticker.messaging.base.wal.SegmentLog.RecordHandler;
+/**
+ * Replay of {@linkplain SegmentLog} segments left by a previous run, including segments with a torn record at the end.
+ */
+public class SegmentLogTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	static final int HEADER = 8;
+	
+	static byte[] record(int i)
+	{
+		return ("record-" + i).getBytes(StandardCharsets.UTF_8);
+	}
+	static void append(SegmentLog wal, int from, int to) throws Exception
+	{
+		for (int i = from; i < to; i++) {
+			wal.append(record(i)).get();
+		}
+	}
+	static List<String> replay(File dir) throws IOException
+	{
+		final List<String> records = new ArrayList<>();
+		try(SegmentLog wal = new SegmentLog(dir, 1024, 16, 16))
+		{
+			wal.replay(new RecordHandler() {
+				
+				@Override
+				public void handle(byte[] record) throws Exception {
+					records.add(new String(record, StandardCharsets.UTF_8));
+				}
+			});
+		}
+		return records;
+	}
+	static File[] segments(File dir)
+	{
+		File[] files = dir.listFiles(new FilenameFilter() {
+			
+			@Override
+			public boolean accept(File d, String name) {
+				return name.endsWith(".wal");
+			}
+		});
+		Arrays.sort(files);
+		return files;
+	}
+	/**
+	 * Position of a record in a segment with records of equal length.
+	 */
+	static long positionOf(int index)
+	{
+		return index * (HEADER + record(0).length);
+	}
+	
+	@Test
+	public void replayUnapplied() throws Exception
+	{
+		File dir = folder.newFolder();
+		try(SegmentLog wal = new SegmentLog(dir, 1024, 16, 16)) {
+			append(wal, 0, 3);
+		}
+		Assert.assertEquals(Arrays.asList("record-0", "record-1", "record-2"), replay(dir));
+		//replayed segments are deleted
+		Assert.assertEquals(0, segments(dir).length);
+		Assert.assertTrue(replay(dir).isEmpty());
+	}
+	@Test
+	public void deleteApplied() throws Exception
+	{
+		File dir = folder.newFolder();
+		try(SegmentLog wal = new SegmentLog(dir, 64, 16, 16)) 
+		{
+			List<Long> segmentIds = new ArrayList<>();
+			for (int i = 0; i < 6; i++) {
+				segmentIds.add(wal.append(record(i)).get());
+			}
+			Assert.assertTrue("segments not rolled", segments(dir).length > 1);
+			for(long id : segmentIds)
+				wal.applied(id);
+		}
+		Assert.assertEquals(0, segments(dir).length);
+	}
+	@Test
+	public void tornRecordChecksum() throws Exception
+	{
+		File dir = folder.newFolder();
+		try(SegmentLog wal = new SegmentLog(dir, 1024, 16, 16)) {
+			append(wal, 0, 3);
+		}
+		try(RandomAccessFile raf = new RandomAccessFile(segments(dir)[0], "rw"))
+		{
+			//flip the last byte of the third record
+			long pos = positionOf(3) - 1;
+			raf.seek(pos);
+			int b = raf.read();
+			raf.seek(pos);
+			raf.write(b ^ 0xFF);
+		}
+		Assert.assertEquals(Arrays.asList("record-0", "record-1"), replay(dir));
+	}
+	@Test
+	public void tornRecordLength() throws Exception
+	{
+		File dir = folder.newFolder();
+		try(SegmentLog wal = new SegmentLog(dir, 1024, 16, 16)) {
+			append(wal, 0, 3);
+		}
+		try(RandomAccessFile raf = new RandomAccessFile(segments(dir)[0], "rw"))
+		{
+			//a crash while writing the third record
+			raf.setLength(positionOf(2) + HEADER + 3);
+		}
+		Assert.assertEquals(Arrays.asList("record-0", "record-1"), replay(dir));
+	}
+}